@@ -0,0 +1,18 @@
+-- Migración: Almacén de archivos direccionado por contenido (SHA-256)
+-- Los archivos nuevos se guardan en uploads/blobs/ab/cd/<sha256>.<ext>; esta tabla lleva el conteo de referencias
+
+CREATE TABLE IF NOT EXISTS archivos (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    hash VARCHAR(64) NOT NULL,
+    url VARCHAR(500) NOT NULL,
+    tamanio BIGINT,
+    tipo_contenido VARCHAR(100),
+    referencias INT NOT NULL DEFAULT 1,
+    fecha_creacion DATETIME(6),
+    fecha_actualizacion DATETIME(6),
+    UNIQUE KEY uk_archivos_hash (hash),
+    KEY idx_archivos_huerfanos (referencias, fecha_actualizacion)
+);
+
+-- Verificar
+DESCRIBE archivos;
@@ -0,0 +1,19 @@
+-- Migración: Índice para el catálogo público paginado por cursor
+-- Cubre WHERE estado = 'ACTIVO' ORDER BY fecha_publicacion DESC, id DESC
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE
+    (TABLE_NAME = 'productos') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (INDEX_NAME = 'idx_productos_catalogo')
+  ) > 0,
+  "SELECT 1",
+  "CREATE INDEX idx_productos_catalogo ON productos (estado, fecha_publicacion, id)"
+));
+PREPARE createIfNotExists FROM @preparedStatement;
+EXECUTE createIfNotExists;
+DEALLOCATE PREPARE createIfNotExists;
+
+-- Verificar
+SHOW INDEX FROM productos WHERE Key_name = 'idx_productos_catalogo';
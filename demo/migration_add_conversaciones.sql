@@ -0,0 +1,37 @@
+-- Migración: Bandeja de entrada materializada (una fila por conversación y participante)
+-- Reemplaza el SELECT ... WHERE id IN (SELECT MAX(id) ... GROUP BY conversacion_id) sobre toda la tabla mensajes
+
+CREATE TABLE IF NOT EXISTS conversaciones (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    conversacion_id VARCHAR(100) NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    otro_usuario_id BIGINT NOT NULL,
+    ultimo_mensaje_id BIGINT,
+    ultimo_remitente_id BIGINT,
+    vista_previa VARCHAR(255),
+    fecha_ultimo_mensaje DATETIME(6),
+    no_leidos INT NOT NULL DEFAULT 0,
+    producto_id BIGINT,
+    servicio_id BIGINT,
+    UNIQUE KEY uk_conversaciones_usuario (usuario_id, conversacion_id),
+    KEY idx_conversaciones_bandeja (usuario_id, ultimo_mensaje_id)
+);
+
+-- Poblar con las conversaciones existentes: último mensaje y no leídos de cada participante
+INSERT IGNORE INTO conversaciones (conversacion_id, usuario_id, otro_usuario_id, ultimo_mensaje_id, ultimo_remitente_id,
+                                   vista_previa, fecha_ultimo_mensaje, no_leidos, producto_id, servicio_id)
+SELECT p.conversacion_id, p.usuario_id, p.otro_usuario_id, m.id, m.remitente_id,
+       CASE WHEN CHAR_LENGTH(m.contenido) > 200 THEN CONCAT(LEFT(m.contenido, 200), '...') ELSE m.contenido END,
+       m.fecha_envio,
+       (SELECT COUNT(*) FROM mensajes n
+         WHERE n.conversacion_id = p.conversacion_id AND n.destinatario_id = p.usuario_id AND n.leido = 0),
+       m.producto_id, m.servicio_id
+FROM (
+    SELECT conversacion_id, remitente_id AS usuario_id, destinatario_id AS otro_usuario_id FROM mensajes
+    UNION
+    SELECT conversacion_id, destinatario_id AS usuario_id, remitente_id AS otro_usuario_id FROM mensajes
+) p
+JOIN mensajes m ON m.id = (SELECT MAX(x.id) FROM mensajes x WHERE x.conversacion_id = p.conversacion_id);
+
+-- Verificar
+DESCRIBE conversaciones;
@@ -0,0 +1,21 @@
+-- Migración: Bandeja de salida de correos con reintentos
+-- EmailService inserta aquí cada correo; CorreoDespachoService los envía y deja en FALLIDO los que agotan los intentos
+
+CREATE TABLE IF NOT EXISTS correos_salientes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tipo VARCHAR(30),
+    destinatario VARCHAR(255) NOT NULL,
+    dominio VARCHAR(255) NOT NULL,
+    asunto VARCHAR(255),
+    cuerpo TEXT,
+    estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+    intentos INT NOT NULL DEFAULT 0,
+    proximo_intento DATETIME(6),
+    ultimo_error VARCHAR(500),
+    fecha_creacion DATETIME(6),
+    fecha_envio DATETIME(6),
+    KEY idx_correos_despacho (estado, proximo_intento, id)
+);
+
+-- Verificar
+DESCRIBE correos_salientes;
@@ -0,0 +1,23 @@
+-- Migración: Momento en que un despachador tomó cada correo (ENVIANDO)
+-- Al arrancar y cada minuto solo vuelven a la cola los tomados hace más de app.correo.envio-abandonado-minutos:
+-- en un reinicio escalonado no se reenvían los correos que otro nodo está enviando
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE
+    (TABLE_NAME = 'correos_salientes') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (COLUMN_NAME = 'fecha_tomado')
+  ) > 0,
+  "SELECT 1",
+  "ALTER TABLE correos_salientes ADD COLUMN fecha_tomado DATETIME(6) NULL AFTER fecha_envio"
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- Los que ya estaban ENVIANDO cuentan desde ahora
+UPDATE correos_salientes SET fecha_tomado = NOW(6) WHERE estado = 'ENVIANDO' AND fecha_tomado IS NULL;
+
+-- Verificar
+DESCRIBE correos_salientes;
@@ -0,0 +1,23 @@
+-- Migración: Momento en que un despachador tomó cada aviso de mensajes (ENVIANDO)
+-- Al arrancar y cada minuto solo vuelven a la cola los tomados hace más de app.notificaciones.envio-abandonado-minutos:
+-- en un reinicio escalonado no se reenvían los avisos que otro nodo está procesando
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE
+    (TABLE_NAME = 'notificaciones_mensaje') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (COLUMN_NAME = 'fecha_tomado')
+  ) > 0,
+  "SELECT 1",
+  "ALTER TABLE notificaciones_mensaje ADD COLUMN fecha_tomado DATETIME(6) NULL AFTER fecha_envio"
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- Los que ya estaban ENVIANDO cuentan desde ahora
+UPDATE notificaciones_mensaje SET fecha_tomado = NOW(6) WHERE estado = 'ENVIANDO' AND fecha_tomado IS NULL;
+
+-- Verificar
+DESCRIBE notificaciones_mensaje;
@@ -0,0 +1,24 @@
+-- Migración: Búsqueda de texto completo en productos
+-- Colación insensible a acentos y mayúsculas en las columnas buscadas,
+-- e índice FULLTEXT usado por ProductoRepository.buscarTextoCompleto
+
+ALTER TABLE productos
+  MODIFY nombre VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci,
+  MODIFY descripcion VARCHAR(1000) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci;
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE
+    (TABLE_NAME = 'productos') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (INDEX_NAME = 'ft_productos_texto')
+  ) > 0,
+  "SELECT 1",
+  "ALTER TABLE productos ADD FULLTEXT INDEX ft_productos_texto (nombre, descripcion)"
+));
+PREPARE createIfNotExists FROM @preparedStatement;
+EXECUTE createIfNotExists;
+DEALLOCATE PREPARE createIfNotExists;
+
+-- Verificar
+SHOW INDEX FROM productos WHERE Key_name = 'ft_productos_texto';
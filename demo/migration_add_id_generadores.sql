@@ -0,0 +1,21 @@
+-- Migración: Ids por bloques para pedidos y detalles_pedido
+-- Hibernate toma bloques de ids de esta tabla (en vez de AUTO_INCREMENT) para poder insertar por lotes JDBC.
+-- Cada bloque empieza después de siguiente_id, así que se inicializa con el id más alto de cada tabla.
+
+CREATE TABLE IF NOT EXISTS id_generadores (
+  entidad VARCHAR(255) NOT NULL PRIMARY KEY,
+  siguiente_id BIGINT
+);
+
+INSERT INTO id_generadores (entidad, siguiente_id)
+SELECT 'pedidos', COALESCE(MAX(id), 0) + 1 FROM pedidos
+ON DUPLICATE KEY UPDATE siguiente_id = GREATEST(COALESCE(siguiente_id, 0), VALUES(siguiente_id));
+
+INSERT INTO id_generadores (entidad, siguiente_id)
+SELECT 'detalles_pedido', COALESCE(MAX(id), 0) + 1 FROM detalles_pedido
+ON DUPLICATE KEY UPDATE siguiente_id = GREATEST(COALESCE(siguiente_id, 0), VALUES(siguiente_id));
+
+-- Las columnas id conservan AUTO_INCREMENT; los inserts de Hibernate ya traen el id.
+
+-- Verificar
+SELECT * FROM id_generadores;
@@ -0,0 +1,12 @@
+-- Migración: Variantes redimensionadas de imágenes (miniatura / mediana / grande)
+-- Las genera ImagenService en segundo plano; mientras tanto se sirve la imagen original.
+
+ALTER TABLE productos ADD COLUMN imagenes_variantes TEXT AFTER imagen_url5;
+ALTER TABLE productos ADD COLUMN miniatura_url VARCHAR(500) AFTER imagenes_variantes;
+
+ALTER TABLE servicios ADD COLUMN imagenes_variantes TEXT AFTER imagenes;
+ALTER TABLE servicios ADD COLUMN miniatura_url VARCHAR(500) AFTER imagenes_variantes;
+
+-- Verificar
+DESCRIBE productos;
+DESCRIBE servicios;
@@ -0,0 +1,19 @@
+-- Migración: Índice para el historial de mensajes paginado por cursor
+-- Cubre WHERE conversacion_id = ? AND id < ? ORDER BY id DESC (y la variante id > ? ORDER BY id ASC)
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE
+    (TABLE_NAME = 'mensajes') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (INDEX_NAME = 'idx_mensajes_conversacion')
+  ) > 0,
+  "SELECT 1",
+  "CREATE INDEX idx_mensajes_conversacion ON mensajes (conversacion_id, id)"
+));
+PREPARE createIfNotExists FROM @preparedStatement;
+EXECUTE createIfNotExists;
+DEALLOCATE PREPARE createIfNotExists;
+
+-- Verificar
+SHOW INDEX FROM mensajes WHERE Key_name = 'idx_mensajes_conversacion';
@@ -0,0 +1,18 @@
+-- Migración: Bandeja de salida de avisos por correo de mensajes de chat
+-- Cada mensaje inserta un aviso PENDIENTE en la misma transacción; el despachador los agrupa por destinatario
+
+CREATE TABLE IF NOT EXISTS notificaciones_mensaje (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    email_destino VARCHAR(255) NOT NULL,
+    nombre_destinatario VARCHAR(255),
+    nombre_remitente VARCHAR(255),
+    contenido VARCHAR(500),
+    estado VARCHAR(20) NOT NULL DEFAULT 'PENDIENTE',
+    intentos INT NOT NULL DEFAULT 0,
+    fecha_creacion DATETIME(6),
+    fecha_envio DATETIME(6),
+    KEY idx_notificaciones_estado (estado, email_destino, id)
+);
+
+-- Verificar
+DESCRIBE notificaciones_mensaje;
@@ -0,0 +1,25 @@
+-- Migración: Precio que vio el comprador al agregar cada producto al carrito
+-- Al confirmar la compra se compara con el precio actual; si cambió, el pedido no se crea y se avisa
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE
+    (TABLE_NAME = 'items_carrito') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (COLUMN_NAME = 'precio_unitario')
+  ) > 0,
+  "SELECT 1",
+  "ALTER TABLE items_carrito ADD COLUMN precio_unitario DOUBLE NULL AFTER cantidad"
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- Los items existentes toman el precio actual del producto
+UPDATE items_carrito i
+JOIN productos p ON p.id = i.producto_id
+SET i.precio_unitario = p.precio
+WHERE i.precio_unitario IS NULL;
+
+-- Verificar
+DESCRIBE items_carrito;
@@ -0,0 +1,35 @@
+-- Migración: Vencimiento de la reserva de stock de pedidos pendientes de pago
+-- Los pedidos por transferencia sin comprobante se cancelan al vencer y su stock vuelve a productos
+
+SET @dbname = DATABASE();
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE
+    (TABLE_NAME = 'pedidos') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (COLUMN_NAME = 'reserva_expira')
+  ) > 0,
+  "SELECT 1",
+  "ALTER TABLE pedidos ADD COLUMN reserva_expira DATETIME(6) NULL AFTER comprobante_url"
+));
+PREPARE alterIfNotExists FROM @preparedStatement;
+EXECUTE alterIfNotExists;
+DEALLOCATE PREPARE alterIfNotExists;
+
+-- Índice para el barrido de reservas vencidas (WHERE estado = 'PENDIENTE' AND reserva_expira < ?)
+SET @preparedStatement = (SELECT IF(
+  (SELECT COUNT(*) FROM INFORMATION_SCHEMA.STATISTICS WHERE
+    (TABLE_NAME = 'pedidos') AND
+    (TABLE_SCHEMA = @dbname) AND
+    (INDEX_NAME = 'idx_pedidos_reserva')
+  ) > 0,
+  "SELECT 1",
+  "CREATE INDEX idx_pedidos_reserva ON pedidos (estado, reserva_expira)"
+));
+PREPARE createIfNotExists FROM @preparedStatement;
+EXECUTE createIfNotExists;
+DEALLOCATE PREPARE createIfNotExists;
+
+-- Los pedidos pendientes existentes no vencen solos (reserva_expira queda en NULL)
+
+-- Verificar
+DESCRIBE pedidos;
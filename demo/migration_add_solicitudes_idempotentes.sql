@@ -0,0 +1,16 @@
+-- Migración: Claves de idempotencia de la creación de pedidos y la subida de comprobantes
+-- Un reintento con la misma cabecera Idempotency-Key devuelve la respuesta guardada sin repetir la operación
+
+CREATE TABLE IF NOT EXISTS solicitudes_idempotentes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    clave VARCHAR(200) NOT NULL,
+    huella VARCHAR(255) NOT NULL,
+    estado VARCHAR(20) NOT NULL DEFAULT 'EN_CURSO',
+    respuesta TEXT,
+    fecha_creacion DATETIME(6),
+    UNIQUE KEY uk_solicitudes_clave (clave),
+    KEY idx_solicitudes_fecha (fecha_creacion)
+);
+
+-- Verificar
+DESCRIBE solicitudes_idempotentes;
@@ -34,6 +34,11 @@ public class SecurityConfig {
                         .requestMatchers("/api/recuperar-password/**").permitAll()
                         .requestMatchers("/api/verificar-email/**").permitAll()
 
+                        // Recolección de archivos: puede borrar, requiere sesión
+                        .requestMatchers("/api/dashboard/archivos/**").authenticated()
+                        // Bandeja de salida de correos: expone destinatarios y errores, y reintenta envíos
+                        .requestMatchers("/api/dashboard/correos/**").authenticated()
+
                         // Dashboard - temporalmente permitido para testing
                         .requestMatchers("/api/dashboard/**").permitAll()
 
@@ -42,6 +47,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/servicios/public/**").permitAll()
                         .requestMatchers("/api/productos/public").permitAll()
                         .requestMatchers("/api/servicios/public").permitAll()
+                        .requestMatchers("/api/buscar").permitAll()
 
                         // ✅ PERMITIR CREACIÓN DE PRODUCTOS Y SERVICIOS (TEMPORAL)
                         .requestMatchers("/api/productos").permitAll()
@@ -1,21 +1,129 @@
 package com.tuempresa.appventas.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+// Mensajería STOMP del chat.
+// app.websocket.broker=simple usa el broker en memoria (un solo nodo); =relay reenvía /topic y /queue a un
+// broker STOMP externo (ActiveMQ, RabbitMQ...) para que los mensajes lleguen a usuarios conectados a otro nodo.
+// Los hilos de los canales de entrada/salida y los límites por sesión se ajustan con app.websocket.*
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${app.websocket.broker:simple}")
+    private String broker;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.puerto:61613}")
+    private int relayPuerto;
+
+    @Value("${app.websocket.relay.usuario:guest}")
+    private String relayUsuario;
+
+    @Value("${app.websocket.relay.clave:guest}")
+    private String relayClave;
+
+    @Value("${app.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    // Latido STOMP (ms) entre servidor y clientes, y entre el relay y el broker
+    @Value("${app.websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${app.websocket.entrada.hilos:4}")
+    private int entradaHilos;
+
+    @Value("${app.websocket.entrada.max-hilos:16}")
+    private int entradaMaxHilos;
+
+    @Value("${app.websocket.entrada.cola:1000}")
+    private int entradaCola;
+
+    @Value("${app.websocket.salida.hilos:4}")
+    private int salidaHilos;
+
+    @Value("${app.websocket.salida.max-hilos:16}")
+    private int salidaMaxHilos;
+
+    @Value("${app.websocket.salida.cola:5000}")
+    private int salidaCola;
+
+    // Un cliente lento no puede retener más de este tiempo ni de este buffer: se cierra su sesión
+    @Value("${app.websocket.limite-envio-ms:15000}")
+    private int limiteEnvioMs;
+
+    @Value("${app.websocket.limite-buffer-kb:512}")
+    private int limiteBufferKb;
+
+    @Value("${app.websocket.tamanio-maximo-mensaje-kb:64}")
+    private int tamanioMaximoMensajeKb;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Habilitar un broker de mensajes simple en memoria
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(broker)) {
+            // Broker externo: las suscripciones viven en el broker y cualquier nodo puede publicar
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPuerto)
+                    .setClientLogin(relayUsuario)
+                    .setClientPasscode(relayClave)
+                    .setSystemLogin(relayUsuario)
+                    .setSystemPasscode(relayClave)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs);
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            System.out.println("🔌 WebSocket: relay STOMP hacia " + relayHost + ":" + relayPuerto);
+        } else {
+            // Habilitar un broker de mensajes simple en memoria
+            ThreadPoolTaskScheduler latidos = new ThreadPoolTaskScheduler();
+            latidos.setPoolSize(1);
+            latidos.setThreadNamePrefix("ws-latido-");
+            latidos.setDaemon(true);
+            latidos.initialize();
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs })
+                    .setTaskScheduler(latidos);
+        }
         // Prefijo para destinos de aplicación
         config.setApplicationDestinationPrefixes("/app");
+        // Con varios hilos de salida, los mensajes de una misma sesión se entregan en el orden en que se publicaron
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(entradaHilos)
+                .maxPoolSize(entradaMaxHilos)
+                .queueCapacity(entradaCola);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(salidaHilos)
+                .maxPoolSize(salidaMaxHilos)
+                .queueCapacity(salidaCola);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(limiteEnvioMs)
+                .setSendBufferSizeLimit(limiteBufferKb * 1024)
+                .setMessageSizeLimit(tamanioMaximoMensajeKb * 1024);
     }
 
     @Override
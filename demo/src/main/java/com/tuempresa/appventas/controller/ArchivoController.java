@@ -0,0 +1,216 @@
+package com.tuempresa.appventas.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.util.UriUtils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Sirve los archivos subidos (/uploads/**).
+// Los nombres nunca se reutilizan (SHA-256 del contenido o timestamp + UUID), así que se cachean
+// como inmutables. Soporta peticiones condicionales y Range. El cuerpo lo envía Tomcat con sendfile
+// cuando el conector lo permite; si no, se copia con FileChannel.transferTo, sin buffers en el heap.
+@Controller
+public class ArchivoController {
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+
+    private final Path raiz = Paths.get(System.getProperty("user.dir"), "uploads").toAbsolutePath().normalize();
+
+    @GetMapping("/uploads/**")
+    public void servir(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path archivo = resolver(request);
+        BasicFileAttributes atributos = archivo == null ? null : leerAtributos(archivo);
+        if (atributos == null || !atributos.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long tamanio = atributos.size();
+        long modificado = atributos.lastModifiedTime().toMillis();
+        // Identidad del archivo: tamaño + fecha de modificación (los nombres no se reutilizan)
+        String etag = "\"" + Long.toHexString(tamanio) + "-" + Long.toHexString(modificado) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modificado);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_INMUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        if (noModificado(request, etag, modificado)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(archivo.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long inicio = 0;
+        long fin = tamanio; // exclusivo
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        if (rango != null && aplicaRango(request, etag, modificado)) {
+            long[] limites = parsearRango(rango, tamanio);
+            if (limites == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanio);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (limites.length == 2) {
+                inicio = limites[0];
+                fin = limites[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + (fin - 1) + "/" + tamanio);
+            }
+        }
+        response.setContentLengthLong(fin - inicio);
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat envía el archivo desde el kernel al socket al terminar la petición
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            while (posicion < fin) {
+                posicion += canal.transferTo(posicion, fin - posicion, salida);
+            }
+        }
+    }
+
+    // Ruta dentro de uploads/; null si escapa del directorio o apunta a archivos internos (.tmp, .part)
+    private Path resolver(HttpServletRequest request) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        String relativa = UriUtils.decode(uri.substring("/uploads/".length()), StandardCharsets.UTF_8);
+        if (relativa.isEmpty() || relativa.contains("\0")) {
+            return null;
+        }
+        Path archivo = raiz.resolve(relativa).normalize();
+        if (!archivo.startsWith(raiz)) {
+            return null;
+        }
+        for (Path parte : raiz.relativize(archivo)) {
+            if (parte.toString().startsWith(".") || parte.toString().endsWith(".part")) {
+                return null;
+            }
+        }
+        return archivo;
+    }
+
+    private BasicFileAttributes leerAtributos(Path archivo) {
+        try {
+            return Files.readAttributes(archivo, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean noModificado(HttpServletRequest request, String etag, long modificado) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidato : ifNoneMatch.split(",")) {
+                String valor = candidato.trim();
+                if (valor.equals("*") || valor.equals(etag) || valor.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = fecha(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && modificado / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // If-Range: solo se responde el rango si el cliente tiene la misma versión
+    private boolean aplicaRango(HttpServletRequest request, String etag, long modificado) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        long fecha = fecha(request, HttpHeaders.IF_RANGE);
+        return fecha >= 0 && modificado / 1000 == fecha / 1000;
+    }
+
+    private long fecha(HttpServletRequest request, String cabecera) {
+        try {
+            return request.getDateHeader(cabecera);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // bytes=a-b | bytes=a- | bytes=-n. Devuelve {inicio, finExclusivo}; {} si se ignora
+    // (varios rangos, sintaxis desconocida o fin antes del inicio: se responde el archivo completo); null si no es satisfacible
+    private long[] parsearRango(String rango, long tamanio) {
+        if (!rango.startsWith("bytes=") || rango.contains(",")) {
+            return new long[0];
+        }
+        String especificacion = rango.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) {
+            return new long[0];
+        }
+        try {
+            String desde = especificacion.substring(0, guion).trim();
+            String hasta = especificacion.substring(guion + 1).trim();
+            long inicio;
+            long fin;
+            if (desde.isEmpty()) {
+                long sufijo = Long.parseLong(hasta);
+                if (sufijo <= 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamanio - sufijo);
+                fin = tamanio;
+            } else {
+                inicio = Long.parseLong(desde);
+                if (hasta.isEmpty()) {
+                    fin = tamanio;
+                } else {
+                    long ultimo = Long.parseLong(hasta);
+                    // RFC 9110: last-pos < first-pos no es un rango válido, la cabecera se ignora (no es un 416)
+                    if (ultimo < inicio) {
+                        return new long[0];
+                    }
+                    fin = Math.min(ultimo + 1, tamanio);
+                }
+            }
+            if (inicio >= tamanio || inicio >= fin) {
+                return null;
+            }
+            return new long[] { inicio, fin };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tuempresa.appventas.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.tuempresa.appventas.dto.ResultadoBusqueda;
+import com.tuempresa.appventas.service.IndiceBusquedaService;
+
+@RestController
+@RequestMapping("/api/buscar")
+@CrossOrigin(origins = "*")
+public class BusquedaController {
+
+    @Autowired
+    private IndiceBusquedaService indiceBusquedaService;
+
+    @Value("${app.catalogo.limite-por-defecto:20}")
+    private int limitePorDefecto;
+
+    @Value("${app.catalogo.limite-maximo:100}")
+    private int limiteMaximo;
+
+    // Búsqueda unificada de productos y servicios con conteos por faceta
+    @GetMapping
+    public ResponseEntity<?> buscar(
+            @RequestParam(required = false, defaultValue = "") String q,
+            @RequestParam(required = false) String tipoItem,
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String ciudad,
+            @RequestParam(required = false, defaultValue = "0") Integer pagina,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            int numero = Math.max(pagina, 0);
+            int tamanio = (limite == null || limite < 1) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+            ResultadoBusqueda resultado = indiceBusquedaService.buscar(q, tipoItem, categoria, ciudad, numero, tamanio);
+            return ResponseEntity.ok(resultado);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Error al buscar", "error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -14,7 +14,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.tuempresa.appventas.model.Carrito;
+import com.tuempresa.appventas.dto.CarritoVista;
 import com.tuempresa.appventas.service.CarritoService;
 
 @RestController
@@ -28,24 +28,19 @@ public class CarritoController {
     private CarritoService carritoService;
 
     @GetMapping("/{usuarioId}")
-    public ResponseEntity<Carrito> obtenerCarrito(@PathVariable Long usuarioId) {
-        Carrito carrito = carritoService.obtenerCarritoPorUsuario(usuarioId);
+    public ResponseEntity<CarritoVista> obtenerCarrito(@PathVariable Long usuarioId) {
+        CarritoVista carrito = carritoService.obtenerCarritoPorUsuario(usuarioId);
         // Log para depurar datos de Deuna
-        if (carrito.getItems() != null) {
-            carrito.getItems().forEach(item -> {
-                if (item.getProducto() != null) {
-                    logger.info("🛒 Producto en carrito: {} | deunaNumero: {} | deunaQrUrl: {}", 
-                        item.getProducto().getNombre(),
-                        item.getProducto().getDeunaNumero(),
-                        item.getProducto().getDeunaQrUrl());
-                }
-            });
-        }
+        carrito.items().forEach(item -> 
+            logger.info("🛒 Producto en carrito: {} | deunaNumero: {} | deunaQrUrl: {}", 
+                item.producto().getNombre(),
+                item.producto().getDeunaNumero(),
+                item.producto().getDeunaQrUrl()));
         return ResponseEntity.ok(carrito);
     }
 
     @PostMapping("/{usuarioId}/agregar")
-    public ResponseEntity<Carrito> agregarProducto(
+    public ResponseEntity<CarritoVista> agregarProducto(
             @PathVariable Long usuarioId,
             @RequestParam Long productoId,
             @RequestParam Integer cantidad) {
@@ -53,14 +48,14 @@ public class CarritoController {
     }
 
     @DeleteMapping("/{usuarioId}/eliminar/{productoId}")
-    public ResponseEntity<Carrito> eliminarProducto(
+    public ResponseEntity<CarritoVista> eliminarProducto(
             @PathVariable Long usuarioId,
             @PathVariable Long productoId) {
         return ResponseEntity.ok(carritoService.eliminarProducto(usuarioId, productoId));
     }
     
     @PutMapping("/{usuarioId}/actualizar")
-    public ResponseEntity<Carrito> actualizarCantidad(
+    public ResponseEntity<CarritoVista> actualizarCantidad(
             @PathVariable Long usuarioId,
             @RequestParam Long productoId,
             @RequestParam Integer cantidad) {
@@ -8,6 +8,10 @@ import com.tuempresa.appventas.repository.ProductoRepository;
 import com.tuempresa.appventas.repository.HistorialRepository;
 import com.tuempresa.appventas.repository.ServicioRepository;
 import com.tuempresa.appventas.model.Historial;
+import com.tuempresa.appventas.service.AlmacenArchivosService;
+import com.tuempresa.appventas.service.CatalogoCacheService;
+import com.tuempresa.appventas.service.CorreoDespachoService;
+import com.tuempresa.appventas.service.RecolectorArchivosService;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -32,6 +36,55 @@ public class DashboardController {
     @Autowired
     private ServicioRepository servicioRepository;
 
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
+
+    @Autowired
+    private RecolectorArchivosService recolectorArchivosService;
+
+    @Autowired
+    private CorreoDespachoService correoDespachoService;
+
+    // Métricas de la caché de detalle de productos y servicios
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getEstadisticasCache() {
+        return ResponseEntity.ok(catalogoCacheService.estadisticas());
+    }
+
+    // Métricas de subidas: memoria de buffers en uso, subidas en curso y rechazos
+    @GetMapping("/subidas")
+    public ResponseEntity<Map<String, Object>> getEstadisticasSubidas() {
+        return ResponseEntity.ok(almacenArchivosService.estadisticas());
+    }
+
+    // Bandeja de salida de correos: pendientes, enviados, descartados y últimos errores
+    @GetMapping("/correos")
+    public ResponseEntity<Map<String, Object>> getEstadisticasCorreos() {
+        return ResponseEntity.ok(correoDespachoService.estadisticas());
+    }
+
+    // Vuelve a encolar los correos descartados (p. ej. tras corregir la configuración SMTP)
+    @PostMapping("/correos/reintentar")
+    public ResponseEntity<?> reintentarCorreos() {
+        int reactivados = correoDespachoService.reintentarFallidos();
+        return ResponseEntity.ok(Map.of("message", reactivados + " correos vuelven a la cola"));
+    }
+
+    // Recolección de archivos huérfanos en uploads/ (por defecto solo informa, sin borrar)
+    @PostMapping("/archivos/recolectar")
+    public ResponseEntity<?> recolectarArchivos(@RequestParam(defaultValue = "true") boolean simular) {
+        try {
+            return ResponseEntity.ok(recolectorArchivosService.recolectar(simular));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Error en la recolección: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/estadisticas")
     public ResponseEntity<Map<String, Object>> getEstadisticas() {
         Map<String, Object> estadisticas = new HashMap<>();
@@ -5,7 +5,10 @@ import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,10 +21,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.tuempresa.appventas.dto.ConfirmacionLectura;
+import com.tuempresa.appventas.dto.ConversacionResumen;
+import com.tuempresa.appventas.dto.MensajeResumen;
+import com.tuempresa.appventas.dto.PaginaCursor;
 import com.tuempresa.appventas.model.Mensaje;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Servicio;
 import com.tuempresa.appventas.model.Usuario;
+import com.tuempresa.appventas.service.ContadorNoLeidosService;
 import com.tuempresa.appventas.service.MensajeService;
 import com.tuempresa.appventas.service.ProductoService;
 import com.tuempresa.appventas.service.ServicioService;
@@ -47,6 +55,9 @@ public class MensajeController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private ContadorNoLeidosService contadorNoLeidosService;
+
     // Enviar mensaje simple
     @PostMapping("/enviar")
     public ResponseEntity<?> enviarMensaje(@RequestBody Map<String, Object> request) {
@@ -106,14 +117,25 @@ public class MensajeController {
         }
     }
 
-    // Marcar conversación como leída
+    // Marcar conversación como leída (hasta el mensaje hastaId si se indica)
     @PutMapping("/conversacion/{conversacionId}/leer")
     public ResponseEntity<?> marcarConversacionComoLeida(
             @PathVariable String conversacionId,
-            @RequestParam Long usuarioId) {
+            @RequestParam Long usuarioId,
+            @RequestParam(required = false) Long hastaId) {
         try {
-            mensajeService.marcarConversacionComoLeida(conversacionId, usuarioId);
-            return ResponseEntity.ok(Map.of("mensaje", "Conversación marcada como leída"));
+            ConfirmacionLectura confirmacion = mensajeService.marcarConversacionComoLeida(conversacionId, usuarioId, hastaId);
+
+            // Una sola confirmación de lectura al otro participante, sin importar cuántos mensajes se leyeron
+            if (confirmacion != null) {
+                messagingTemplate.convertAndSend(
+                    "/topic/mensajes/" + confirmacion.remitenteId() + "/leidos",
+                    confirmacion
+                );
+            }
+
+            int leidos = confirmacion != null ? confirmacion.mensajesLeidos() : 0;
+            return ResponseEntity.ok(Map.of("mensaje", "Conversación marcada como leída", "leidos", leidos));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -136,7 +158,7 @@ public class MensajeController {
     @GetMapping("/conversaciones/{usuarioId}")
     public ResponseEntity<?> obtenerConversacionesUsuario(@PathVariable Long usuarioId) {
         try {
-            List<Mensaje> conversaciones = mensajeService.obtenerConversacionesUsuario(usuarioId);
+            List<ConversacionResumen> conversaciones = mensajeService.obtenerConversacionesUsuario(usuarioId);
             return ResponseEntity.ok(conversaciones);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -154,6 +176,15 @@ public class MensajeController {
         }
     }
 
+    // Contador de no leídos por WebSocket: al suscribirse a /app/no-leidos/{usuarioId} se responde con el valor
+    // actual; los cambios siguientes llegan por /topic/no-leidos/{usuarioId}
+    @SubscribeMapping("/no-leidos/{usuarioId}")
+    public Map<String, Object> suscribirContadorNoLeidos(
+            @DestinationVariable Long usuarioId,
+            @Header("simpSessionId") String sesionId) {
+        return Map.of("count", contadorNoLeidosService.conectar(usuarioId, sesionId));
+    }
+
     // Obtener mensajes no leídos
     @GetMapping("/no-leidos/{usuarioId}")
     public ResponseEntity<?> obtenerMensajesNoLeidos(@PathVariable Long usuarioId) {
@@ -176,6 +207,21 @@ public class MensajeController {
         }
     }
 
+    // Historial paginado de una conversación (?antesDe=id para ir hacia atrás, ?despuesDe=id para lo nuevo)
+    @GetMapping("/conversacion/{conversacionId}/historial")
+    public ResponseEntity<?> obtenerHistorial(
+            @PathVariable String conversacionId,
+            @RequestParam(required = false) Long antesDe,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            PaginaCursor<MensajeResumen> pagina = mensajeService.obtenerHistorial(conversacionId, antesDe, despuesDe, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // Eliminar conversación completa
     @DeleteMapping("/conversacion/{conversacionId}")
     public ResponseEntity<?> eliminarConversacion(@PathVariable String conversacionId) {
@@ -195,20 +241,12 @@ public class MensajeController {
                 return ResponseEntity.badRequest().body(Map.of("error", "No se ha proporcionado ninguna imagen"));
             }
 
-            // Validar tipo de archivo
-            String contentType = imagen.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
-                return ResponseEntity.badRequest().body(Map.of("error", "El archivo debe ser una imagen"));
-            }
-
-            // Validar tamaño (máximo 5MB)
-            if (imagen.getSize() > 5 * 1024 * 1024) {
-                return ResponseEntity.badRequest().body(Map.of("error", "La imagen no debe superar los 5MB"));
-            }
-
+            // El almacén valida formato (magic bytes) y tamaño mientras copia
             String imageUrl = mensajeService.guardarImagenMensaje(imagen);
             return ResponseEntity.ok(Map.of("imageUrl", imageUrl));
 
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", "Error al subir la imagen", "details", e.getMessage()));
         }
@@ -1,6 +1,9 @@
 package com.tuempresa.appventas.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +12,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -16,6 +20,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.tuempresa.appventas.model.DetallePedido;
 import com.tuempresa.appventas.model.Pedido;
+import com.tuempresa.appventas.service.CarritoService;
+import com.tuempresa.appventas.service.IdempotenciaService;
 import com.tuempresa.appventas.service.PedidoService;
 
 @RestController
@@ -26,25 +32,65 @@ public class PedidoController {
     @Autowired
     private PedidoService pedidoService;
 
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    // Con la cabecera Idempotency-Key, un doble clic o un reintento devuelve el mismo pedido en vez de crear otro
     @PostMapping("/{usuarioId}/crear")
-    public ResponseEntity<Pedido> crearPedido(
+    public ResponseEntity<?> crearPedido(
             @PathVariable Long usuarioId, 
-            @RequestParam(required = false, defaultValue = "TRANSFERENCIA") String metodoPago) {
-        return ResponseEntity.ok(pedidoService.crearPedidoDesdeCarrito(usuarioId, metodoPago));
+            @RequestParam(required = false, defaultValue = "TRANSFERENCIA") String metodoPago,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
+        try {
+            return idempotenciaService.ejecutar("crear-pedido", usuarioId, claveIdempotencia, metodoPago,
+                    () -> pedidoService.crearPedidoDesdeCarrito(usuarioId, metodoPago));
+        } catch (IdempotenciaService.ConflictoException e) {
+            return ResponseEntity.status(e.getEstado()).body(Map.of("error", e.getMessage()));
+        } catch (CarritoService.CarritoDesactualizadoException e) {
+            // 409: el comprador debe revisar el carrito con los precios y el stock actuales
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage(), "cambios", e.getCambios()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PostMapping("/{pedidoId}/comprobante")
-    public ResponseEntity<Pedido> subirComprobante(@PathVariable Long pedidoId, @RequestParam("comprobante") MultipartFile archivo) {
+    public ResponseEntity<?> subirComprobante(
+            @PathVariable Long pedidoId,
+            @RequestParam("comprobante") MultipartFile archivo,
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
         try {
-            return ResponseEntity.ok(pedidoService.subirComprobante(pedidoId, archivo));
+            String huella = archivo.getOriginalFilename() + ":" + archivo.getSize();
+            return idempotenciaService.ejecutar("comprobante", pedidoId, claveIdempotencia, huella, () -> {
+                try {
+                    return pedidoService.subirComprobante(pedidoId, archivo);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IdempotenciaService.ConflictoException e) {
+            return ResponseEntity.status(e.getEstado()).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/{pedidoId}/confirmar")
-    public ResponseEntity<Pedido> confirmarPago(@PathVariable Long pedidoId) {
-        return ResponseEntity.ok(pedidoService.confirmarPago(pedidoId));
+    public ResponseEntity<?> confirmarPago(@PathVariable Long pedidoId) {
+        try {
+            return ResponseEntity.ok(pedidoService.confirmarPago(pedidoId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{pedidoId}/cancelar")
+    public ResponseEntity<?> cancelarPedido(@PathVariable Long pedidoId) {
+        try {
+            return ResponseEntity.ok(pedidoService.cancelarPedido(pedidoId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/compras/{usuarioId}")
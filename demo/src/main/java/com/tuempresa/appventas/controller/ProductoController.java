@@ -1,14 +1,12 @@
 package com.tuempresa.appventas.controller;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,16 +14,24 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.tuempresa.appventas.dto.PaginaCursor;
+import com.tuempresa.appventas.dto.ProductoTarjeta;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.ProductoRepository;
+import com.tuempresa.appventas.service.AlmacenArchivosService;
+import com.tuempresa.appventas.service.CatalogoSnapshotService;
 import com.tuempresa.appventas.service.ProductoService;
 import com.tuempresa.appventas.service.UsuarioService;
+import com.tuempresa.appventas.util.ImagenUtil;
+import com.tuempresa.appventas.util.SnapshotHttpUtil;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -35,11 +41,16 @@ public class ProductoController {
     private final ProductoService productoService;
     private final UsuarioService usuarioService;
     private final ProductoRepository productoRepository;
+    private final CatalogoSnapshotService catalogoSnapshotService;
+    private final AlmacenArchivosService almacenArchivosService;
 
-    public ProductoController(ProductoService productoService, UsuarioService usuarioService, ProductoRepository productoRepository) {
+    public ProductoController(ProductoService productoService, UsuarioService usuarioService, ProductoRepository productoRepository,
+                              CatalogoSnapshotService catalogoSnapshotService, AlmacenArchivosService almacenArchivosService) {
         this.productoService = productoService;
         this.usuarioService = usuarioService;
         this.productoRepository = productoRepository;
+        this.catalogoSnapshotService = catalogoSnapshotService;
+        this.almacenArchivosService = almacenArchivosService;
     }
 
     // Listar productos (modificado para soportar modo admin)
@@ -67,6 +78,17 @@ public class ProductoController {
         return ResponseEntity.ok(p);
     }
 
+    // Obtener varios productos en una sola llamada (carrito, favoritos, historial).
+    // Respuesta en el mismo orden que los IDs, con null donde el producto no existe
+    @PostMapping("/batch")
+    public ResponseEntity<?> obtenerVarios(@RequestBody List<Long> ids) {
+        try {
+            return ResponseEntity.ok(productoService.obtenerPorIds(ids));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
     // 🆕 CREAR PRODUCTO CON IMÁGENES - CORREGIDO
     @PostMapping
     public ResponseEntity<?> crear(
@@ -144,8 +166,11 @@ public class ProductoController {
             }
 
             // Guardar QR Deuna en el vendedor
+            List<String> qrReemplazados = new ArrayList<>();
             if (deunaQr != null && !deunaQr.isEmpty()) {
+                qrReemplazados.add(vendedor.getDeunaQrUrl());
                 String qrUrl = guardarImagen(deunaQr);
+                almacenArchivosService.retener(qrUrl); // producto y vendedor cuentan cada uno su referencia
                 producto.setDeunaQrUrl(qrUrl);
                 vendedor.setDeunaQrUrl(qrUrl);
             }
@@ -169,8 +194,9 @@ public class ProductoController {
             if (imagenesUrls.size() > 3) producto.setImagenUrl4(imagenesUrls.get(3));
             if (imagenesUrls.size() > 4) producto.setImagenUrl5(imagenesUrls.get(4));
 
-            // Guardar en BD
+            // Guardar en BD y liberar el QR que tenía el vendedor
             Producto productoGuardado = productoService.crearProducto(producto, vendedor);
+            liberarQr(qrReemplazados);
             return ResponseEntity.ok(productoGuardado);
 
         } catch (Exception e) {
@@ -197,9 +223,12 @@ public class ProductoController {
             @RequestParam(value = "imagenes", required = false) List<MultipartFile> imagenes) {
 
         try {
-            Producto productoExistente = productoService.obtenerPorId(id);
+            Producto productoExistente = productoService.obtenerParaEdicion(id);
             Usuario vendedor = productoExistente.getVendedor();
 
+            // Imágenes actuales, antes de editar la instancia (se liberan las que queden reemplazadas)
+            List<String> imagenesAnteriores = ImagenUtil.imagenesDe(productoExistente);
+
             // Actualizar solo los campos que vienen en la request
             if (nombre != null) productoExistente.setNombre(nombre);
             if (descripcion != null) productoExistente.setDescripcion(descripcion);
@@ -217,8 +246,12 @@ public class ProductoController {
                 vendedor.setDeunaNumero(deunaNumero);
             }
             
+            List<String> qrReemplazados = new ArrayList<>();
             if (deunaQr != null && !deunaQr.isEmpty()) {
+                qrReemplazados.add(productoExistente.getDeunaQrUrl());
+                qrReemplazados.add(vendedor.getDeunaQrUrl());
                 String qrUrl = guardarImagen(deunaQr);
+                almacenArchivosService.retener(qrUrl); // producto y vendedor cuentan cada uno su referencia
                 productoExistente.setDeunaQrUrl(qrUrl);
                 vendedor.setDeunaQrUrl(qrUrl);
             }
@@ -248,7 +281,8 @@ public class ProductoController {
                 if (imagenesUrls.size() > 4) productoExistente.setImagenUrl5(imagenesUrls.get(4));
             }
 
-            Producto actualizado = productoService.actualizarProducto(id, productoExistente);
+            Producto actualizado = productoService.actualizarProducto(id, productoExistente, imagenesAnteriores);
+            liberarQr(qrReemplazados);
             return ResponseEntity.ok(actualizado);
 
         } catch (Exception e) {
@@ -257,40 +291,28 @@ public class ProductoController {
         }
     }
 
-    // MÉTODO PARA GUARDAR IMÁGENES
+    // MÉTODO PARA GUARDAR IMÁGENES (almacén direccionado por contenido: las repetidas no se duplican)
     private String guardarImagen(MultipartFile imagen) throws IOException {
-        String uploadDir = System.getProperty("user.dir") + File.separator + "uploads" + File.separator + "productos" + File.separator;
-        File directory = new File(uploadDir);
+        String url = almacenArchivosService.guardar(imagen);
+        System.out.println("✅ Imagen guardada en: " + url);
+        return url;
+    }
 
-        if (!directory.exists()) {
-            boolean created = directory.mkdirs();
-            if (!created) {
-                throw new IOException("No se pudo crear el directorio: " + uploadDir);
+    // QR reemplazados: cada uno pierde la referencia de quien lo tenía. Si se volvió a subir el mismo archivo,
+    // la subida ya sumó una referencia nueva, así que se libera igual
+    private void liberarQr(List<String> reemplazados) {
+        for (String url : reemplazados) {
+            if (url != null) {
+                almacenArchivosService.liberar(url);
             }
         }
-
-        String extension = "";
-        String originalFilename = imagen.getOriginalFilename();
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        }
-
-        String fileName = System.currentTimeMillis() + "_" + UUID.randomUUID().toString() + extension;
-        String filePath = uploadDir + fileName;
-
-        File file = new File(filePath);
-        imagen.transferTo(file);
-
-        System.out.println("✅ Imagen guardada en: " + filePath);
-
-        return "/uploads/productos/" + fileName;
     }
 
     // CAMBIAR ESTADO DEL PRODUCTO (ACTIVO/OCULTO)
     @PutMapping("/{id}/estado")
     public ResponseEntity<?> cambiarEstado(@PathVariable Long id, @RequestParam String nuevoEstado) {
         try {
-            Producto producto = productoService.obtenerPorId(id);
+            Producto producto = productoService.obtenerParaEdicion(id);
             producto.setEstado(nuevoEstado);
             Producto actualizado = productoService.actualizarProducto(id, producto);
             return ResponseEntity.ok(actualizado);
@@ -329,30 +351,60 @@ public class ProductoController {
 
     // Búsqueda por nombre
     @GetMapping("/buscar")
-    public ResponseEntity<List<Producto>> buscar(@RequestParam String nombre) {
-        return ResponseEntity.ok(productoService.buscarPorNombre(nombre));
+    public ResponseEntity<List<Producto>> buscar(
+            @RequestParam String nombre,
+            @RequestParam(required = false, defaultValue = "0") Integer pagina,
+            @RequestParam(required = false) Integer limite) {
+        return ResponseEntity.ok(productoService.buscarPorNombre(nombre, pagina, limite));
     }
 
-    // 🆕 ENDPOINT PÚBLICO PARA EL CATÁLOGO
+    // 🆕 ENDPOINT PÚBLICO PARA EL CATÁLOGO (snapshot pre-serializado con ETag)
     @GetMapping("/public")
-    public ResponseEntity<List<Producto>> getProductosPublicos() {
+    public ResponseEntity<?> getProductosPublicos(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            List<Producto> productos = productoRepository.findByEstado("ACTIVO");
-            return ResponseEntity.ok(productos);
+            CatalogoSnapshotService.Snapshot snapshot = catalogoSnapshotService.productos();
+            if (snapshot != null) {
+                return SnapshotHttpUtil.responder(snapshot, ifNoneMatch, acceptEncoding);
+            }
+            return ResponseEntity.ok(productoService.obtenerTarjetasActivas());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // 🆕 CATÁLOGO PÚBLICO PAGINADO (cursor + filtros combinados en una sola consulta)
+    @GetMapping("/public/catalogo")
+    public ResponseEntity<?> getCatalogoPaginado(
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) String ubicacion,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(required = false) String estadoProducto,
+            @RequestParam(required = false) Boolean disponibilidad,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            PaginaCursor<ProductoTarjeta> pagina = productoService.obtenerCatalogoPaginado(
+                    tipo, ubicacion, precioMin, precioMax, estadoProducto, disponibilidad, cursor, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
     // 🆕 ENDPOINT PÚBLICO PARA PRODUCTO INDIVIDUAL
     @GetMapping("/public/{id}")
     public ResponseEntity<Producto> getProductoPublico(@PathVariable Long id) {
         try {
-            Optional<Producto> producto = productoRepository.findById(id);
-            if (producto.isPresent() && "ACTIVO".equals(producto.get().getEstado())) {
-                return ResponseEntity.ok(producto.get());
+            Producto producto = productoService.obtenerPorId(id);
+            if ("ACTIVO".equals(producto.getEstado())) {
+                return ResponseEntity.ok(producto);
             }
             return ResponseEntity.notFound().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -7,6 +7,8 @@ import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -17,16 +19,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.tuempresa.appventas.dto.ResultadoFacetas;
 import com.tuempresa.appventas.model.Servicio;
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.ServicioRepository;
 import com.tuempresa.appventas.repository.UsuarioRepository;
+import com.tuempresa.appventas.service.AlmacenArchivosService;
+import com.tuempresa.appventas.service.CatalogoSnapshotService;
+import com.tuempresa.appventas.service.FacetasServicioService;
 import com.tuempresa.appventas.service.ServicioService;
+import com.tuempresa.appventas.util.SnapshotHttpUtil;
 
 @RestController
 @RequestMapping("/api/servicios")
@@ -42,6 +50,21 @@ public class ServicioController {
     @Autowired
     private ServicioRepository servicioRepository;
 
+    @Autowired
+    private FacetasServicioService facetasServicioService;
+
+    @Autowired
+    private CatalogoSnapshotService catalogoSnapshotService;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
+
+    @Value("${app.catalogo.limite-por-defecto:20}")
+    private int limitePorDefecto;
+
+    @Value("${app.catalogo.limite-maximo:100}")
+    private int limiteMaximo;
+
     @GetMapping
     public ResponseEntity<?> obtenerTodosLosServicios() {
         try {
@@ -75,6 +98,18 @@ public class ServicioController {
         }
     }
 
+    // Varios servicios en una sola llamada; mismo orden que los IDs, null donde no existe
+    @PostMapping("/batch")
+    public ResponseEntity<?> obtenerServiciosPorIds(@RequestBody List<Long> ids) {
+        try {
+            return ResponseEntity.ok(servicioService.obtenerServiciosPorIds(ids));
+        } catch (RuntimeException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/vendedor/{vendedorId}")
     public ResponseEntity<?> obtenerServiciosPorVendedor(@PathVariable Long vendedorId) {
         try {
@@ -166,33 +201,9 @@ public class ServicioController {
                 servicio.setDeunaNumero(deunaNumero);
             }
             
-            // Nota: ServicioService.crearServicio maneja las imágenes, pero no el QR específico de Deuna
-            // Necesitamos manejar el QR aquí o modificar el servicio.
-            // Para simplificar, guardaremos el QR aquí y lo setearemos antes de llamar al servicio.
-            
+            // QR de Deuna: el almacén valida formato (magic bytes) y tamaño mientras copia
             if (deunaQr != null && !deunaQr.isEmpty()) {
-                // Usamos un método helper para guardar (duplicado de ProductoController o movido a un util)
-                // Como no tengo acceso fácil a ProductoController.guardarImagen desde aquí sin hacerlo público estático,
-                // implementaré una lógica similar o asumiré que ServicioService puede manejarlo si lo modifico.
-                // Mejor opción: Implementar lógica de guardado aquí mismo.
-                
-                String uploadDir = System.getProperty("user.dir") + java.io.File.separator + "uploads" + java.io.File.separator + "servicios" + java.io.File.separator;
-                java.io.File directory = new java.io.File(uploadDir);
-                if (!directory.exists()) directory.mkdirs();
-                
-                String extension = "";
-                String originalFilename = deunaQr.getOriginalFilename();
-                if (originalFilename != null && originalFilename.contains(".")) {
-                    extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                }
-                
-                String fileName = System.currentTimeMillis() + "_qr_" + java.util.UUID.randomUUID().toString() + extension;
-                String filePath = uploadDir + fileName;
-                
-                java.io.File file = new java.io.File(filePath);
-                deunaQr.transferTo(file);
-                
-                servicio.setDeunaQrUrl("/uploads/servicios/" + fileName);
+                servicio.setDeunaQrUrl(almacenArchivosService.guardar(deunaQr));
             }
 
             Servicio servicioCreado = servicioService.crearServicio(servicio, imagenes);
@@ -244,24 +255,9 @@ public class ServicioController {
                 servicioActualizado.setDeunaNumero(deunaNumero);
             }
             
+            // El QR anterior se libera en ServicioService al reemplazarlo
             if (deunaQr != null && !deunaQr.isEmpty()) {
-                String uploadDir = System.getProperty("user.dir") + java.io.File.separator + "uploads" + java.io.File.separator + "servicios" + java.io.File.separator;
-                java.io.File directory = new java.io.File(uploadDir);
-                if (!directory.exists()) directory.mkdirs();
-                
-                String extension = "";
-                String originalFilename = deunaQr.getOriginalFilename();
-                if (originalFilename != null && originalFilename.contains(".")) {
-                    extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                }
-                
-                String fileName = System.currentTimeMillis() + "_qr_" + java.util.UUID.randomUUID().toString() + extension;
-                String filePath = uploadDir + fileName;
-                
-                java.io.File file = new java.io.File(filePath);
-                deunaQr.transferTo(file);
-                
-                servicioActualizado.setDeunaQrUrl("/uploads/servicios/" + fileName);
+                servicioActualizado.setDeunaQrUrl(almacenArchivosService.guardar(deunaQr));
             }
 
             Servicio servicio = servicioService.actualizarServicio(id, servicioActualizado, imagenes);
@@ -301,9 +297,7 @@ public class ServicioController {
             Optional<Servicio> servicioOpt = servicioService.obtenerServicioPorId(id);
 
             if (servicioOpt.isPresent()) {
-                Servicio servicio = servicioOpt.get();
-                servicio.setEstado(nuevoEstado);
-                Servicio servicioActualizado = servicioRepository.save(servicio);
+                Servicio servicioActualizado = servicioService.cambiarEstadoServicio(id, nuevoEstado);
                 return ResponseEntity.ok(servicioActualizado);
             } else {
                 Map<String, String> error = new HashMap<>();
@@ -336,7 +330,7 @@ public class ServicioController {
     @PatchMapping("/{id}")
     public ResponseEntity<?> actualizarServicioSimple(@PathVariable Long id, @RequestBody Servicio servicioActualizado) {
         try {
-            Optional<Servicio> servicioExistente = servicioService.obtenerServicioPorId(id);
+            Optional<Servicio> servicioExistente = servicioService.obtenerServicioParaEdicion(id);
 
             if (servicioExistente.isPresent()) {
                 Servicio servicio = servicioExistente.get();
@@ -378,7 +372,7 @@ public class ServicioController {
                     servicio.setCondiciones(servicioActualizado.getCondiciones());
                 }
 
-                Servicio servicioGuardado = servicioRepository.save(servicio);
+                Servicio servicioGuardado = servicioService.guardarCambios(servicio);
                 return ResponseEntity.ok(servicioGuardado);
             } else {
                 Map<String, String> error = new HashMap<>();
@@ -421,23 +415,49 @@ public class ServicioController {
         }
     }
 
-    // 🆕 ENDPOINT PÚBLICO PARA EL CATÁLOGO
+    // 🆕 ENDPOINT PÚBLICO PARA EL CATÁLOGO (snapshot pre-serializado con ETag)
     @GetMapping("/public")
-    public ResponseEntity<List<Servicio>> getServiciosPublicos() {
+    public ResponseEntity<?> getServiciosPublicos(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            List<Servicio> servicios = servicioRepository.findByActivoTrueAndEstado("ACTIVO");
-            return ResponseEntity.ok(servicios);
+            CatalogoSnapshotService.Snapshot snapshot = catalogoSnapshotService.servicios();
+            if (snapshot != null) {
+                return SnapshotHttpUtil.responder(snapshot, ifNoneMatch, acceptEncoding);
+            }
+            return ResponseEntity.ok(servicioService.obtenerTarjetasActivas());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // 🆕 FACETAS DEL CATÁLOGO PÚBLICO (conteos + página de IDs, sin consultar la BD)
+    @GetMapping("/public/facetas")
+    public ResponseEntity<?> getFacetasServicios(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String ciudad,
+            @RequestParam(required = false) String modalidad,
+            @RequestParam(required = false, defaultValue = "0") Integer pagina,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            int numero = Math.max(pagina, 0);
+            int tamanio = (limite == null || limite < 1) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+            ResultadoFacetas resultado = facetasServicioService.consultar(categoria, ciudad, modalidad, numero, tamanio);
+            return ResponseEntity.ok(resultado);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", "Error al obtener facetas de servicios");
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     // 🆕 ENDPOINT PÚBLICO PARA SERVICIO INDIVIDUAL
     @GetMapping("/public/{id}")
     public ResponseEntity<Servicio> getServicioPublico(@PathVariable Long id) {
         try {
-            Optional<Servicio> servicio = servicioRepository.findById(id);
-            if (servicio.isPresent() && servicio.get().getActivo() && "ACTIVO".equals(servicio.get().getEstado())) {
+            Optional<Servicio> servicio = servicioService.obtenerServicioPorId(id);
+            if (servicio.isPresent() && "ACTIVO".equals(servicio.get().getEstado())) {
                 return ResponseEntity.ok(servicio.get());
             }
             return ResponseEntity.notFound().build();
@@ -1,15 +1,10 @@
 package com.tuempresa.appventas.controller;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -24,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.tuempresa.appventas.model.Usuario;
+import com.tuempresa.appventas.service.AlmacenArchivosService;
 import com.tuempresa.appventas.service.UsuarioService;
 
 @RestController
@@ -32,15 +28,11 @@ import com.tuempresa.appventas.service.UsuarioService;
 public class UsuarioController {
 
     private final UsuarioService usuarioService;
-    private final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/usuarios/";
+    private final AlmacenArchivosService almacenArchivosService;
 
-    public UsuarioController(UsuarioService usuarioService) {
+    public UsuarioController(UsuarioService usuarioService, AlmacenArchivosService almacenArchivosService) {
         this.usuarioService = usuarioService;
-        // Crear directorio si no existe
-        File uploadDir = new File(UPLOAD_DIR);
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
-        }
+        this.almacenArchivosService = almacenArchivosService;
     }
 
     // OBTENER TODOS LOS USUARIOS
@@ -118,29 +110,24 @@ public class UsuarioController {
                 return ResponseEntity.badRequest().body("No se recibió ningún archivo");
             }
 
-            // Validar tipo de archivo
-            String contentType = archivo.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
-                return ResponseEntity.badRequest().body("El archivo debe ser una imagen");
-            }
-
-            // Generar nombre único
-            String extension = archivo.getOriginalFilename().substring(archivo.getOriginalFilename().lastIndexOf("."));
-            String fileName = "qr_" + id + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
-            
-            Path path = Paths.get(UPLOAD_DIR + fileName);
-            Files.write(path, archivo.getBytes());
-            
-            String qrUrl = "/uploads/usuarios/" + fileName;
+            // El almacén valida formato (magic bytes) y tamaño mientras copia
+            String qrUrl = almacenArchivosService.guardar(archivo);
             
             Usuario usuario = optUsuario.get();
+            String qrAnterior = usuario.getDeunaQrUrl();
             usuario.setDeunaQrUrl(qrUrl);
             usuarioService.guardar(usuario);
+            // El QR reemplazado deja de tener esta referencia (el mismo archivo subido de nuevo ya sumó otra)
+            if (qrAnterior != null) {
+                almacenArchivosService.liberar(qrAnterior);
+            }
             
             Map<String, String> response = new HashMap<>();
             response.put("qrUrl", qrUrl);
             return ResponseEntity.ok(response);
             
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (IOException e) {
             return ResponseEntity.internalServerError().body("Error al guardar el archivo");
         }
@@ -0,0 +1,7 @@
+package com.tuempresa.appventas.dto;
+
+// Producto del carrito que cambió desde que el comprador lo agregó: otro precio, menos stock que la cantidad
+// pedida, o ya no existe (precioActual y stockDisponible en null)
+public record CambioCarrito(Long productoId, Double precioVisto, Double precioActual,
+                            Integer cantidad, Integer stockDisponible) {
+}
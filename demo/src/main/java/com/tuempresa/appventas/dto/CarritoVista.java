@@ -0,0 +1,8 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.List;
+
+// Carrito tal como lo ve el comprador: se arma con el contenido en memoria (CarritoMemoriaService)
+// y los productos de la caché de detalle, sin tocar las tablas del carrito.
+public record CarritoVista(Long id, Long usuarioId, List<ItemCarritoVista> items, Double total) {
+}
@@ -0,0 +1,9 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.Date;
+
+// Confirmación de lectura que se envía por WebSocket al otro participante: el lector vio todos los
+// mensajes recibidos de la conversación hasta hastaMensajeId (inclusive).
+public record ConfirmacionLectura(String conversacionId, Long lectorId, Long remitenteId,
+                                  Long hastaMensajeId, int mensajesLeidos, Date fechaLeido) {
+}
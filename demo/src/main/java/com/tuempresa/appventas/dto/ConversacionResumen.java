@@ -0,0 +1,12 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.Date;
+
+// Entrada de la bandeja de un usuario: la conversación con los datos del otro participante y del
+// producto o servicio del último mensaje, leída de la tabla conversaciones en una sola consulta.
+public record ConversacionResumen(String conversacionId, Long otroUsuarioId, String otroUsuarioNombre,
+                                  String otroUsuarioApellido, String otroUsuarioEmail,
+                                  Long ultimoMensajeId, Long ultimoRemitenteId, String ultimoMensaje,
+                                  Date fechaUltimoMensaje, int noLeidos,
+                                  Long productoId, String productoNombre, Long servicioId, String servicioTitulo) {
+}
@@ -0,0 +1,7 @@
+package com.tuempresa.appventas.dto;
+
+import com.tuempresa.appventas.model.Producto;
+
+// Línea del carrito: el producto (con su vendedor) y la cantidad pedida
+public record ItemCarritoVista(Producto producto, Integer cantidad, Double precioUnitario, Double subtotal) {
+}
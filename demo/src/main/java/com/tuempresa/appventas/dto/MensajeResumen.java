@@ -0,0 +1,10 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.Date;
+
+// Mensaje del historial de una conversación: solo columnas de la tabla mensajes, sin cargar
+// remitente, destinatario, producto ni servicio (los datos del otro usuario ya están en la bandeja).
+public record MensajeResumen(Long id, String conversacionId, Long remitenteId, Long destinatarioId,
+                             Long productoId, Long servicioId, String contenido, String imageUrl,
+                             Date fechaEnvio, Boolean leido, Date fechaLeido) {
+}
@@ -0,0 +1,17 @@
+package com.tuempresa.appventas.dto;
+
+// Nombre visible del vendedor en las tarjetas del catálogo
+final class NombreVendedor {
+
+    private NombreVendedor() {}
+
+    static String mostrar(String nombre, String apellido) {
+        if (nombre == null || nombre.isBlank()) {
+            return apellido;
+        }
+        if (apellido == null || apellido.isBlank()) {
+            return nombre;
+        }
+        return nombre + " " + apellido;
+    }
+}
@@ -0,0 +1,28 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.List;
+
+// Página de resultados para listados paginados por cursor
+public class PaginaCursor<T> {
+
+    private List<T> items;
+    private String siguienteCursor; // null si no hay más resultados
+    private boolean hayMas;
+
+    public PaginaCursor() {}
+
+    public PaginaCursor(List<T> items, String siguienteCursor, boolean hayMas) {
+        this.items = items;
+        this.siguienteCursor = siguienteCursor;
+        this.hayMas = hayMas;
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+
+    public String getSiguienteCursor() { return siguienteCursor; }
+    public void setSiguienteCursor(String siguienteCursor) { this.siguienteCursor = siguienteCursor; }
+
+    public boolean isHayMas() { return hayMas; }
+    public void setHayMas(boolean hayMas) { this.hayMas = hayMas; }
+}
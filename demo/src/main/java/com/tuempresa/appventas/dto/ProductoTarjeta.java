@@ -0,0 +1,18 @@
+package com.tuempresa.appventas.dto;
+
+// Tarjeta del catálogo público de productos: solo lo que se muestra en el listado.
+// Los nombres coinciden con los de la entidad para que el frontend no cambie;
+// imagenUrl1 trae la primera imagen disponible y miniaturaUrl su versión reducida (si ya se generó).
+// El detalle completo se pide aparte.
+public record ProductoTarjeta(Long id, String nombre, double precio, String imagenUrl1, String miniaturaUrl, String ubicacion,
+                              String tipo, String estado, String estadoProducto,
+                              Long vendedorId, String vendedorNombre, Double vendedorCalificacion) {
+
+    // Constructor usado por las consultas JPQL (nombre y apellido del vendedor por separado)
+    public ProductoTarjeta(Long id, String nombre, double precio, String imagenUrl1, String miniaturaUrl, String ubicacion,
+                           String tipo, String estado, String estadoProducto,
+                           Long vendedorId, String vendedorNombre, String vendedorApellido, Double vendedorCalificacion) {
+        this(id, nombre, precio, imagenUrl1, miniaturaUrl, ubicacion, tipo, estado, estadoProducto,
+                vendedorId, NombreVendedor.mostrar(vendedorNombre, vendedorApellido), vendedorCalificacion);
+    }
+}
@@ -0,0 +1,38 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.List;
+import java.util.Map;
+
+// Respuesta de /api/buscar: página de coincidencias y conteos por faceta
+public class ResultadoBusqueda {
+
+    private long total;
+    private int pagina;
+    private List<Coincidencia> items;
+    private Map<String, Map<String, Long>> facetas; // faceta -> valor -> cantidad
+
+    public ResultadoBusqueda() {}
+
+    public ResultadoBusqueda(long total, int pagina, List<Coincidencia> items, Map<String, Map<String, Long>> facetas) {
+        this.total = total;
+        this.pagina = pagina;
+        this.items = items;
+        this.facetas = facetas;
+    }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public int getPagina() { return pagina; }
+    public void setPagina(int pagina) { this.pagina = pagina; }
+
+    public List<Coincidencia> getItems() { return items; }
+    public void setItems(List<Coincidencia> items) { this.items = items; }
+
+    public Map<String, Map<String, Long>> getFacetas() { return facetas; }
+    public void setFacetas(Map<String, Map<String, Long>> facetas) { this.facetas = facetas; }
+
+    // Datos mínimos para pintar una tarjeta; el detalle se pide a /public/{id}
+    public record Coincidencia(String tipoItem, Long id, String titulo, String categoria,
+                               String ciudad, Double precio, String imagen, double puntaje) {}
+}
@@ -0,0 +1,34 @@
+package com.tuempresa.appventas.dto;
+
+import java.util.List;
+import java.util.Map;
+
+// Respuesta de /api/servicios/public/facetas: conteos por faceta y una página de IDs
+public class ResultadoFacetas {
+
+    private long total;
+    private int pagina;
+    private List<Long> ids;
+    private Map<String, Map<String, Long>> facetas; // faceta -> valor -> cantidad
+
+    public ResultadoFacetas() {}
+
+    public ResultadoFacetas(long total, int pagina, List<Long> ids, Map<String, Map<String, Long>> facetas) {
+        this.total = total;
+        this.pagina = pagina;
+        this.ids = ids;
+        this.facetas = facetas;
+    }
+
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+
+    public int getPagina() { return pagina; }
+    public void setPagina(int pagina) { this.pagina = pagina; }
+
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+
+    public Map<String, Map<String, Long>> getFacetas() { return facetas; }
+    public void setFacetas(Map<String, Map<String, Long>> facetas) { this.facetas = facetas; }
+}
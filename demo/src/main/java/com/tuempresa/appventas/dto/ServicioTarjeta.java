@@ -0,0 +1,21 @@
+package com.tuempresa.appventas.dto;
+
+import java.math.BigDecimal;
+
+import com.tuempresa.appventas.util.ImagenUtil;
+
+// Tarjeta del catálogo público de servicios: solo lo que se muestra en el listado.
+// imagenes conserva el formato de la entidad (arreglo JSON) pero solo con la primera imagen;
+// miniaturaUrl es su versión reducida, si ya se generó.
+public record ServicioTarjeta(Long id, String titulo, BigDecimal precio, String tipoPrecio, String imagenes, String miniaturaUrl,
+                              String ciudad, String categoria, String modalidad,
+                              Long vendedorId, String vendedorNombre, Double vendedorCalificacion) {
+
+    // Constructor usado por las consultas JPQL (nombre y apellido del vendedor por separado)
+    public ServicioTarjeta(Long id, String titulo, BigDecimal precio, String tipoPrecio, String imagenes, String miniaturaUrl,
+                           String ciudad, String categoria, String modalidad,
+                           Long vendedorId, String vendedorNombre, String vendedorApellido, Double vendedorCalificacion) {
+        this(id, titulo, precio, tipoPrecio, ImagenUtil.soloPrimeraImagen(imagenes), miniaturaUrl, ciudad, categoria, modalidad,
+                vendedorId, NombreVendedor.mostrar(vendedorNombre, vendedorApellido), vendedorCalificacion);
+    }
+}
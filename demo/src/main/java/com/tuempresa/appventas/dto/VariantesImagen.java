@@ -0,0 +1,10 @@
+package com.tuempresa.appventas.dto;
+
+// URLs de las versiones redimensionadas de una imagen subida.
+// Todas null si el original no se pudo decodificar (se sirve tal cual).
+public record VariantesImagen(String miniatura, String mediana, String grande) {
+
+    public static VariantesImagen vacia() {
+        return new VariantesImagen(null, null, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.tuempresa.appventas.event;
+
+import java.util.Map;
+
+// Evento publicado al confirmarse un pedido hecho desde el carrito.
+// Lo consume CarritoMemoriaService para descontar del carrito en memoria lo que se compró (después del commit,
+// así un pedido rechazado deja el carrito intacto).
+public class CarritoCompradoEvent {
+
+    private final Long usuarioId;
+    private final Map<Long, Integer> cantidades; // productoId -> cantidad comprada
+
+    public CarritoCompradoEvent(Long usuarioId, Map<Long, Integer> cantidades) {
+        this.usuarioId = usuarioId;
+        this.cantidades = Map.copyOf(cantidades);
+    }
+
+    public Long getUsuarioId() { return usuarioId; }
+    public Map<Long, Integer> getCantidades() { return cantidades; }
+}
@@ -0,0 +1,28 @@
+package com.tuempresa.appventas.event;
+
+// Evento publicado cuando cambia la cantidad de mensajes sin leer de un usuario.
+// Lo consume el contador en memoria que se empuja por WebSocket (ContadorNoLeidosService).
+public class NoLeidosModificadosEvent {
+
+    private final Long usuarioId;
+    private final long diferencia;
+    private final boolean recalcular; // true si el cambio no es una suma simple (conversación borrada o reconstruida)
+
+    private NoLeidosModificadosEvent(Long usuarioId, long diferencia, boolean recalcular) {
+        this.usuarioId = usuarioId;
+        this.diferencia = diferencia;
+        this.recalcular = recalcular;
+    }
+
+    public static NoLeidosModificadosEvent sumar(Long usuarioId, long diferencia) {
+        return new NoLeidosModificadosEvent(usuarioId, diferencia, false);
+    }
+
+    public static NoLeidosModificadosEvent recalcular(Long usuarioId) {
+        return new NoLeidosModificadosEvent(usuarioId, 0, true);
+    }
+
+    public Long getUsuarioId() { return usuarioId; }
+    public long getDiferencia() { return diferencia; }
+    public boolean isRecalcular() { return recalcular; }
+}
@@ -0,0 +1,48 @@
+package com.tuempresa.appventas.event;
+
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Servicio;
+
+// Evento publicado cuando un producto o servicio se crea, modifica, oculta o elimina.
+// Lo consumen las estructuras en memoria derivadas del catálogo (índice de búsqueda, etc.)
+public class PublicacionModificadaEvent {
+
+    public enum Tipo { PRODUCTO, SERVICIO }
+
+    private final Tipo tipo;
+    private final Long id;
+    private final Producto producto; // null si no es un producto o si se eliminó
+    private final Servicio servicio; // null si no es un servicio o si se eliminó
+
+    private PublicacionModificadaEvent(Tipo tipo, Long id, Producto producto, Servicio servicio) {
+        this.tipo = tipo;
+        this.id = id;
+        this.producto = producto;
+        this.servicio = servicio;
+    }
+
+    public static PublicacionModificadaEvent de(Producto producto) {
+        return new PublicacionModificadaEvent(Tipo.PRODUCTO, producto.getId(), producto, null);
+    }
+
+    public static PublicacionModificadaEvent de(Servicio servicio) {
+        return new PublicacionModificadaEvent(Tipo.SERVICIO, servicio.getId(), null, servicio);
+    }
+
+    public static PublicacionModificadaEvent productoEliminado(Long id) {
+        return new PublicacionModificadaEvent(Tipo.PRODUCTO, id, null, null);
+    }
+
+    public static PublicacionModificadaEvent servicioEliminado(Long id) {
+        return new PublicacionModificadaEvent(Tipo.SERVICIO, id, null, null);
+    }
+
+    public Tipo getTipo() { return tipo; }
+    public Long getId() { return id; }
+    public Producto getProducto() { return producto; }
+    public Servicio getServicio() { return servicio; }
+
+    public boolean isEliminado() {
+        return producto == null && servicio == null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.tuempresa.appventas.event;
+
+import java.util.Collection;
+import java.util.List;
+
+// Evento publicado cuando un pedido reserva o devuelve stock de varios productos.
+// Solo cambia la cantidad disponible: el snapshot del catálogo, el índice de búsqueda y las imágenes no dependen
+// de ella, así que lo consume únicamente la caché de detalle (CatalogoCacheService), con un evento por pedido.
+public class StockModificadoEvent {
+
+    private final List<Long> productoIds;
+
+    public StockModificadoEvent(Collection<Long> productoIds) {
+        this.productoIds = List.copyOf(productoIds);
+    }
+
+    public List<Long> getProductoIds() { return productoIds; }
+}
@@ -0,0 +1,75 @@
+package com.tuempresa.appventas.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+// Archivo subido, identificado por el SHA-256 de su contenido (ver AlmacenArchivosService).
+// referencias cuenta cuántas veces se subió y sigue en uso; en 0 es candidato a borrarse.
+@Entity
+@Table(name = "archivos")
+public class Archivo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64, nullable = false, unique = true)
+    private String hash;
+
+    @Column(length = 500, nullable = false)
+    private String url;
+
+    private Long tamanio;
+
+    @Column(length = 100)
+    private String tipoContenido;
+
+    private int referencias = 1;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaCreacion = new Date();
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaActualizacion = new Date();
+
+    public Archivo() {}
+
+    public Archivo(String hash, String url, Long tamanio, String tipoContenido) {
+        this.hash = hash;
+        this.url = url;
+        this.tamanio = tamanio;
+        this.tipoContenido = tipoContenido;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public Long getTamanio() { return tamanio; }
+    public void setTamanio(Long tamanio) { this.tamanio = tamanio; }
+
+    public String getTipoContenido() { return tipoContenido; }
+    public void setTipoContenido(String tipoContenido) { this.tipoContenido = tipoContenido; }
+
+    public int getReferencias() { return referencias; }
+    public void setReferencias(int referencias) { this.referencias = referencias; }
+
+    public Date getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+
+    public Date getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(Date fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+}
@@ -0,0 +1,97 @@
+package com.tuempresa.appventas.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.UniqueConstraint;
+
+// Fila de la bandeja de entrada: una por conversación y participante.
+// Es una vista materializada de la tabla mensajes que ConversacionService mantiene en la misma transacción
+// que cada envío y cada lectura, para que la bandeja y el contador de no leídos no recorran los mensajes.
+// Las referencias van como ids sueltos (sin claves foráneas) para no bloquear el borrado de productos o servicios.
+@Entity
+@Table(name = "conversaciones", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_conversaciones_usuario", columnNames = {"usuarioId", "conversacionId"})
+}, indexes = {
+        @Index(name = "idx_conversaciones_bandeja", columnList = "usuarioId, ultimoMensajeId")
+})
+public class Conversacion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 100, nullable = false)
+    private String conversacionId;
+
+    @Column(nullable = false)
+    private Long usuarioId; // dueño de esta fila de la bandeja
+
+    @Column(nullable = false)
+    private Long otroUsuarioId;
+
+    private Long ultimoMensajeId;
+
+    private Long ultimoRemitenteId;
+
+    @Column(length = 255)
+    private String vistaPrevia;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaUltimoMensaje;
+
+    private int noLeidos = 0;
+
+    private Long productoId; // producto del último mensaje (opcional)
+
+    private Long servicioId; // servicio del último mensaje (opcional)
+
+    public Conversacion() {}
+
+    public Conversacion(String conversacionId, Long usuarioId, Long otroUsuarioId) {
+        this.conversacionId = conversacionId;
+        this.usuarioId = usuarioId;
+        this.otroUsuarioId = otroUsuarioId;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getConversacionId() { return conversacionId; }
+    public void setConversacionId(String conversacionId) { this.conversacionId = conversacionId; }
+
+    public Long getUsuarioId() { return usuarioId; }
+    public void setUsuarioId(Long usuarioId) { this.usuarioId = usuarioId; }
+
+    public Long getOtroUsuarioId() { return otroUsuarioId; }
+    public void setOtroUsuarioId(Long otroUsuarioId) { this.otroUsuarioId = otroUsuarioId; }
+
+    public Long getUltimoMensajeId() { return ultimoMensajeId; }
+    public void setUltimoMensajeId(Long ultimoMensajeId) { this.ultimoMensajeId = ultimoMensajeId; }
+
+    public Long getUltimoRemitenteId() { return ultimoRemitenteId; }
+    public void setUltimoRemitenteId(Long ultimoRemitenteId) { this.ultimoRemitenteId = ultimoRemitenteId; }
+
+    public String getVistaPrevia() { return vistaPrevia; }
+    public void setVistaPrevia(String vistaPrevia) { this.vistaPrevia = vistaPrevia; }
+
+    public Date getFechaUltimoMensaje() { return fechaUltimoMensaje; }
+    public void setFechaUltimoMensaje(Date fechaUltimoMensaje) { this.fechaUltimoMensaje = fechaUltimoMensaje; }
+
+    public int getNoLeidos() { return noLeidos; }
+    public void setNoLeidos(int noLeidos) { this.noLeidos = noLeidos; }
+
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Long getServicioId() { return servicioId; }
+    public void setServicioId(Long servicioId) { this.servicioId = servicioId; }
+}
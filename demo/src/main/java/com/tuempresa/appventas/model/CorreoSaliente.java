@@ -0,0 +1,115 @@
+package com.tuempresa.appventas.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+// Correo en la bandeja de salida. EmailService lo inserta (en la transacción de quien lo pide) y
+// CorreoDespachoService lo envía con reintentos; tras agotarlos queda en FALLIDO (cola de descarte).
+@Entity
+@Table(name = "correos_salientes", indexes = {
+        @Index(name = "idx_correos_despacho", columnList = "estado, proximoIntento, id")
+})
+public class CorreoSaliente {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String ENVIANDO = "ENVIANDO";
+    public static final String ENVIADO = "ENVIADO";
+    public static final String FALLIDO = "FALLIDO";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 30)
+    private String tipo; // VERIFICACION, BIENVENIDA, RECUPERACION, CAMBIO_PASSWORD, AVISO_MENSAJES
+
+    @Column(nullable = false)
+    private String destinatario;
+
+    @Column(nullable = false)
+    private String dominio; // parte del email después de @, para limitar envíos simultáneos por proveedor
+
+    private String asunto;
+
+    @Column(columnDefinition = "TEXT")
+    private String cuerpo;
+
+    @Column(length = 20, nullable = false)
+    private String estado = PENDIENTE;
+
+    private int intentos = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date proximoIntento = new Date();
+
+    @Column(length = 500)
+    private String ultimoError;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaCreacion = new Date();
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaEnvio;
+
+    // Cuándo lo tomó un despachador (ENVIANDO): pasado el plazo se da por abandonado
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaTomado;
+
+    public CorreoSaliente() {}
+
+    public CorreoSaliente(String tipo, String destinatario, String asunto, String cuerpo) {
+        this.tipo = tipo;
+        this.destinatario = destinatario;
+        this.dominio = destinatario.substring(destinatario.lastIndexOf('@') + 1).toLowerCase();
+        this.asunto = asunto;
+        this.cuerpo = cuerpo;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public String getDestinatario() { return destinatario; }
+    public void setDestinatario(String destinatario) { this.destinatario = destinatario; }
+
+    public String getDominio() { return dominio; }
+    public void setDominio(String dominio) { this.dominio = dominio; }
+
+    public String getAsunto() { return asunto; }
+    public void setAsunto(String asunto) { this.asunto = asunto; }
+
+    public String getCuerpo() { return cuerpo; }
+    public void setCuerpo(String cuerpo) { this.cuerpo = cuerpo; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public int getIntentos() { return intentos; }
+    public void setIntentos(int intentos) { this.intentos = intentos; }
+
+    public Date getProximoIntento() { return proximoIntento; }
+    public void setProximoIntento(Date proximoIntento) { this.proximoIntento = proximoIntento; }
+
+    public String getUltimoError() { return ultimoError; }
+    public void setUltimoError(String ultimoError) { this.ultimoError = ultimoError; }
+
+    public Date getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+
+    public Date getFechaEnvio() { return fechaEnvio; }
+    public void setFechaEnvio(Date fechaEnvio) { this.fechaEnvio = fechaEnvio; }
+
+    public Date getFechaTomado() { return fechaTomado; }
+    public void setFechaTomado(Date fechaTomado) { this.fechaTomado = fechaTomado; }
+}
@@ -9,12 +9,16 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 
 @Entity
 @Table(name = "detalles_pedido")
 public class DetallePedido {
+    // Ids por bloques, igual que Pedido
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "detalles_pedido_gen")
+    @TableGenerator(name = "detalles_pedido_gen", table = "id_generadores", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "detalles_pedido", initialValue = 1, allocationSize = 100)
     private Long id;
 
     @ManyToOne
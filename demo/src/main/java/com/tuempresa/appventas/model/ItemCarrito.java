@@ -24,6 +24,8 @@ public class ItemCarrito {
 
     private Integer cantidad;
 
+    private Double precioUnitario; // precio que vio el comprador al agregarlo (null en líneas anteriores)
+
     @ManyToOne
     @JoinColumn(name = "carrito_id")
     @JsonIgnore
@@ -44,10 +46,15 @@ public class ItemCarrito {
     public void setProducto(Producto producto) { this.producto = producto; }
     public Integer getCantidad() { return cantidad; }
     public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+    public Double getPrecioUnitario() { return precioUnitario; }
+    public void setPrecioUnitario(Double precioUnitario) { this.precioUnitario = precioUnitario; }
     public Carrito getCarrito() { return carrito; }
     public void setCarrito(Carrito carrito) { this.carrito = carrito; }
     
     public Double getSubtotal() {
+        if (precioUnitario != null) {
+            return precioUnitario * cantidad;
+        }
         if (producto != null) {
             return producto.getPrecio() * cantidad;
         }
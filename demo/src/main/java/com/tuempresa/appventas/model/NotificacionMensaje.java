@@ -0,0 +1,96 @@
+package com.tuempresa.appventas.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+// Aviso por correo de un mensaje de chat pendiente de enviar (bandeja de salida).
+// Se inserta en la misma transacción que el mensaje; NotificacionMensajeService agrupa los pendientes
+// de cada destinatario en un solo correo.
+@Entity
+@Table(name = "notificaciones_mensaje", indexes = {
+        @Index(name = "idx_notificaciones_estado", columnList = "estado, emailDestino, id")
+})
+public class NotificacionMensaje {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String ENVIANDO = "ENVIANDO";
+    public static final String ENVIADA = "ENVIADA";
+    public static final String ERROR = "ERROR";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String emailDestino;
+
+    private String nombreDestinatario;
+
+    private String nombreRemitente;
+
+    @Column(length = 500)
+    private String contenido; // vista previa del mensaje
+
+    @Column(length = 20, nullable = false)
+    private String estado = PENDIENTE;
+
+    private int intentos = 0;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaCreacion = new Date();
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaEnvio;
+
+    // Cuándo lo tomó un despachador (ENVIANDO): pasado el plazo se da por abandonado
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaTomado;
+
+    public NotificacionMensaje() {}
+
+    public NotificacionMensaje(String emailDestino, String nombreDestinatario, String nombreRemitente, String contenido) {
+        this.emailDestino = emailDestino;
+        this.nombreDestinatario = nombreDestinatario;
+        this.nombreRemitente = nombreRemitente;
+        this.contenido = contenido;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getEmailDestino() { return emailDestino; }
+    public void setEmailDestino(String emailDestino) { this.emailDestino = emailDestino; }
+
+    public String getNombreDestinatario() { return nombreDestinatario; }
+    public void setNombreDestinatario(String nombreDestinatario) { this.nombreDestinatario = nombreDestinatario; }
+
+    public String getNombreRemitente() { return nombreRemitente; }
+    public void setNombreRemitente(String nombreRemitente) { this.nombreRemitente = nombreRemitente; }
+
+    public String getContenido() { return contenido; }
+    public void setContenido(String contenido) { this.contenido = contenido; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public int getIntentos() { return intentos; }
+    public void setIntentos(int intentos) { this.intentos = intentos; }
+
+    public Date getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+
+    public Date getFechaEnvio() { return fechaEnvio; }
+    public void setFechaEnvio(Date fechaEnvio) { this.fechaEnvio = fechaEnvio; }
+
+    public Date getFechaTomado() { return fechaTomado; }
+    public void setFechaTomado(Date fechaTomado) { this.fechaTomado = fechaTomado; }
+}
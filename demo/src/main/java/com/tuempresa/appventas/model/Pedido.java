@@ -11,18 +11,26 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+        @Index(name = "idx_pedidos_reserva", columnList = "estado, reservaExpira")
+})
 public class Pedido {
+    // Ids por bloques (tabla id_generadores, ver migration_add_id_generadores.sql): sin AUTO_INCREMENT
+    // Hibernate puede insertar el pedido y sus detalles en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pedidos_gen")
+    @TableGenerator(name = "pedidos_gen", table = "id_generadores", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "pedidos", initialValue = 1, allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -39,6 +47,10 @@ public class Pedido {
     @Column(length = 1000)
     private String comprobanteUrl; // URL de la imagen del comprobante
 
+    // Hasta cuándo se guarda el stock reservado de un pedido PENDIENTE (null si no hay reserva que vencer)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date reservaExpira;
+
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL)
     @JsonIgnoreProperties("pedido")
     private List<DetallePedido> detalles;
@@ -67,6 +79,8 @@ public class Pedido {
     public void setMetodoPago(String metodoPago) { this.metodoPago = metodoPago; }
     public String getComprobanteUrl() { return comprobanteUrl; }
     public void setComprobanteUrl(String comprobanteUrl) { this.comprobanteUrl = comprobanteUrl; }
+    public Date getReservaExpira() { return reservaExpira; }
+    public void setReservaExpira(Date reservaExpira) { this.reservaExpira = reservaExpira; }
     public List<DetallePedido> getDetalles() { return detalles; }
     public void setDetalles(List<DetallePedido> detalles) { this.detalles = detalles; }
 }
@@ -11,6 +11,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -18,7 +19,10 @@ import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos", indexes = {
+        // Catálogo público: estado + orden (fechaPublicacion, id) para paginación por cursor
+        @Index(name = "idx_productos_catalogo", columnList = "estado, fechaPublicacion, id")
+})
 @JsonInclude(JsonInclude.Include.ALWAYS)
 public class Producto {
 
@@ -50,6 +54,13 @@ public class Producto {
     @Column(name = "imagen_url5", length = 1000)
     private String imagenUrl5;
 
+    // Variantes generadas por ImagenService (JSON: URL original -> miniatura/mediana/grande)
+    @Column(columnDefinition = "TEXT")
+    private String imagenesVariantes;
+
+    @Column(length = 500)
+    private String miniaturaUrl; // miniatura de la primera imagen, para las tarjetas del catálogo
+
     private String ubicacion;
     private Boolean disponibilidad = true;
     private String tipo; // Electrónicos, Ropa, Hogar, etc.
@@ -155,6 +166,12 @@ public class Producto {
     public String getDeunaQrUrl() { return deunaQrUrl; }
     public void setDeunaQrUrl(String deunaQrUrl) { this.deunaQrUrl = deunaQrUrl; }
 
+    public String getImagenesVariantes() { return imagenesVariantes; }
+    public void setImagenesVariantes(String imagenesVariantes) { this.imagenesVariantes = imagenesVariantes; }
+
+    public String getMiniaturaUrl() { return miniaturaUrl; }
+    public void setMiniaturaUrl(String miniaturaUrl) { this.miniaturaUrl = miniaturaUrl; }
+
     public Usuario getVendedor() { return vendedor; }
     public void setVendedor(Usuario vendedor) { this.vendedor = vendedor; }
 }
\ No newline at end of file
@@ -65,6 +65,13 @@ public class Servicio {
     @Column(columnDefinition = "TEXT")
     private String imagenes; // JSON array de URLs de imágenes
 
+    // Variantes generadas por ImagenService (JSON: URL original -> miniatura/mediana/grande)
+    @Column(columnDefinition = "TEXT")
+    private String imagenesVariantes;
+
+    @Column(length = 500)
+    private String miniaturaUrl; // miniatura de la primera imagen, para las tarjetas del catálogo
+
     @Temporal(TemporalType.TIMESTAMP)
     private Date fechaCreacion;
 
@@ -155,6 +162,12 @@ public class Servicio {
     public String getImagenes() { return imagenes; }
     public void setImagenes(String imagenes) { this.imagenes = imagenes; }
 
+    public String getImagenesVariantes() { return imagenesVariantes; }
+    public void setImagenesVariantes(String imagenesVariantes) { this.imagenesVariantes = imagenesVariantes; }
+
+    public String getMiniaturaUrl() { return miniaturaUrl; }
+    public void setMiniaturaUrl(String miniaturaUrl) { this.miniaturaUrl = miniaturaUrl; }
+
     public Date getFechaCreacion() { return fechaCreacion; }
     public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
 
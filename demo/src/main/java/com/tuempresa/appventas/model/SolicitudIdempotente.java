@@ -0,0 +1,62 @@
+package com.tuempresa.appventas.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+// Solicitud con clave de idempotencia (cabecera Idempotency-Key) ya recibida por algún nodo.
+// La fila se inserta EN_CURSO antes de ejecutar la operación (la clave única hace de candado entre nodos)
+// y pasa a COMPLETADA con la respuesta en la misma transacción que la operación.
+@Entity
+@Table(name = "solicitudes_idempotentes", indexes = {
+        @Index(name = "uk_solicitudes_clave", columnList = "clave", unique = true),
+        @Index(name = "idx_solicitudes_fecha", columnList = "fechaCreacion")
+})
+public class SolicitudIdempotente {
+
+    public static final String EN_CURSO = "EN_CURSO";
+    public static final String COMPLETADA = "COMPLETADA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // operación:recurso:clave del cliente
+    @Column(nullable = false, length = 200)
+    private String clave;
+
+    // Datos de la solicitud original: la misma clave con otros datos se rechaza
+    @Column(nullable = false)
+    private String huella;
+
+    @Column(length = 20, nullable = false)
+    private String estado = EN_CURSO;
+
+    @Column(columnDefinition = "TEXT")
+    private String respuesta; // JSON devuelto la primera vez
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaCreacion = new Date();
+
+    public SolicitudIdempotente() {}
+
+    public SolicitudIdempotente(String clave, String huella) {
+        this.clave = clave;
+        this.huella = huella;
+    }
+
+    public Long getId() { return id; }
+    public String getClave() { return clave; }
+    public String getHuella() { return huella; }
+    public String getEstado() { return estado; }
+    public String getRespuesta() { return respuesta; }
+    public Date getFechaCreacion() { return fechaCreacion; }
+}
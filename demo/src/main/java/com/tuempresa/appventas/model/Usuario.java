@@ -2,6 +2,8 @@ package com.tuempresa.appventas.model;
 
 import java.util.Date;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -23,6 +25,7 @@ public class Usuario {
     private String apellido;
     private String cedula;
     private String email;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY) // se recibe al registrarse, nunca se devuelve
     private String password;
     private String genero;
     private String telefono;
@@ -40,12 +43,14 @@ public class Usuario {
     private String bancoTipoCuenta;  // AHORROS, CORRIENTE
 
     // Token de verificación de email
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String verificationToken;
 
     @Temporal(TemporalType.TIMESTAMP)
     private Date tokenExpiracion;
 
     // Token de recuperación de contraseña
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String resetPasswordToken;
 
     @Temporal(TemporalType.TIMESTAMP)
@@ -0,0 +1,34 @@
+package com.tuempresa.appventas.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.model.Archivo;
+
+public interface ArchivoRepository extends JpaRepository<Archivo, Long> {
+
+    Optional<Archivo> findByHash(String hash);
+
+    // Incrementos y decrementos atómicos en la BD (sin leer-modificar-escribir)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Archivo a SET a.referencias = a.referencias + 1, a.fechaActualizacion = :ahora WHERE a.hash = :hash")
+    int incrementarReferencias(@Param("hash") String hash, @Param("ahora") Date ahora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Archivo a SET a.referencias = a.referencias - 1, a.fechaActualizacion = :ahora " +
+           "WHERE a.hash = :hash AND a.referencias > 0")
+    int decrementarReferencias(@Param("hash") String hash, @Param("ahora") Date ahora);
+
+    // Sin referencias desde antes de la fecha dada (candidatos a recolección)
+    @Query("SELECT a FROM Archivo a WHERE a.referencias = 0 AND a.fechaActualizacion < :antesDe")
+    List<Archivo> buscarHuerfanos(@Param("antesDe") Date antesDe);
+}
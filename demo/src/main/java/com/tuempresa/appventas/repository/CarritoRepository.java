@@ -1,27 +1,25 @@
 package com.tuempresa.appventas.repository;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.tuempresa.appventas.model.Carrito;
-import com.tuempresa.appventas.model.Usuario;
 
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
-    
-    @Query("SELECT DISTINCT c FROM Carrito c " +
-           "LEFT JOIN FETCH c.items i " +
-           "LEFT JOIN FETCH i.producto p " +
-           "LEFT JOIN FETCH p.vendedor v " +
-           "WHERE c.usuario = :usuario")
-    Optional<Carrito> findByUsuario(@Param("usuario") Usuario usuario);
-    
-    @Query("SELECT DISTINCT c FROM Carrito c " +
-           "LEFT JOIN FETCH c.items i " +
-           "LEFT JOIN FETCH i.producto p " +
-           "LEFT JOIN FETCH p.vendedor v " +
-           "WHERE c.usuario.id = :usuarioId")
-    Optional<Carrito> findByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    // Contenido del carrito de un usuario (carritoId, productoId, cantidad, precio visto) sin cargar productos ni
+    // vendedores; las líneas guardadas antes de registrar el precio toman el actual.
+    // Un carrito vacío devuelve una fila con productoId null; sin carrito no devuelve filas
+    @Query("SELECT c.id, i.producto.id, i.cantidad, COALESCE(i.precioUnitario, p.precio) " +
+           "FROM Carrito c LEFT JOIN c.items i LEFT JOIN i.producto p " +
+           "WHERE c.usuario.id = :usuarioId ORDER BY i.id")
+    List<Object[]> buscarContenido(@Param("usuarioId") Long usuarioId);
+
+    // (usuarioId, carritoId) de los usuarios que ya tienen carrito
+    @Query("SELECT c.usuario.id, c.id FROM Carrito c WHERE c.usuario.id IN :usuarioIds")
+    List<Object[]> buscarIdsPorUsuarios(@Param("usuarioIds") Collection<Long> usuarioIds);
 }
@@ -0,0 +1,64 @@
+package com.tuempresa.appventas.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.dto.ConversacionResumen;
+import com.tuempresa.appventas.model.Conversacion;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface ConversacionRepository extends JpaRepository<Conversacion, Long> {
+
+    // Bandeja de un usuario (índice usuarioId, ultimoMensajeId), con el otro usuario y el producto/servicio por PK
+    @Query("SELECT new com.tuempresa.appventas.dto.ConversacionResumen(c.conversacionId, o.id, o.nombre, o.apellido, o.email, " +
+           "c.ultimoMensajeId, c.ultimoRemitenteId, c.vistaPrevia, c.fechaUltimoMensaje, c.noLeidos, " +
+           "p.id, p.nombre, s.id, s.titulo) " +
+           "FROM Conversacion c JOIN Usuario o ON o.id = c.otroUsuarioId " +
+           "LEFT JOIN Producto p ON p.id = c.productoId LEFT JOIN Servicio s ON s.id = c.servicioId " +
+           "WHERE c.usuarioId = :usuarioId ORDER BY c.ultimoMensajeId DESC")
+    List<ConversacionResumen> buscarBandeja(@Param("usuarioId") Long usuarioId);
+
+    // Fila bloqueada hasta el fin de la transacción, para que dos envíos simultáneos no pisen el contador
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Conversacion c WHERE c.usuarioId = :usuarioId AND c.conversacionId = :conversacionId")
+    Optional<Conversacion> buscarParaActualizar(@Param("usuarioId") Long usuarioId,
+                                                @Param("conversacionId") String conversacionId);
+
+    // Crea la fila vacía del primer mensaje. Si un envío simultáneo ya la insertó no falla por uk_conversaciones_usuario:
+    // espera a que esa transacción termine y no cambia nada
+    @Modifying
+    @Query(value = "INSERT INTO conversaciones (conversacion_id, usuario_id, otro_usuario_id, no_leidos) " +
+                   "VALUES (:conversacionId, :usuarioId, :otroUsuarioId, 0) " +
+                   "ON DUPLICATE KEY UPDATE no_leidos = no_leidos",
+           nativeQuery = true)
+    int crearSiNoExiste(@Param("usuarioId") Long usuarioId, @Param("conversacionId") String conversacionId,
+                        @Param("otroUsuarioId") Long otroUsuarioId);
+
+    @Query("SELECT c.usuarioId FROM Conversacion c WHERE c.conversacionId = :conversacionId")
+    List<Long> buscarParticipantes(@Param("conversacionId") String conversacionId);
+
+    @Query("SELECT COALESCE(SUM(c.noLeidos), 0) FROM Conversacion c WHERE c.usuarioId = :usuarioId")
+    Long contarNoLeidos(@Param("usuarioId") Long usuarioId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Conversacion c SET c.noLeidos = CASE WHEN c.noLeidos > :cantidad THEN c.noLeidos - :cantidad ELSE 0 END " +
+           "WHERE c.usuarioId = :usuarioId AND c.conversacionId = :conversacionId")
+    int descontarNoLeidos(@Param("usuarioId") Long usuarioId, @Param("conversacionId") String conversacionId,
+                          @Param("cantidad") int cantidad);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Conversacion c WHERE c.conversacionId = :conversacionId")
+    int eliminarPorConversacion(@Param("conversacionId") String conversacionId);
+}
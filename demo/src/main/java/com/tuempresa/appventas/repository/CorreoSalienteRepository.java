@@ -0,0 +1,77 @@
+package com.tuempresa.appventas.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.model.CorreoSaliente;
+
+public interface CorreoSalienteRepository extends JpaRepository<CorreoSaliente, Long> {
+
+    @Query("SELECT c FROM CorreoSaliente c WHERE c.estado = 'PENDIENTE' AND c.proximoIntento <= :ahora ORDER BY c.id")
+    List<CorreoSaliente> buscarListos(@Param("ahora") Date ahora, Pageable pagina);
+
+    // Toma los correos para un envío; solo cuenta los que seguían pendientes
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'ENVIANDO', c.fechaTomado = :ahora WHERE c.id IN :ids AND c.estado = 'PENDIENTE'")
+    int tomar(@Param("ids") Collection<Long> ids, @Param("ahora") Date ahora);
+
+    // Cuáles de los ids quedaron tomados por esta llamada a tomar (si otro nodo se llevó parte del lote)
+    @Query("SELECT c.id FROM CorreoSaliente c WHERE c.id IN :ids AND c.estado = 'ENVIANDO' AND c.fechaTomado = :tomado")
+    List<Long> buscarTomados(@Param("ids") Collection<Long> ids, @Param("tomado") Date tomado);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'ENVIADO', c.intentos = c.intentos + 1, c.fechaEnvio = :ahora, " +
+           "c.ultimoError = NULL WHERE c.id IN :ids")
+    int marcarEnviados(@Param("ids") Collection<Long> ids, @Param("ahora") Date ahora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'PENDIENTE', c.intentos = c.intentos + 1, " +
+           "c.proximoIntento = :proximo, c.ultimoError = :error WHERE c.id = :id")
+    int reprogramar(@Param("id") Long id, @Param("proximo") Date proximo, @Param("error") String error);
+
+    // Cola de descarte: no se reintenta automáticamente
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'FALLIDO', c.intentos = c.intentos + 1, c.ultimoError = :error WHERE c.id = :id")
+    int marcarFallido(@Param("id") Long id, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'PENDIENTE', c.intentos = 0, c.proximoIntento = :ahora WHERE c.estado = 'FALLIDO'")
+    int reactivarFallidos(@Param("ahora") Date ahora);
+
+    // Devuelve a la cola sin contar intento (no se llegó a intentar el envío)
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'PENDIENTE' WHERE c.id IN :ids AND c.estado = 'ENVIANDO'")
+    int devolver(@Param("ids") Collection<Long> ids);
+
+    // Envíos que quedaron a medias (el nodo que los tomó se reinició o se cayó). Solo los tomados antes del límite:
+    // los que otro nodo vivo está enviando ahora no se tocan
+    @Modifying
+    @Transactional
+    @Query("UPDATE CorreoSaliente c SET c.estado = 'PENDIENTE' " +
+           "WHERE c.estado = 'ENVIANDO' AND (c.fechaTomado IS NULL OR c.fechaTomado < :limite)")
+    int liberarEnviando(@Param("limite") Date limite);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CorreoSaliente c WHERE c.estado = 'ENVIADO' AND c.fechaEnvio < :antesDe")
+    int eliminarEnviados(@Param("antesDe") Date antesDe);
+
+    @Query("SELECT c.estado, COUNT(c) FROM CorreoSaliente c GROUP BY c.estado")
+    List<Object[]> contarPorEstado();
+
+    List<CorreoSaliente> findTop20ByEstadoOrderByIdDesc(String estado);
+}
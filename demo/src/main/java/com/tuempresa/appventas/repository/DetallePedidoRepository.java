@@ -10,6 +10,8 @@ import jakarta.transaction.Transactional;
 
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Long> {
     List<DetallePedido> findByProductoVendedorId(Long vendedorId);
+
+    List<DetallePedido> findByPedidoId(Long pedidoId);
     
     @Transactional
     void deleteByProductoId(Long productoId);
@@ -1,6 +1,11 @@
 package com.tuempresa.appventas.repository;
 
+import java.util.Collection;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.tuempresa.appventas.model.ItemCarrito;
 
@@ -9,4 +14,17 @@ import jakarta.transaction.Transactional;
 public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long> {
     @Transactional
     void deleteByProductoId(Long productoId);
+
+    // Quita del carrito guardado los productos que el usuario acaba de comprar
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ItemCarrito i WHERE i.producto.id IN :productoIds " +
+           "AND i.carrito.id IN (SELECT c.id FROM Carrito c WHERE c.usuario.id = :usuarioId)")
+    int eliminarComprados(@Param("usuarioId") Long usuarioId, @Param("productoIds") Collection<Long> productoIds);
+
+    // Guardado diferido de carritos: se borran sus líneas y se vuelven a insertar con el contenido en memoria
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ItemCarrito i WHERE i.carrito.id IN :carritoIds")
+    int eliminarDeCarritos(@Param("carritoIds") Collection<Long> carritoIds);
 }
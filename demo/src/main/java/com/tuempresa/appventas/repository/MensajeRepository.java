@@ -1,31 +1,69 @@
 package com.tuempresa.appventas.repository;
 
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.tuempresa.appventas.dto.MensajeResumen;
 import com.tuempresa.appventas.model.Mensaje;
 
 @Repository
 public interface MensajeRepository extends JpaRepository<Mensaje, Long> {
 
+    // Proyección del historial: los ids de las relaciones salen de las columnas FK, sin joins
+    String SELECT_RESUMEN = "SELECT new com.tuempresa.appventas.dto.MensajeResumen(m.id, m.conversacionId, " +
+            "m.remitente.id, m.destinatario.id, m.producto.id, m.servicio.id, m.contenido, m.imageUrl, " +
+            "m.fechaEnvio, m.leido, m.fechaLeido) FROM Mensaje m ";
+
     // Buscar mensajes por conversación ID
     List<Mensaje> findByConversacionIdOrderByFechaEnvioAsc(String conversacionId);
 
+    // Historial paginado por id (índice conversacionId, id): mensajes anteriores a un id, del más nuevo al más viejo
+    @Query(SELECT_RESUMEN + "WHERE m.conversacionId = :conversacionId AND m.id < :antesDe ORDER BY m.id DESC")
+    List<MensajeResumen> buscarHistorialAnteriores(@Param("conversacionId") String conversacionId,
+                                                   @Param("antesDe") Long antesDe, Pageable pagina);
+
+    // Historial paginado por id: mensajes posteriores a un id, del más viejo al más nuevo
+    @Query(SELECT_RESUMEN + "WHERE m.conversacionId = :conversacionId AND m.id > :despuesDe ORDER BY m.id ASC")
+    List<MensajeResumen> buscarHistorialPosteriores(@Param("conversacionId") String conversacionId,
+                                                    @Param("despuesDe") Long despuesDe, Pageable pagina);
+
+    // Último mensaje sin leer que recibió un usuario en la conversación (hasta un id), con su remitente
+    @Query("SELECT m.id, m.remitente.id FROM Mensaje m WHERE m.conversacionId = :conversacionId " +
+           "AND m.destinatario.id = :destinatarioId AND m.leido = false AND m.id <= :hasta ORDER BY m.id DESC")
+    List<Object[]> buscarUltimoNoLeido(@Param("conversacionId") String conversacionId,
+                                       @Param("destinatarioId") Long destinatarioId,
+                                       @Param("hasta") Long hasta, Pageable pagina);
+
+    // Marca como leídos en una sola sentencia los mensajes recibidos hasta un id
+    @Modifying
+    @Transactional
+    @Query("UPDATE Mensaje m SET m.leido = true, m.fechaLeido = :ahora WHERE m.conversacionId = :conversacionId " +
+           "AND m.destinatario.id = :destinatarioId AND m.leido = false AND m.id <= :hasta")
+    int marcarLeidosHasta(@Param("conversacionId") String conversacionId, @Param("destinatarioId") Long destinatarioId,
+                          @Param("hasta") Long hasta, @Param("ahora") Date ahora);
+
     // Buscar mensajes entre dos usuarios
     @Query("SELECT m FROM Mensaje m WHERE (m.remitente.id = :usuario1 AND m.destinatario.id = :usuario2) OR (m.remitente.id = :usuario2 AND m.destinatario.id = :usuario1) ORDER BY m.fechaEnvio ASC")
     List<Mensaje> findMensajesEntreUsuarios(@Param("usuario1") Long usuario1, @Param("usuario2") Long usuario2);
 
-    // Buscar conversaciones de un usuario (últimos mensajes de cada conversación)
-    @Query("SELECT m FROM Mensaje m WHERE m.id IN (SELECT MAX(m2.id) FROM Mensaje m2 WHERE m2.remitente.id = :usuarioId OR m2.destinatario.id = :usuarioId GROUP BY m2.conversacionId) ORDER BY m.fechaEnvio DESC")
-    List<Mensaje> findConversacionesUsuario(@Param("usuarioId") Long usuarioId);
+    // No leídos por destinatario dentro de una conversación (para reconstruir la bandeja)
+    @Query("SELECT m.destinatario.id, COUNT(m) FROM Mensaje m WHERE m.conversacionId = :conversacionId AND m.leido = false GROUP BY m.destinatario.id")
+    List<Object[]> contarNoLeidosPorDestinatario(@Param("conversacionId") String conversacionId);
+
+    // Conversaciones con mensajes sobre un producto o servicio (las que hay que reconstruir al borrarlo)
+    @Query("SELECT DISTINCT m.conversacionId FROM Mensaje m WHERE m.producto.id = :productoId")
+    List<String> buscarConversacionesPorProducto(@Param("productoId") Long productoId);
 
-    // Contar mensajes no leídos de un usuario
-    @Query("SELECT COUNT(m) FROM Mensaje m WHERE m.destinatario.id = :usuarioId AND m.leido = false")
-    Long countMensajesNoLeidos(@Param("usuarioId") Long usuarioId);
+    @Query("SELECT DISTINCT m.conversacionId FROM Mensaje m WHERE m.servicio.id = :servicioId")
+    List<String> buscarConversacionesPorServicio(@Param("servicioId") Long servicioId);
 
     // Buscar mensajes no leídos de un usuario
     List<Mensaje> findByDestinatarioIdAndLeidoFalse(Long destinatarioId);
@@ -41,4 +79,8 @@ public interface MensajeRepository extends JpaRepository<Mensaje, Long> {
     
     // Eliminar mensajes relacionados con un servicio
     void deleteByServicioId(Long servicioId);
+
+    // URLs de archivos por lotes (keyset por id) para el recolector de archivos huérfanos
+    @Query("SELECT m.id, m.imageUrl FROM Mensaje m WHERE m.id > :desde AND m.imageUrl IS NOT NULL ORDER BY m.id")
+    List<Object[]> buscarUrlsArchivos(@Param("desde") Long desde, Pageable pagina);
 }
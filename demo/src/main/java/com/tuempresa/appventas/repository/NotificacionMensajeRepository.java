@@ -0,0 +1,61 @@
+package com.tuempresa.appventas.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.model.NotificacionMensaje;
+
+public interface NotificacionMensajeRepository extends JpaRepository<NotificacionMensaje, Long> {
+
+    // Destinatarios cuyo aviso más antiguo ya esperó la ventana de agrupación
+    @Query("SELECT n.emailDestino FROM NotificacionMensaje n WHERE n.estado = 'PENDIENTE' " +
+           "GROUP BY n.emailDestino HAVING MIN(n.fechaCreacion) < :limite ORDER BY MIN(n.id)")
+    List<String> buscarDestinatariosListos(@Param("limite") Date limite, Pageable pagina);
+
+    @Query("SELECT n FROM NotificacionMensaje n WHERE n.estado = 'PENDIENTE' AND n.emailDestino IN :emails ORDER BY n.id")
+    List<NotificacionMensaje> buscarPendientes(@Param("emails") Collection<String> emails);
+
+    // Toma los avisos para un envío; solo cuenta los que seguían pendientes
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificacionMensaje n SET n.estado = 'ENVIANDO', n.fechaTomado = :ahora " +
+           "WHERE n.id IN :ids AND n.estado = 'PENDIENTE'")
+    int tomar(@Param("ids") Collection<Long> ids, @Param("ahora") Date ahora);
+
+    // Cuáles de los ids quedaron tomados por esta llamada a tomar (si otro nodo se llevó parte)
+    @Query("SELECT n.id FROM NotificacionMensaje n WHERE n.id IN :ids AND n.estado = 'ENVIANDO' AND n.fechaTomado = :tomado")
+    List<Long> buscarTomados(@Param("ids") Collection<Long> ids, @Param("tomado") Date tomado);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificacionMensaje n SET n.estado = 'ENVIADA', n.fechaEnvio = :ahora WHERE n.id IN :ids")
+    int marcarEnviadas(@Param("ids") Collection<Long> ids, @Param("ahora") Date ahora);
+
+    // Fallo de envío: vuelven a la cola (o quedan en ERROR tras agotar los intentos)
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificacionMensaje n SET n.intentos = n.intentos + 1, " +
+           "n.estado = CASE WHEN n.intentos + 1 >= :maxIntentos THEN 'ERROR' ELSE 'PENDIENTE' END WHERE n.id IN :ids")
+    int marcarFallidas(@Param("ids") Collection<Long> ids, @Param("maxIntentos") int maxIntentos);
+
+    // Avisos que quedaron a medio enviar (el nodo que los tomó se reinició o se cayó). Solo los tomados antes del
+    // límite: los que otro nodo vivo está procesando ahora no se tocan
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificacionMensaje n SET n.estado = 'PENDIENTE' " +
+           "WHERE n.estado = 'ENVIANDO' AND (n.fechaTomado IS NULL OR n.fechaTomado < :limite)")
+    int liberarEnviando(@Param("limite") Date limite);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM NotificacionMensaje n WHERE n.estado = 'ENVIADA' AND n.fechaEnvio < :antesDe")
+    int eliminarEnviadas(@Param("antesDe") Date antesDe);
+}
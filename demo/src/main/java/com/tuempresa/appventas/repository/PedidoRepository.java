@@ -1,12 +1,46 @@
 package com.tuempresa.appventas.repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.tuempresa.appventas.model.Pedido;
 
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     List<Pedido> findByCompradorId(Long compradorId);
     // Para ver ventas (pedidos que contienen mis productos) - Esto es más complejo, lo haremos en servicio
+
+    // URLs de archivos por lotes (keyset por id) para el recolector de archivos huérfanos
+    @Query("SELECT p.id, p.comprobanteUrl FROM Pedido p WHERE p.id > :desde AND p.comprobanteUrl IS NOT NULL ORDER BY p.id")
+    List<Object[]> buscarUrlsArchivos(@Param("desde") Long desde, Pageable pagina);
+
+    // Pedidos pendientes de pago cuya reserva de stock ya venció
+    @Query("SELECT p.id FROM Pedido p WHERE p.estado = 'PENDIENTE' AND p.reservaExpira < :ahora ORDER BY p.reservaExpira")
+    List<Long> buscarReservasVencidas(@Param("ahora") Date ahora, Pageable pagina);
+
+    // Cancelación condicional: solo cuenta si el pedido seguía en uno de los estados permitidos
+    @Modifying
+    @Transactional
+    @Query("UPDATE Pedido p SET p.estado = 'CANCELADO', p.reservaExpira = NULL WHERE p.id = :id AND p.estado IN :estados")
+    int cancelar(@Param("id") Long id, @Param("estados") Collection<String> estados);
+
+    // Cambios de estado del pago, también condicionales: si el pedido se canceló (y su stock volvió a la venta)
+    // entre la lectura y la escritura, no se reactiva
+    @Modifying
+    @Transactional
+    @Query("UPDATE Pedido p SET p.estado = 'PAGADO_VERIFICANDO', p.comprobanteUrl = :url, p.reservaExpira = NULL " +
+           "WHERE p.id = :id AND p.estado IN :estados")
+    int registrarComprobante(@Param("id") Long id, @Param("url") String url, @Param("estados") Collection<String> estados);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Pedido p SET p.estado = 'PAGADO', p.reservaExpira = NULL WHERE p.id = :id AND p.estado IN :estados")
+    int confirmarPago(@Param("id") Long id, @Param("estados") Collection<String> estados);
 }
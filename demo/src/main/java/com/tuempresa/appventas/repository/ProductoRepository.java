@@ -1,11 +1,18 @@
 package com.tuempresa.appventas.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import com.tuempresa.appventas.dto.ProductoTarjeta;
 import com.tuempresa.appventas.model.Producto;
+import java.util.Date;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
@@ -15,16 +22,91 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
     List<Producto> findByVendedorId(Long vendedorId);
 
-    // Búsqueda por nombre
-    @Query("SELECT p FROM Producto p WHERE p.nombre LIKE %:nombre% AND p.estado = 'ACTIVO'")
-    List<Producto> buscarPorNombre(@Param("nombre") String nombre);
+    // Búsqueda por nombre (respaldo cuando el índice FULLTEXT no está disponible)
+    @Query("SELECT p FROM Producto p WHERE p.nombre LIKE %:nombre% AND p.estado = 'ACTIVO' ORDER BY p.id DESC")
+    List<Producto> buscarPorNombre(@Param("nombre") String nombre, Pageable pageable);
+
+    // Búsqueda de texto completo sobre nombre y descripción, ordenada por relevancia.
+    // Requiere el índice ft_productos_texto (ver migration_add_fulltext_productos.sql)
+    @Query(value = "SELECT * FROM productos p WHERE p.estado = 'ACTIVO' " +
+                   "AND MATCH(p.nombre, p.descripcion) AGAINST (:consulta IN BOOLEAN MODE) " +
+                   "ORDER BY MATCH(p.nombre, p.descripcion) AGAINST (:consulta IN BOOLEAN MODE) DESC, p.id DESC",
+           nativeQuery = true)
+    List<Producto> buscarTextoCompleto(@Param("consulta") String consulta, Pageable pageable);
+
+    // Cuenta las columnas del índice ft_productos_texto en el esquema actual (0 si no existe)
+    @Query(value = "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                   "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'productos' " +
+                   "AND INDEX_NAME = 'ft_productos_texto'",
+           nativeQuery = true)
+    long contarColumnasIndiceTextoCompleto();
 
     // Búsqueda por rango de precios
-    @Query("SELECT p FROM Producto p WHERE p.precio BETWEEN :precioMin AND :precioMax AND p.estado = 'ACTIVO'")
+    @Query("SELECT p FROM Producto p WHERE p.precio BETWEEN :precioMin AND :precioMax AND p.estado = 'ACTIVO' ORDER BY p.precio ASC, p.id ASC")
     List<Producto> buscarPorRangoPrecio(@Param("precioMin") Double precioMin,
-                                        @Param("precioMax") Double precioMax);
+                                        @Param("precioMax") Double precioMax,
+                                        Pageable pageable);
+
+    // Varios productos por ID en una sola consulta (con el vendedor, para no disparar un SELECT por fila)
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.vendedor WHERE p.id IN :ids")
+    List<Producto> buscarPorIds(@Param("ids") List<Long> ids);
+
+    // Precio y stock actuales (id, precio, cantidad) para revalidar un carrito antes de comprar
+    @Query("SELECT p.id, p.precio, p.cantidad FROM Producto p WHERE p.id IN :ids")
+    List<Object[]> buscarPrecioYStock(@Param("ids") Collection<Long> ids);
+
+    // Tarjetas del catálogo público: solo las columnas del listado, sin cargar la entidad ni el vendedor completo
+    String SELECT_TARJETA = "SELECT new com.tuempresa.appventas.dto.ProductoTarjeta(p.id, p.nombre, p.precio, " +
+            "COALESCE(p.imagenUrl1, p.imagenUrl2, p.imagenUrl3, p.imagenUrl4, p.imagenUrl5), p.miniaturaUrl, " +
+            "p.ubicacion, p.tipo, p.estado, p.estadoProducto, v.id, v.nombre, v.apellido, " +
+            "(SELECT AVG(val.calificacion) FROM Valoracion val WHERE val.vendedor = v)) " +
+            "FROM Producto p LEFT JOIN p.vendedor v ";
+
+    @Query(SELECT_TARJETA + "WHERE p.estado = 'ACTIVO' ORDER BY p.id")
+    List<ProductoTarjeta> buscarTarjetasActivas();
+
+    @Query(SELECT_TARJETA + "WHERE p.id = :id AND p.estado = 'ACTIVO'")
+    Optional<ProductoTarjeta> buscarTarjetaActiva(@Param("id") Long id);
+
+    // Catálogo público paginado por cursor (fechaPublicacion, id) con filtros opcionales, como tarjetas.
+    // El tamaño de página llega en el Pageable; el orden coincide con idx_productos_catalogo.
+    @Query(SELECT_TARJETA +
+           "WHERE p.estado = 'ACTIVO' " +
+           "AND (:tipo IS NULL OR p.tipo = :tipo) " +
+           "AND (:ubicacion IS NULL OR p.ubicacion = :ubicacion) " +
+           "AND (:precioMin IS NULL OR p.precio >= :precioMin) " +
+           "AND (:precioMax IS NULL OR p.precio <= :precioMax) " +
+           "AND (:estadoProducto IS NULL OR p.estadoProducto = :estadoProducto) " +
+           "AND (:disponibilidad IS NULL OR p.disponibilidad = :disponibilidad) " +
+           "AND (:cursorFecha IS NULL OR p.fechaPublicacion < :cursorFecha " +
+           "     OR (p.fechaPublicacion = :cursorFecha AND p.id < :cursorId)) " +
+           "ORDER BY p.fechaPublicacion DESC, p.id DESC")
+    List<ProductoTarjeta> buscarCatalogo(@Param("tipo") String tipo,
+                                         @Param("ubicacion") String ubicacion,
+                                         @Param("precioMin") Double precioMin,
+                                         @Param("precioMax") Double precioMax,
+                                         @Param("estadoProducto") String estadoProducto,
+                                         @Param("disponibilidad") Boolean disponibilidad,
+                                         @Param("cursorFecha") Date cursorFecha,
+                                         @Param("cursorId") Long cursorId,
+                                         Pageable pageable);
+
+    // Fecha de publicación de un producto (para armar el cursor de la siguiente página del catálogo)
+    @Query("SELECT p.fechaPublicacion FROM Producto p WHERE p.id = :id")
+    Date buscarFechaPublicacion(@Param("id") Long id);
 
     // MÉTODOS PARA DASHBOARD
     @Query("SELECT COUNT(p) FROM Producto p WHERE FUNCTION('MONTH', p.fechaPublicacion) = FUNCTION('MONTH', CURRENT_DATE) AND FUNCTION('YEAR', p.fechaPublicacion) = FUNCTION('YEAR', CURRENT_DATE)")
     Long countProductosEsteMes();
-}
\ No newline at end of file
+
+    // URLs de archivos por lotes (keyset por id) para el recolector de archivos huérfanos
+    @Query("SELECT p.id, p.imagenUrl1, p.imagenUrl2, p.imagenUrl3, p.imagenUrl4, p.imagenUrl5, p.deunaQrUrl " +
+           "FROM Producto p WHERE p.id > :desde ORDER BY p.id")
+    List<Object[]> buscarUrlsArchivos(@Param("desde") Long desde, Pageable pagina);
+
+    // Solo las columnas de variantes: el hilo de imágenes no pisa ediciones del vendedor ni el stock reservado
+    @Modifying
+    @Transactional
+    @Query("UPDATE Producto p SET p.imagenesVariantes = :variantes, p.miniaturaUrl = :miniatura WHERE p.id = :id")
+    int actualizarVariantes(@Param("id") Long id, @Param("variantes") String variantes, @Param("miniatura") String miniatura);
+}
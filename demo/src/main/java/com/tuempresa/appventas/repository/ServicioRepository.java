@@ -1,9 +1,14 @@
 package com.tuempresa.appventas.repository;
 
+import com.tuempresa.appventas.dto.ServicioTarjeta;
 import com.tuempresa.appventas.model.Servicio;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -27,6 +32,22 @@ public interface ServicioRepository extends JpaRepository<Servicio, Long> {
 
     List<Servicio> findByActivoTrueOrderByFechaCreacionDesc();
 
+    // Varios servicios activos por ID en una sola consulta (con el vendedor)
+    @Query("SELECT s FROM Servicio s LEFT JOIN FETCH s.vendedor WHERE s.id IN :ids AND s.activo = true")
+    List<Servicio> buscarActivosPorIds(@Param("ids") List<Long> ids);
+
+    // Tarjetas del catálogo público: solo las columnas del listado, sin cargar la entidad ni el vendedor completo
+    String SELECT_TARJETA = "SELECT new com.tuempresa.appventas.dto.ServicioTarjeta(s.id, s.titulo, s.precio, s.tipoPrecio, " +
+            "s.imagenes, s.miniaturaUrl, s.ciudad, s.categoria, s.modalidad, v.id, v.nombre, v.apellido, " +
+            "(SELECT AVG(val.calificacion) FROM Valoracion val WHERE val.vendedor = v)) " +
+            "FROM Servicio s LEFT JOIN s.vendedor v ";
+
+    @Query(SELECT_TARJETA + "WHERE s.activo = true AND s.estado = 'ACTIVO' ORDER BY s.id")
+    List<ServicioTarjeta> buscarTarjetasActivas();
+
+    @Query(SELECT_TARJETA + "WHERE s.id = :id AND s.activo = true AND s.estado = 'ACTIVO'")
+    Optional<ServicioTarjeta> buscarTarjetaActiva(@Param("id") Long id);
+
     List<Servicio> findByCiudadAndActivoTrue(String ciudad);
 
     // Para el catálogo público: servicios por ciudad y visibles
@@ -50,4 +71,14 @@ public interface ServicioRepository extends JpaRepository<Servicio, Long> {
 
     @Query("SELECT COUNT(s) FROM Servicio s WHERE s.activo = true AND FUNCTION('MONTH', s.fechaCreacion) = FUNCTION('MONTH', CURRENT_DATE) AND FUNCTION('YEAR', s.fechaCreacion) = FUNCTION('YEAR', CURRENT_DATE)")
     Long countServiciosPublicadosEsteMes();
-}
\ No newline at end of file
+
+    // URLs de archivos por lotes (keyset por id) para el recolector de archivos huérfanos
+    @Query("SELECT s.id, s.imagenes, s.deunaQrUrl FROM Servicio s WHERE s.id > :desde ORDER BY s.id")
+    List<Object[]> buscarUrlsArchivos(@Param("desde") Long desde, Pageable pagina);
+
+    // Solo las columnas de variantes: el hilo de imágenes no pisa ediciones del vendedor
+    @Modifying
+    @Transactional
+    @Query("UPDATE Servicio s SET s.imagenesVariantes = :variantes, s.miniaturaUrl = :miniatura WHERE s.id = :id")
+    int actualizarVariantes(@Param("id") Long id, @Param("variantes") String variantes, @Param("miniatura") String miniatura);
+}
@@ -0,0 +1,43 @@
+package com.tuempresa.appventas.repository;
+
+import java.util.Date;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.model.SolicitudIdempotente;
+
+public interface SolicitudIdempotenteRepository extends JpaRepository<SolicitudIdempotente, Long> {
+
+    Optional<SolicitudIdempotente> findByClave(String clave);
+
+    // Se llama dentro de la transacción de la operación: la respuesta queda guardada solo si la operación se confirma.
+    // tomada es la fechaCreacion con la que se reclamó: si otro nodo la retomó entretanto, no se actualiza nada
+    @Modifying
+    @Query("UPDATE SolicitudIdempotente s SET s.estado = 'COMPLETADA', s.respuesta = :respuesta " +
+           "WHERE s.clave = :clave AND s.estado = 'EN_CURSO' AND s.fechaCreacion = :tomada")
+    int completar(@Param("clave") String clave, @Param("tomada") Date tomada, @Param("respuesta") String respuesta);
+
+    // Retoma una solicitud EN_CURSO abandonada (el nodo que la tenía se cayó); solo un nodo lo consigue
+    @Modifying
+    @Transactional
+    @Query("UPDATE SolicitudIdempotente s SET s.fechaCreacion = :ahora " +
+           "WHERE s.clave = :clave AND s.estado = 'EN_CURSO' AND s.fechaCreacion < :limite")
+    int retomar(@Param("clave") String clave, @Param("ahora") Date ahora, @Param("limite") Date limite);
+
+    // La operación falló (y se deshizo): la clave queda libre para reintentar, salvo que ya la haya retomado otro
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SolicitudIdempotente s " +
+           "WHERE s.clave = :clave AND s.estado = 'EN_CURSO' AND s.fechaCreacion = :tomada")
+    int liberar(@Param("clave") String clave, @Param("tomada") Date tomada);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SolicitudIdempotente s WHERE s.fechaCreacion < :antesDe")
+    int eliminarAntiguas(@Param("antesDe") Date antesDe);
+}
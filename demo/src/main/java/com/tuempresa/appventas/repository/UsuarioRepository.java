@@ -1,5 +1,6 @@
 package com.tuempresa.appventas.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -7,6 +8,7 @@ import org.springframework.stereotype.Repository;
 import com.tuempresa.appventas.model.Usuario;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
@@ -27,4 +29,8 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
         LocalDateTime fechaLimite = LocalDateTime.now().minusDays(30);
         return countUsuariosActivosUltimos30Dias(fechaLimite);
     }
-}
\ No newline at end of file
+
+    // URLs de archivos por lotes (keyset por id) para el recolector de archivos huérfanos
+    @Query("SELECT u.id, u.deunaQrUrl FROM Usuario u WHERE u.id > :desde AND u.deunaQrUrl IS NOT NULL ORDER BY u.id")
+    List<Object[]> buscarUrlsArchivos(@Param("desde") Long desde, Pageable pagina);
+}
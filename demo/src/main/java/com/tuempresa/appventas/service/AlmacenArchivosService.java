@@ -0,0 +1,338 @@
+package com.tuempresa.appventas.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.tuempresa.appventas.model.Archivo;
+import com.tuempresa.appventas.repository.ArchivoRepository;
+
+// Almacén de archivos subidos direccionado por contenido.
+// Cada archivo se guarda una sola vez como uploads/blobs/ab/cd/<sha256>.<ext>: subir la misma foto
+// en otro producto (o en cada edición) reutiliza el archivo existente y solo suma una referencia.
+// El hash se calcula mientras se copia el stream, sin cargar el archivo completo en memoria: todas las subidas
+// pasan por un pool fijo de buffers directos, así la memoria usada por subidas en curso tiene un techo conocido.
+// El formato se decide por los primeros bytes del archivo (no por el Content-Type ni la extensión que manda
+// el cliente) y el tamaño máximo se controla mientras se copia.
+@Service
+public class AlmacenArchivosService {
+
+    public static final String PREFIJO_URL = "/uploads/blobs/";
+
+    @Autowired
+    private ArchivoRepository archivoRepository;
+
+    @Value("${app.uploads.tamanio-maximo:5MB}")
+    private DataSize tamanioMaximo;
+
+    @Value("${app.uploads.tamanio-buffer:64KB}")
+    private DataSize tamanioBuffer;
+
+    // Subidas que pueden copiarse a la vez; las demás esperan un buffer libre
+    @Value("${app.uploads.buffers:16}")
+    private int cantidadBuffers;
+
+    @Value("${app.uploads.espera-buffer-segundos:30}")
+    private long esperaBufferSegundos;
+
+    private final Path raiz = Paths.get(System.getProperty("user.dir"), "uploads", "blobs");
+    private final Path temporales = Paths.get(System.getProperty("user.dir"), "uploads", ".tmp");
+
+    private static final Set<Formato> IMAGENES = EnumSet.of(Formato.JPEG, Formato.PNG, Formato.GIF, Formato.WEBP);
+    private static final Set<Formato> COMPROBANTES = EnumSet.of(Formato.JPEG, Formato.PNG, Formato.GIF, Formato.WEBP, Formato.PDF);
+
+    private BlockingQueue<ByteBuffer> buffers;
+    private final AtomicInteger buffersCreados = new AtomicInteger();
+
+    private final AtomicInteger subidasEnCurso = new AtomicInteger();
+    private final AtomicLong bytesEnCurso = new AtomicLong();
+    private final AtomicLong subidasCompletadas = new AtomicLong();
+    private final AtomicLong subidasDuplicadas = new AtomicLong();
+    private final AtomicLong bytesEscritos = new AtomicLong();
+    private final AtomicLong rechazadasPorTamanio = new AtomicLong();
+    private final AtomicLong rechazadasPorFormato = new AtomicLong();
+
+    // Firmas (magic bytes) de los formatos aceptados
+    private enum Formato {
+        JPEG("jpg", "image/jpeg"),
+        PNG("png", "image/png"),
+        GIF("gif", "image/gif"),
+        WEBP("webp", "image/webp"),
+        PDF("pdf", "application/pdf");
+
+        private final String extension;
+        private final String tipoContenido;
+
+        Formato(String extension, String tipoContenido) {
+            this.extension = extension;
+            this.tipoContenido = tipoContenido;
+        }
+
+        static final int BYTES_CABECERA = 12;
+
+        static Formato detectar(ByteBuffer cabecera) {
+            int n = cabecera.remaining();
+            int p = cabecera.position();
+            if (n >= 3 && b(cabecera, p) == 0xFF && b(cabecera, p + 1) == 0xD8 && b(cabecera, p + 2) == 0xFF) {
+                return JPEG;
+            }
+            if (n >= 8 && coincide(cabecera, p, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+                return PNG;
+            }
+            if (n >= 6 && (coincide(cabecera, p, 'G', 'I', 'F', '8', '7', 'a') || coincide(cabecera, p, 'G', 'I', 'F', '8', '9', 'a'))) {
+                return GIF;
+            }
+            if (n >= 12 && coincide(cabecera, p, 'R', 'I', 'F', 'F') && coincide(cabecera, p + 8, 'W', 'E', 'B', 'P')) {
+                return WEBP;
+            }
+            if (n >= 5 && coincide(cabecera, p, '%', 'P', 'D', 'F', '-')) {
+                return PDF;
+            }
+            return null;
+        }
+
+        private static int b(ByteBuffer buffer, int indice) {
+            return buffer.get(indice) & 0xFF;
+        }
+
+        private static boolean coincide(ByteBuffer buffer, int desde, int... firma) {
+            for (int i = 0; i < firma.length; i++) {
+                if (b(buffer, desde + i) != firma[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // GUARDAR IMAGEN (devuelve la URL pública)
+    public String guardar(MultipartFile archivo) throws IOException {
+        return guardar(archivo, IMAGENES);
+    }
+
+    // GUARDAR COMPROBANTE DE PAGO (imagen o PDF)
+    public String guardarComprobante(MultipartFile archivo) throws IOException {
+        return guardar(archivo, COMPROBANTES);
+    }
+
+    private String guardar(MultipartFile archivo, Set<Formato> permitidos) throws IOException {
+        // Rechazo temprano cuando el tamaño declarado ya supera el límite
+        if (archivo.getSize() > tamanioMaximo.toBytes()) {
+            rechazadasPorTamanio.incrementAndGet();
+            throw new RuntimeException("El archivo no debe superar los " + limiteLegible());
+        }
+        Files.createDirectories(temporales);
+        Path temporal = temporales.resolve(UUID.randomUUID() + ".part");
+        ByteBuffer buffer = tomarBuffer();
+        subidasEnCurso.incrementAndGet();
+        long copiados = 0;
+        try {
+            MessageDigest digest = sha256();
+            Formato formato;
+            try (ReadableByteChannel entrada = Channels.newChannel(archivo.getInputStream());
+                 FileChannel salida = FileChannel.open(temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+
+                // Cabecera: se valida el formato antes de escribir nada en disco
+                while (buffer.position() < Formato.BYTES_CABECERA && entrada.read(buffer) >= 0) {
+                }
+                buffer.flip();
+                formato = Formato.detectar(buffer);
+                if (formato == null || !permitidos.contains(formato)) {
+                    rechazadasPorFormato.incrementAndGet();
+                    throw new RuntimeException(permitidos.contains(Formato.PDF)
+                            ? "El archivo debe ser una imagen (JPG, PNG, GIF, WEBP) o un PDF"
+                            : "El archivo debe ser una imagen (JPG, PNG, GIF, WEBP)");
+                }
+
+                do {
+                    copiados += buffer.remaining();
+                    bytesEnCurso.addAndGet(buffer.remaining());
+                    if (copiados > tamanioMaximo.toBytes()) {
+                        rechazadasPorTamanio.incrementAndGet();
+                        throw new RuntimeException("El archivo no debe superar los " + limiteLegible());
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        salida.write(buffer);
+                    }
+                    buffer.clear();
+                } while (leer(entrada, buffer));
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            String url = urlDe(hash, formato.extension);
+            Path destino = rutaDe(url);
+            if (Files.exists(destino)) {
+                subidasDuplicadas.incrementAndGet(); // mismo contenido ya almacenado
+            } else {
+                Files.createDirectories(destino.getParent());
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                bytesEscritos.addAndGet(copiados);
+            }
+            registrarReferencia(hash, url, copiados, formato.tipoContenido);
+            subidasCompletadas.incrementAndGet();
+            return url;
+        } finally {
+            bytesEnCurso.addAndGet(-copiados);
+            subidasEnCurso.decrementAndGet();
+            devolverBuffer(buffer);
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private String limiteLegible() {
+        return tamanioMaximo.toKilobytes() >= 1024 ? tamanioMaximo.toMegabytes() + "MB" : tamanioMaximo.toKilobytes() + "KB";
+    }
+
+    // Llena el buffer hasta donde se pueda; false cuando el stream ya terminó y no quedó nada por escribir
+    private boolean leer(ReadableByteChannel entrada, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && entrada.read(buffer) >= 0) {
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    private ByteBuffer tomarBuffer() throws IOException {
+        BlockingQueue<ByteBuffer> pool = pool();
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null && buffersCreados.getAndUpdate(n -> n < cantidadBuffers ? n + 1 : n) < cantidadBuffers) {
+            buffer = ByteBuffer.allocateDirect((int) tamanioBuffer.toBytes());
+        }
+        if (buffer == null) {
+            try {
+                buffer = pool.poll(esperaBufferSegundos, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (buffer == null) {
+            throw new IOException("Servidor ocupado procesando otras subidas, intenta nuevamente");
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void devolverBuffer(ByteBuffer buffer) {
+        pool().offer(buffer);
+    }
+
+    private synchronized BlockingQueue<ByteBuffer> pool() {
+        if (buffers == null) {
+            buffers = new ArrayBlockingQueue<>(Math.max(cantidadBuffers, 1));
+        }
+        return buffers;
+    }
+
+    // MÉTRICAS (memoria de subidas en curso y rechazos)
+    public Map<String, Object> estadisticas() {
+        int creados = buffersCreados.get();
+        int enUso = creados - pool().size();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("subidasEnCurso", subidasEnCurso.get());
+        resultado.put("bytesEnCurso", bytesEnCurso.get());
+        resultado.put("buffersEnUso", enUso);
+        resultado.put("buffersCreados", creados);
+        resultado.put("buffersMaximos", cantidadBuffers);
+        resultado.put("memoriaBuffersEnUso", (long) enUso * tamanioBuffer.toBytes());
+        resultado.put("memoriaBuffersReservada", (long) creados * tamanioBuffer.toBytes());
+        resultado.put("subidasCompletadas", subidasCompletadas.get());
+        resultado.put("subidasDuplicadas", subidasDuplicadas.get());
+        resultado.put("bytesEscritos", bytesEscritos.get());
+        resultado.put("rechazadasPorTamanio", rechazadasPorTamanio.get());
+        resultado.put("rechazadasPorFormato", rechazadasPorFormato.get());
+        return resultado;
+    }
+
+    // LIBERAR REFERENCIA (cuando una entidad deja de usar la URL). Las URLs antiguas, fuera del almacén, se ignoran
+    public void liberar(String url) {
+        String hash = hashDe(url);
+        if (hash != null) {
+            archivoRepository.decrementarReferencias(hash, new Date());
+        }
+    }
+
+    public void liberar(Collection<String> urls) {
+        urls.forEach(this::liberar);
+    }
+
+    // SUMAR REFERENCIA (cuando otra entidad empieza a usar una URL ya guardada, sin volver a subirla)
+    public void retener(String url) {
+        String hash = hashDe(url);
+        if (hash != null) {
+            archivoRepository.incrementarReferencias(hash, new Date());
+        }
+    }
+
+    public boolean esDelAlmacen(String url) {
+        return hashDe(url) != null;
+    }
+
+    // Ruta en disco de una URL /uploads/blobs/...
+    public Path rutaDe(String url) {
+        return raiz.resolve(url.substring(PREFIJO_URL.length())).normalize();
+    }
+
+    private void registrarReferencia(String hash, String url, long tamanio, String tipoContenido) {
+        if (archivoRepository.incrementarReferencias(hash, new Date()) > 0) {
+            return;
+        }
+        try {
+            archivoRepository.save(new Archivo(hash, url, tamanio, tipoContenido));
+        } catch (DataIntegrityViolationException e) {
+            // Otra subida del mismo contenido insertó la fila primero
+            archivoRepository.incrementarReferencias(hash, new Date());
+        }
+    }
+
+    // Dos niveles de subdirectorios (65.536 carpetas) para no acumular miles de archivos en una sola
+    private String urlDe(String hash, String extension) {
+        return PREFIJO_URL + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension;
+    }
+
+    private String hashDe(String url) {
+        if (url == null || !url.startsWith(PREFIJO_URL)) {
+            return null;
+        }
+        String nombre = url.substring(url.lastIndexOf('/') + 1);
+        int punto = nombre.indexOf('.');
+        String hash = punto > 0 ? nombre.substring(0, punto) : nombre;
+        return hash.length() == 64 ? hash : null;
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.tuempresa.appventas.service;
 
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
 import com.tuempresa.appventas.model.Apelacion;
 import com.tuempresa.appventas.model.Incidencia;
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.ApelacionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,9 @@ public class ApelacionService {
     @Autowired
     private IncidenciaService incidenciaService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Crear una apelación
     @Transactional
     public Apelacion crearApelacion(Incidencia incidencia, Usuario vendedor, String motivo, String justificacion) {
@@ -76,8 +81,10 @@ public class ApelacionService {
             Incidencia incidencia = apelacion.getIncidencia();
             if (incidencia.getProducto() != null) {
                 incidencia.getProducto().setEstado("ACTIVO");
+                eventPublisher.publishEvent(PublicacionModificadaEvent.de(incidencia.getProducto()));
             } else if (incidencia.getServicio() != null) {
                 incidencia.getServicio().setEstado("ACTIVO");
+                eventPublisher.publishEvent(PublicacionModificadaEvent.de(incidencia.getServicio()));
             }
         } else {
             apelacion.setEstado("RECHAZADA");
@@ -0,0 +1,356 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.tuempresa.appventas.event.CarritoCompradoEvent;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.repository.CarritoRepository;
+import com.tuempresa.appventas.repository.ItemCarritoRepository;
+import com.tuempresa.appventas.repository.UsuarioRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Carritos activos en memoria con guardado diferido (write-behind).
+// Cada carrito se lee de la BD la primera vez que se usa y queda en un mapa por usuario; las ediciones se aplican
+// en memoria bajo un candado por franja de usuarios y solo marcan el carrito como pendiente. Cada
+// app.carrito.guardado-intervalo-ms los pendientes se escriben por lotes (un DELETE y un lote de INSERT por grupo),
+// así que muchos clics seguidos sobre el mismo carrito terminan en una sola escritura. Los carritos sin cambios
+// que llevan app.carrito.inactividad-minutos sin usarse salen del mapa y se vuelven a leer si hacen falta.
+// Un reinicio brusco pierde como mucho el último intervalo de ediciones. Con varios nodos cada usuario debe
+// atenderse siempre en el mismo (ip_hash en el proxy, ver README).
+@Service
+public class CarritoMemoriaService {
+
+    private static final int FRANJAS = 64;
+
+    // Solo se insertan líneas de productos que siguen existiendo (pudieron borrarse mientras el carrito estaba en memoria)
+    private static final String INSERTAR_ITEM =
+            "INSERT INTO items_carrito (carrito_id, producto_id, cantidad, precio_unitario) SELECT ?, id, ?, ? FROM productos WHERE id = ?";
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.carrito.inactividad-minutos:30}")
+    private long inactividadMinutos;
+
+    // Carritos por transacción de guardado
+    @Value("${app.carrito.guardado-lote:200}")
+    private int lote;
+
+    private final Map<Long, CarritoActivo> carritos = new ConcurrentHashMap<>();
+    private final ReentrantLock[] candados = new ReentrantLock[FRANJAS];
+    private TransactionTemplate transaccion;
+
+    @PostConstruct
+    public void iniciar() {
+        for (int i = 0; i < FRANJAS; i++) {
+            candados[i] = new ReentrantLock();
+        }
+        transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    // Lo pendiente se guarda antes de apagar
+    @PreDestroy
+    public void detener() {
+        guardarPendientes();
+    }
+
+    // USAR EL CARRITO DE UN USUARIO (lo carga si no está en memoria).
+    // La operación corre con el candado tomado: no debe hacer E/S ni devolver el CarritoActivo
+    public <T> T usar(Long usuarioId, Function<CarritoActivo, T> operacion) {
+        ReentrantLock candado = candado(usuarioId);
+        candado.lock();
+        try {
+            CarritoActivo carrito = carritos.get(usuarioId);
+            if (carrito == null) {
+                carrito = cargar(usuarioId);
+                carritos.put(usuarioId, carrito);
+            }
+            carrito.ultimoUso = System.currentTimeMillis();
+            return operacion.apply(carrito);
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private CarritoActivo cargar(Long usuarioId) {
+        List<Object[]> filas = carritoRepository.buscarContenido(usuarioId);
+        if (filas.isEmpty() && !usuarioRepository.existsById(usuarioId)) {
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        CarritoActivo carrito = new CarritoActivo(usuarioId);
+        for (Object[] fila : filas) {
+            carrito.carritoId = (Long) fila[0];
+            if (fila[1] != null) {
+                carrito.agregar((Long) fila[1], (Integer) fila[2], (Double) fila[3]);
+            }
+        }
+        carrito.versionGuardada = carrito.version; // recién leído: nada que guardar
+        return carrito;
+    }
+
+    // Lo comprado sale del carrito en memoria (el pedido ya lo borró de la BD en su transacción)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alComprar(CarritoCompradoEvent evento) {
+        conCarritoCargado(evento.getUsuarioId(), carrito ->
+                evento.getCantidades().forEach((productoId, cantidad) ->
+                        carrito.cambiarCantidad(productoId, carrito.cantidad(productoId) - cantidad)));
+    }
+
+    // Un producto borrado desaparece de todos los carritos en memoria
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        if (evento.getTipo() != PublicacionModificadaEvent.Tipo.PRODUCTO || !evento.isEliminado()) {
+            return;
+        }
+        for (Long usuarioId : carritos.keySet()) {
+            conCarritoCargado(usuarioId, carrito -> carrito.quitar(evento.getId()));
+        }
+    }
+
+    private void conCarritoCargado(Long usuarioId, Consumer<CarritoActivo> operacion) {
+        ReentrantLock candado = candado(usuarioId);
+        candado.lock();
+        try {
+            CarritoActivo carrito = carritos.get(usuarioId);
+            if (carrito != null) {
+                operacion.accept(carrito);
+            }
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.carrito.guardado-intervalo-ms:5000}")
+    public void guardarPendientes() {
+        long limiteUso = System.currentTimeMillis() - inactividadMinutos * 60_000L;
+        List<Foto> fotos = new ArrayList<>();
+        int guardados = 0;
+        int descartados = 0;
+        for (Long usuarioId : carritos.keySet()) {
+            ReentrantLock candado = candado(usuarioId);
+            candado.lock();
+            try {
+                CarritoActivo carrito = carritos.get(usuarioId);
+                if (carrito == null) {
+                    continue;
+                }
+                if (carrito.isPendiente()) {
+                    fotos.add(new Foto(carrito, carrito.version, carrito.carritoId, new LinkedHashMap<>(carrito.items)));
+                } else if (carrito.ultimoUso < limiteUso) {
+                    carritos.remove(usuarioId);
+                    descartados++;
+                }
+            } finally {
+                candado.unlock();
+            }
+            if (fotos.size() >= lote) {
+                guardados += guardar(fotos);
+                fotos = new ArrayList<>();
+            }
+        }
+        if (!fotos.isEmpty()) {
+            guardados += guardar(fotos);
+        }
+        if (guardados > 0 || descartados > 0) {
+            System.out.println("🛒 Carritos: " + guardados + " guardados, " + descartados + " descartados de memoria, "
+                    + carritos.size() + " activos");
+        }
+    }
+
+    private int guardar(List<Foto> fotos) {
+        try {
+            Map<Long, Long> carritoIds = transaccion.execute(estado -> escribir(fotos));
+            for (Foto foto : fotos) {
+                conCarritoCargado(foto.carrito().usuarioId, carrito -> {
+                    if (carrito == foto.carrito()) {
+                        carrito.carritoId = carritoIds.getOrDefault(carrito.usuarioId, carrito.carritoId);
+                        carrito.versionGuardada = Math.max(carrito.versionGuardada, foto.version());
+                    }
+                });
+            }
+            return fotos.size();
+        } catch (Exception e) {
+            // Siguen pendientes: se reintenta en la próxima vuelta
+            System.err.println("❌ Error guardando carritos: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Devuelve usuarioId -> carritoId de los carritos escritos
+    private Map<Long, Long> escribir(List<Foto> fotos) {
+        Map<Long, Long> carritoIds = new HashMap<>();
+        List<Long> sinCarrito = new ArrayList<>();
+        for (Foto foto : fotos) {
+            if (foto.carritoId() != null) {
+                carritoIds.put(foto.carrito().usuarioId, foto.carritoId());
+            } else if (!foto.items().isEmpty()) {
+                sinCarrito.add(foto.carrito().usuarioId);
+            }
+        }
+
+        // Primer guardado de un carrito: se crea la fila (si otro nodo no la creó ya)
+        if (!sinCarrito.isEmpty()) {
+            for (Object[] fila : carritoRepository.buscarIdsPorUsuarios(sinCarrito)) {
+                carritoIds.put((Long) fila[0], (Long) fila[1]);
+            }
+            List<Object[]> nuevos = sinCarrito.stream()
+                    .filter(usuarioId -> !carritoIds.containsKey(usuarioId))
+                    .map(usuarioId -> new Object[] { usuarioId })
+                    .toList();
+            if (!nuevos.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO carritos (usuario_id) VALUES (?)", nuevos);
+                for (Object[] fila : carritoRepository.buscarIdsPorUsuarios(sinCarrito)) {
+                    carritoIds.put((Long) fila[0], (Long) fila[1]);
+                }
+            }
+        }
+        if (carritoIds.isEmpty()) {
+            return carritoIds;
+        }
+
+        itemCarritoRepository.eliminarDeCarritos(carritoIds.values());
+        List<Object[]> filas = new ArrayList<>();
+        for (Foto foto : fotos) {
+            Long carritoId = carritoIds.get(foto.carrito().usuarioId);
+            if (carritoId != null) {
+                foto.items().forEach((productoId, linea) ->
+                        filas.add(new Object[] { carritoId, linea.cantidad(), linea.precio(), productoId }));
+            }
+        }
+        if (!filas.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERTAR_ITEM, filas);
+        }
+        return carritoIds;
+    }
+
+    private ReentrantLock candado(Long usuarioId) {
+        return candados[Math.floorMod(usuarioId.hashCode(), FRANJAS)];
+    }
+
+    // Contenido de un carrito en un momento dado (en el orden en que se agregaron los productos)
+    public record Contenido(Long usuarioId, Long carritoId, Map<Long, Linea> items, double total) {
+
+        // productoId -> cantidad
+        public Map<Long, Integer> cantidades() {
+            Map<Long, Integer> cantidades = new LinkedHashMap<>();
+            items.forEach((productoId, linea) -> cantidades.put(productoId, linea.cantidad()));
+            return cantidades;
+        }
+    }
+
+    // Línea del carrito: cantidad y precio unitario que vio el comprador al agregar el producto
+    public record Linea(int cantidad, double precio) {
+
+        long centavos() {
+            return Math.round(precio * 100) * cantidad;
+        }
+    }
+
+    private record Foto(CarritoActivo carrito, long version, Long carritoId, Map<Long, Linea> items) {
+    }
+
+    // Carrito de un usuario en memoria. Solo se toca con el candado de su franja (dentro de usar).
+    // El total se lleva en centavos y se ajusta con cada cambio de línea, sin recorrer el carrito
+    public static final class CarritoActivo {
+
+        private final Long usuarioId;
+        private Long carritoId; // null hasta el primer guardado
+        private final Map<Long, Linea> items = new LinkedHashMap<>();
+        private long totalCentavos;
+        private long version;
+        private long versionGuardada;
+        private long ultimoUso;
+
+        private CarritoActivo(Long usuarioId) {
+            this.usuarioId = usuarioId;
+        }
+
+        public int cantidad(Long productoId) {
+            Linea linea = items.get(productoId);
+            return linea != null ? linea.cantidad() : 0;
+        }
+
+        // Suma unidades y toma el precio actual como el visto por el comprador
+        public void agregar(Long productoId, int cantidad, double precio) {
+            poner(productoId, new Linea(cantidad(productoId) + cantidad, precio));
+        }
+
+        // Cambia la cantidad de un producto que ya está en el carrito (conserva su precio); <= 0 lo quita
+        public void cambiarCantidad(Long productoId, int cantidad) {
+            Linea linea = items.get(productoId);
+            if (linea != null) {
+                poner(productoId, new Linea(cantidad, linea.precio()));
+            }
+        }
+
+        public void cambiarPrecio(Long productoId, double precio) {
+            Linea linea = items.get(productoId);
+            if (linea != null) {
+                poner(productoId, new Linea(linea.cantidad(), precio));
+            }
+        }
+
+        public void quitar(Long productoId) {
+            poner(productoId, new Linea(0, 0));
+        }
+
+        public void vaciar() {
+            if (!items.isEmpty()) {
+                items.clear();
+                totalCentavos = 0;
+                version++;
+            }
+        }
+
+        private void poner(Long productoId, Linea linea) {
+            Linea anterior = linea.cantidad() > 0 ? items.put(productoId, linea) : items.remove(productoId);
+            Linea nueva = linea.cantidad() > 0 ? linea : null;
+            if (!Objects.equals(anterior, nueva)) {
+                totalCentavos += (nueva != null ? nueva.centavos() : 0) - (anterior != null ? anterior.centavos() : 0);
+                version++;
+            }
+        }
+
+        public Contenido contenido() {
+            return new Contenido(usuarioId, carritoId, Collections.unmodifiableMap(new LinkedHashMap<>(items)),
+                    totalCentavos / 100.0);
+        }
+
+        private boolean isPendiente() {
+            return version != versionGuardada;
+        }
+    }
+}
@@ -1,108 +1,158 @@
 package com.tuempresa.appventas.service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.tuempresa.appventas.model.Carrito;
-import com.tuempresa.appventas.model.ItemCarrito;
+import com.tuempresa.appventas.dto.CambioCarrito;
+import com.tuempresa.appventas.dto.CarritoVista;
+import com.tuempresa.appventas.dto.ItemCarritoVista;
 import com.tuempresa.appventas.model.Producto;
-import com.tuempresa.appventas.model.Usuario;
-import com.tuempresa.appventas.repository.CarritoRepository;
-import com.tuempresa.appventas.repository.ItemCarritoRepository;
 import com.tuempresa.appventas.repository.ProductoRepository;
-import com.tuempresa.appventas.repository.UsuarioRepository;
 
+// Operaciones del carrito sobre los carritos en memoria (CarritoMemoriaService): editar no toca la BD,
+// y los productos se leen de la caché de detalle
 @Service
 public class CarritoService {
 
     @Autowired
-    private CarritoRepository carritoRepository;
-
-    @Autowired
-    private UsuarioRepository usuarioRepository;
+    private CarritoMemoriaService carritoMemoria;
 
     @Autowired
     private ProductoRepository productoRepository;
-    
+
     @Autowired
-    private ItemCarritoRepository itemCarritoRepository;
-
-    public Carrito obtenerCarritoPorUsuario(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        
-        return carritoRepository.findByUsuario(usuario)
-                .orElseGet(() -> {
-                    Carrito nuevoCarrito = new Carrito(usuario);
-                    return carritoRepository.save(nuevoCarrito);
-                });
+    private CatalogoCacheService catalogoCache;
+
+    public CarritoVista obtenerCarritoPorUsuario(Long usuarioId) {
+        return vista(contenido(usuarioId));
+    }
+
+    // CONTENIDO ACTUAL (para armar el pedido)
+    public CarritoMemoriaService.Contenido contenido(Long usuarioId) {
+        return carritoMemoria.usar(usuarioId, CarritoMemoriaService.CarritoActivo::contenido);
     }
 
-    @Transactional
-    public Carrito agregarProducto(Long usuarioId, Long productoId, Integer cantidad) {
-        Carrito carrito = obtenerCarritoPorUsuario(usuarioId);
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    public CarritoVista agregarProducto(Long usuarioId, Long productoId, Integer cantidad) {
+        Producto producto = producto(productoId);
 
         if (producto.getCantidad() < cantidad) {
             throw new RuntimeException("Stock insuficiente");
         }
 
-        Optional<ItemCarrito> itemExistente = carrito.getItems().stream()
-                .filter(item -> item.getProducto().getId().equals(productoId))
-                .findFirst();
-
-        if (itemExistente.isPresent()) {
-            ItemCarrito item = itemExistente.get();
-            item.setCantidad(item.getCantidad() + cantidad);
-        } else {
-            ItemCarrito newItem = new ItemCarrito(producto, cantidad, carrito);
-            carrito.getItems().add(newItem);
-        }
-
-        return carritoRepository.save(carrito);
+        return vista(carritoMemoria.usar(usuarioId, carrito -> {
+            carrito.agregar(productoId, cantidad, producto.getPrecio());
+            return carrito.contenido();
+        }));
     }
 
-    @Transactional
-    public Carrito eliminarProducto(Long usuarioId, Long productoId) {
-        Carrito carrito = obtenerCarritoPorUsuario(usuarioId);
-        carrito.getItems().removeIf(item -> item.getProducto().getId().equals(productoId));
-        return carritoRepository.save(carrito);
+    public CarritoVista eliminarProducto(Long usuarioId, Long productoId) {
+        return vista(carritoMemoria.usar(usuarioId, carrito -> {
+            carrito.quitar(productoId);
+            return carrito.contenido();
+        }));
     }
     
-    @Transactional
-    public Carrito actualizarCantidad(Long usuarioId, Long productoId, Integer cantidad) {
-        Carrito carrito = obtenerCarritoPorUsuario(usuarioId);
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    public CarritoVista actualizarCantidad(Long usuarioId, Long productoId, Integer cantidad) {
+        Producto producto = producto(productoId);
                 
         if (producto.getCantidad() < cantidad) {
             throw new RuntimeException("Stock insuficiente");
         }
 
-        Optional<ItemCarrito> itemExistente = carrito.getItems().stream()
-                .filter(item -> item.getProducto().getId().equals(productoId))
-                .findFirst();
+        return vista(carritoMemoria.usar(usuarioId, carrito -> {
+            carrito.cambiarCantidad(productoId, cantidad);
+            return carrito.contenido();
+        }));
+    }
 
-        if (itemExistente.isPresent()) {
-            ItemCarrito item = itemExistente.get();
-            if (cantidad <= 0) {
-                carrito.getItems().remove(item);
-            } else {
-                item.setCantidad(cantidad);
+    public void vaciarCarrito(Long usuarioId) {
+        carritoMemoria.usar(usuarioId, carrito -> {
+            carrito.vaciar();
+            return null;
+        });
+    }
+
+    private Producto producto(Long productoId) {
+        Producto producto = catalogoCache.producto(productoId, () -> productoRepository.findById(productoId).orElse(null));
+        if (producto == null) {
+            throw new RuntimeException("Producto no encontrado");
+        }
+        return producto;
+    }
+
+    // REVALIDAR ANTES DE COMPRAR: una sola consulta a la BD (no a la caché) con el precio y el stock actuales;
+    // se devuelven solo los productos cuyo precio cambió, cuyo stock ya no alcanza o que se borraron.
+    // Los precios nuevos quedan en el carrito para que el comprador los vea
+    public List<CambioCarrito> revalidar(CarritoMemoriaService.Contenido contenido) {
+        if (contenido.items().isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Object[]> actuales = new HashMap<>();
+        for (Object[] fila : productoRepository.buscarPrecioYStock(contenido.items().keySet())) {
+            actuales.put((Long) fila[0], fila);
+        }
+
+        List<CambioCarrito> cambios = new ArrayList<>();
+        contenido.items().forEach((productoId, linea) -> {
+            Object[] actual = actuales.get(productoId);
+            if (actual == null) {
+                cambios.add(new CambioCarrito(productoId, linea.precio(), null, linea.cantidad(), null));
+                return;
+            }
+            double precio = (Double) actual[1];
+            int stock = actual[2] != null ? (Integer) actual[2] : 0;
+            if (precio != linea.precio() || stock < linea.cantidad()) {
+                cambios.add(new CambioCarrito(productoId, linea.precio(), precio, linea.cantidad(), stock));
             }
+        });
+
+        if (!cambios.isEmpty()) {
+            carritoMemoria.usar(contenido.usuarioId(), carrito -> {
+                for (CambioCarrito cambio : cambios) {
+                    if (cambio.precioActual() == null) {
+                        carrito.quitar(cambio.productoId());
+                    } else {
+                        carrito.cambiarPrecio(cambio.productoId(), cambio.precioActual());
+                    }
+                }
+                return null;
+            });
         }
+        return cambios;
+    }
 
-        return carritoRepository.save(carrito);
+    // Arma la vista con los precios vistos por el comprador y los productos de la caché (una sola consulta
+    // para los que falten)
+    private CarritoVista vista(CarritoMemoriaService.Contenido contenido) {
+        List<Long> ids = new ArrayList<>(contenido.items().keySet());
+        List<Producto> productos = catalogoCache.productos(ids, productoRepository::buscarPorIds);
+        List<ItemCarritoVista> items = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Producto producto = productos.get(i);
+            if (producto == null) {
+                continue; // borrado mientras estaba en el carrito
+            }
+            CarritoMemoriaService.Linea linea = contenido.items().get(ids.get(i));
+            items.add(new ItemCarritoVista(producto, linea.cantidad(), linea.precio(), linea.precio() * linea.cantidad()));
+        }
+        return new CarritoVista(contenido.carritoId(), contenido.usuarioId(), items, contenido.total());
     }
 
-    @Transactional
-    public void vaciarCarrito(Long usuarioId) {
-        Carrito carrito = obtenerCarritoPorUsuario(usuarioId);
-        carrito.getItems().clear();
-        carritoRepository.save(carrito);
+    // El carrito cambió desde que el comprador lo vio: el pedido no se crea y se devuelven los cambios
+    public static class CarritoDesactualizadoException extends RuntimeException {
+
+        private final List<CambioCarrito> cambios;
+
+        public CarritoDesactualizadoException(List<CambioCarrito> cambios) {
+            super("Algunos productos de tu carrito cambiaron de precio o ya no tienen stock suficiente");
+            this.cambios = cambios;
+        }
+
+        public List<CambioCarrito> getCambios() { return cambios; }
     }
 }
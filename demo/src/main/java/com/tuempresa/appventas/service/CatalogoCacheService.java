@@ -0,0 +1,121 @@
+package com.tuempresa.appventas.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.event.StockModificadoEvent;
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Servicio;
+
+// Caché de lectura para el detalle de productos y servicios (Caffeine, W-TinyLFU).
+// Las entradas se invalidan con cada PublicacionModificadaEvent, después del commit.
+// Las instancias cacheadas son compartidas: quien vaya a modificarlas debe leer directo de la BD.
+@Service
+public class CatalogoCacheService {
+
+    private final Cache<Long, Producto> productos;
+    private final Cache<Long, Servicio> servicios;
+
+    public CatalogoCacheService(
+            @Value("${app.cache.catalogo.tamanio-maximo:10000}") long tamanioMaximo,
+            @Value("${app.cache.catalogo.ttl-segundos:300}") long ttlSegundos) {
+        this.productos = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        this.servicios = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+    }
+
+    // Devuelve el producto cacheado o lo carga; si el cargador devuelve null no se cachea nada
+    public Producto producto(Long id, Supplier<Producto> cargador) {
+        return productos.get(id, clave -> cargador.get());
+    }
+
+    public Servicio servicio(Long id, Supplier<Servicio> cargador) {
+        return servicios.get(id, clave -> cargador.get());
+    }
+
+    // Varios productos de una vez: los que faltan en caché se cargan con una sola llamada al cargador.
+    // El resultado respeta el orden de ids y tiene null donde el producto no existe.
+    public List<Producto> productos(List<Long> ids, Function<List<Long>, List<Producto>> cargador) {
+        return enOrden(productos, ids, cargador, Producto::getId);
+    }
+
+    public List<Servicio> servicios(List<Long> ids, Function<List<Long>, List<Servicio>> cargador) {
+        return enOrden(servicios, ids, cargador, Servicio::getId);
+    }
+
+    private static <T> List<T> enOrden(Cache<Long, T> cache, List<Long> ids,
+                                       Function<List<Long>, List<T>> cargador, Function<T, Long> id) {
+        Set<Long> distintos = new LinkedHashSet<>(ids);
+        distintos.remove(null);
+        Map<Long, T> encontrados = cache.getAll(distintos, faltantes -> {
+            Map<Long, T> cargados = new HashMap<>();
+            for (T elemento : cargador.apply(List.copyOf(faltantes))) {
+                cargados.put(id.apply(elemento), elemento);
+            }
+            return cargados;
+        });
+        List<T> resultado = new ArrayList<>(ids.size());
+        for (Long clave : ids) {
+            resultado.add(clave == null ? null : encontrados.get(clave));
+        }
+        return resultado;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        if (evento.getTipo() == PublicacionModificadaEvent.Tipo.PRODUCTO) {
+            productos.invalidate(evento.getId());
+        } else {
+            servicios.invalidate(evento.getId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarStock(StockModificadoEvent evento) {
+        productos.invalidateAll(evento.getProductoIds());
+    }
+
+    // MÉTRICAS (aciertos, fallos, desalojos)
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("productos", resumen(productos));
+        resultado.put("servicios", resumen(servicios));
+        return resultado;
+    }
+
+    private Map<String, Object> resumen(Cache<Long, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("tamanio", cache.estimatedSize());
+        resumen.put("aciertos", stats.hitCount());
+        resumen.put("fallos", stats.missCount());
+        resumen.put("tasaAciertos", stats.hitRate());
+        resumen.put("desalojos", stats.evictionCount());
+        resumen.put("cargas", stats.loadCount());
+        resumen.put("tiempoMedioCargaMs", stats.averageLoadPenalty() / 1_000_000.0);
+        return resumen;
+    }
+}
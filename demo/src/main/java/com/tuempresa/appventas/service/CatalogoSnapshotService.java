@@ -0,0 +1,246 @@
+package com.tuempresa.appventas.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tuempresa.appventas.dto.ProductoTarjeta;
+import com.tuempresa.appventas.dto.ServicioTarjeta;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.repository.ProductoRepository;
+import com.tuempresa.appventas.repository.ServicioRepository;
+
+// Imagen pre-serializada (JSON y JSON gzip) de los catálogos públicos de productos y servicios.
+// Se arma con las tarjetas livianas (ProductoTarjeta / ServicioTarjeta), no con las entidades.
+// Cada publicación se serializa una sola vez y se guarda como fragmento; un PublicacionModificadaEvent
+// solo re-serializa la publicación afectada. El arreglo final se ensambla al primer pedido tras un cambio
+// y lleva una versión que se usa como ETag.
+@Service
+public class CatalogoSnapshotService {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper; // el mismo que usan los controladores, para que el JSON sea idéntico
+
+    // Red de seguridad: datos del vendedor (nombre, calificación) pueden cambiar sin evento
+    @Value("${app.catalogo.snapshot.reconstruccion-segundos:600}")
+    private long reconstruccionSegundos;
+
+    // Distingue versiones entre reinicios para que un ETag viejo nunca coincida por casualidad
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Catalogo productos = new Catalogo("p");
+    private final Catalogo servicios = new Catalogo("s");
+
+    public record Snapshot(String etag, byte[] json, byte[] gzip) {
+    }
+
+    // OBTENER SNAPSHOT (null si todavía no se construyó: el llamador consulta la BD como antes)
+    public Snapshot productos() {
+        if (productos.vencido()) {
+            reconstruirProductos();
+        }
+        return productos.snapshot();
+    }
+
+    public Snapshot servicios() {
+        if (servicios.vencido()) {
+            reconstruirServicios();
+        }
+        return servicios.snapshot();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        reconstruirProductos();
+        reconstruirServicios();
+    }
+
+    private void reconstruirProductos() {
+        try {
+            List<ProductoTarjeta> activos = productoRepository.buscarTarjetasActivas();
+            productos.reemplazar(fragmentos(activos, ProductoTarjeta::id));
+            System.out.println("📦 Snapshot del catálogo de productos: " + activos.size() + " productos");
+        } catch (Exception e) {
+            System.err.println("❌ Error construyendo snapshot de productos: " + e.getMessage());
+        }
+    }
+
+    private void reconstruirServicios() {
+        try {
+            List<ServicioTarjeta> activos = servicioRepository.buscarTarjetasActivas();
+            servicios.reemplazar(fragmentos(activos, ServicioTarjeta::id));
+            System.out.println("📦 Snapshot del catálogo de servicios: " + activos.size() + " servicios");
+        } catch (Exception e) {
+            System.err.println("❌ Error construyendo snapshot de servicios: " + e.getMessage());
+        }
+    }
+
+    // Se ejecuta después del commit para no publicar cambios que terminen en rollback
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        try {
+            if (evento.getTipo() == PublicacionModificadaEvent.Tipo.PRODUCTO) {
+                Optional<ProductoTarjeta> tarjeta = evento.isEliminado()
+                        ? Optional.empty() : productoRepository.buscarTarjetaActiva(evento.getId());
+                if (tarjeta.isPresent()) {
+                    productos.poner(evento.getId(), serializar(tarjeta.get()));
+                } else {
+                    productos.quitar(evento.getId());
+                }
+            } else {
+                Optional<ServicioTarjeta> tarjeta = evento.isEliminado()
+                        ? Optional.empty() : servicioRepository.buscarTarjetaActiva(evento.getId());
+                if (tarjeta.isPresent()) {
+                    servicios.poner(evento.getId(), serializar(tarjeta.get()));
+                } else {
+                    servicios.quitar(evento.getId());
+                }
+            }
+        } catch (Exception e) {
+            // Ante cualquier duda se fuerza una reconstrucción completa en el próximo pedido
+            (evento.getTipo() == PublicacionModificadaEvent.Tipo.PRODUCTO ? productos : servicios).invalidar();
+            System.err.println("❌ Error actualizando snapshot del catálogo: " + e.getMessage());
+        }
+    }
+
+    private <T> Map<Long, byte[]> fragmentos(List<T> publicaciones, Function<T, Long> id) {
+        Map<Long, byte[]> resultado = new TreeMap<>();
+        for (T publicacion : publicaciones) {
+            resultado.put(id.apply(publicacion), serializar(publicacion));
+        }
+        return resultado;
+    }
+
+    private byte[] serializar(Object publicacion) {
+        try {
+            return objectMapper.writeValueAsBytes(publicacion);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializando publicación: " + e.getMessage());
+        }
+    }
+
+    // Fragmentos ordenados por ID y el snapshot ensamblado a partir de ellos
+    private class Catalogo {
+
+        private final String prefijo;
+        private final TreeMap<Long, byte[]> fragmentos = new TreeMap<>();
+        private long version = 0;
+        private long ultimaReconstruccion = 0;
+        private volatile boolean listo = false;
+        private volatile boolean sucio = true;
+        private volatile Snapshot actual;
+
+        Catalogo(String prefijo) {
+            this.prefijo = prefijo;
+        }
+
+        synchronized void reemplazar(Map<Long, byte[]> nuevos) {
+            fragmentos.clear();
+            fragmentos.putAll(nuevos);
+            ultimaReconstruccion = System.currentTimeMillis();
+            listo = true;
+            sucio = true;
+        }
+
+        synchronized void poner(Long id, byte[] fragmento) {
+            byte[] previo = fragmentos.put(id, fragmento);
+            if (!Arrays.equals(previo, fragmento)) {
+                sucio = true;
+            }
+        }
+
+        synchronized void quitar(Long id) {
+            if (fragmentos.remove(id) != null) {
+                sucio = true;
+            }
+        }
+
+        synchronized void invalidar() {
+            ultimaReconstruccion = 0;
+        }
+
+        // Solo el primer pedido que encuentra el snapshot vencido lo reconstruye; si la BD falla,
+        // el siguiente intento espera otro intervalo completo
+        synchronized boolean vencido() {
+            long ahora = System.currentTimeMillis();
+            if (ahora - ultimaReconstruccion <= reconstruccionSegundos * 1000) {
+                return false;
+            }
+            ultimaReconstruccion = ahora;
+            return true;
+        }
+
+        Snapshot snapshot() {
+            Snapshot snapshot = actual;
+            if (snapshot != null && !sucio) {
+                return snapshot;
+            }
+            synchronized (this) {
+                if (!listo) {
+                    return null;
+                }
+                if (actual == null || sucio) {
+                    byte[] json = ensamblar();
+                    // Si el contenido no cambió se conserva la versión (y el ETag que ya tienen los clientes)
+                    if (actual == null || !Arrays.equals(actual.json(), json)) {
+                        version++;
+                        actual = new Snapshot("\"" + prefijo + "-" + arranque + "-" + version + "\"", json, comprimir(json));
+                    }
+                    sucio = false;
+                }
+                return actual;
+            }
+        }
+
+        private byte[] ensamblar() {
+            int longitud = 2 + Math.max(fragmentos.size() - 1, 0);
+            for (byte[] fragmento : fragmentos.values()) {
+                longitud += fragmento.length;
+            }
+            byte[] json = new byte[longitud];
+            int posicion = 0;
+            json[posicion++] = '[';
+            for (byte[] fragmento : fragmentos.values()) {
+                if (posicion > 1) {
+                    json[posicion++] = ',';
+                }
+                System.arraycopy(fragmento, 0, json, posicion, fragmento.length);
+                posicion += fragmento.length;
+            }
+            json[posicion] = ']';
+            return json;
+        }
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(datos.length / 4, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+}
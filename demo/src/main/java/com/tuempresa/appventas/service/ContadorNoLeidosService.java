@@ -0,0 +1,105 @@
+package com.tuempresa.appventas.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.tuempresa.appventas.event.NoLeidosModificadosEvent;
+
+// Contador de mensajes sin leer por usuario, en memoria y empujado por WebSocket a /topic/no-leidos/{usuarioId}.
+// Solo se guardan los usuarios con una sesión STOMP abierta: el valor se toma de la bandeja materializada al
+// suscribirse, luego se ajusta con cada envío y lectura confirmados, y se descarta al cerrarse la última sesión.
+// Con el relay STOMP (varios nodos) el envío o la lectura pueden procesarse en un nodo distinto al de la sesión,
+// así que no se guarda nada en memoria: cada cambio publica el total leído de la tabla conversaciones.
+@Service
+public class ContadorNoLeidosService {
+
+    private static final String DESTINO = "/topic/no-leidos/";
+
+    @Autowired
+    private ConversacionService conversacionService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.websocket.broker:simple}")
+    private String broker;
+
+    private static final class Contador {
+        final AtomicLong noLeidos;
+        final Set<String> sesiones = ConcurrentHashMap.newKeySet();
+
+        Contador(long noLeidos) {
+            this.noLeidos = new AtomicLong(noLeidos);
+        }
+    }
+
+    private final Map<Long, Contador> contadores = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> usuariosPorSesion = new ConcurrentHashMap<>();
+
+    // USUARIO CONECTADO: carga su contador (si no estaba) y devuelve el valor actual
+    public long conectar(Long usuarioId, String sesionId) {
+        if (esRelay()) {
+            return conversacionService.contarNoLeidos(usuarioId);
+        }
+        Contador contador = contadores.compute(usuarioId, (id, actual) -> {
+            Contador resultado = actual != null ? actual : new Contador(conversacionService.contarNoLeidos(id));
+            resultado.sesiones.add(sesionId);
+            return resultado;
+        });
+        usuariosPorSesion.computeIfAbsent(sesionId, sesion -> ConcurrentHashMap.newKeySet()).add(usuarioId);
+        return contador.noLeidos.get();
+    }
+
+    @EventListener
+    public void alDesconectar(SessionDisconnectEvent evento) {
+        Set<Long> usuarios = usuariosPorSesion.remove(evento.getSessionId());
+        if (usuarios == null) {
+            return;
+        }
+        for (Long usuarioId : usuarios) {
+            contadores.computeIfPresent(usuarioId, (id, contador) -> {
+                contador.sesiones.remove(evento.getSessionId());
+                return contador.sesiones.isEmpty() ? null : contador;
+            });
+        }
+    }
+
+    // Se aplica al confirmarse la transacción, para no contar envíos o lecturas que se deshicieron
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarNoLeidos(NoLeidosModificadosEvent evento) {
+        if (esRelay()) {
+            publicar(evento.getUsuarioId(), conversacionService.contarNoLeidos(evento.getUsuarioId()));
+            return;
+        }
+        Contador contador = contadores.get(evento.getUsuarioId());
+        if (contador == null) {
+            return; // sin sesión abierta: la tabla conversaciones ya tiene el valor
+        }
+        long valor;
+        if (evento.isRecalcular()) {
+            valor = conversacionService.contarNoLeidos(evento.getUsuarioId());
+            contador.noLeidos.set(valor);
+        } else {
+            valor = contador.noLeidos.updateAndGet(actual -> Math.max(0, actual + evento.getDiferencia()));
+        }
+        publicar(evento.getUsuarioId(), valor);
+    }
+
+    private void publicar(Long usuarioId, long valor) {
+        messagingTemplate.convertAndSend(DESTINO + usuarioId, Map.of("count", valor));
+    }
+
+    private boolean esRelay() {
+        return "relay".equalsIgnoreCase(broker);
+    }
+}
@@ -0,0 +1,149 @@
+package com.tuempresa.appventas.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.dto.ConversacionResumen;
+import com.tuempresa.appventas.dto.MensajeResumen;
+import com.tuempresa.appventas.event.NoLeidosModificadosEvent;
+import com.tuempresa.appventas.model.Conversacion;
+import com.tuempresa.appventas.model.Mensaje;
+import com.tuempresa.appventas.repository.ConversacionRepository;
+import com.tuempresa.appventas.repository.MensajeRepository;
+
+// Bandeja de entrada materializada (tabla conversaciones).
+// Cada envío y cada lectura actualiza aquí, dentro de su misma transacción, el último mensaje y el contador
+// de no leídos de cada participante; así abrir la bandeja o pintar el contador es una lectura por índice.
+@Service
+public class ConversacionService {
+
+    private static final int LARGO_VISTA_PREVIA = 200;
+
+    @Autowired
+    private ConversacionRepository conversacionRepository;
+
+    @Autowired
+    private MensajeRepository mensajeRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // REGISTRAR MENSAJE ENVIADO (en la transacción que lo guarda)
+    @Transactional
+    public void registrarMensaje(Mensaje mensaje) {
+        Long remitenteId = mensaje.getRemitente().getId();
+        Long destinatarioId = mensaje.getDestinatario().getId();
+
+        // Las dos filas se bloquean siempre en el mismo orden (menor id primero) para que dos envíos
+        // cruzados entre los mismos usuarios no se queden esperando el uno al otro
+        if (remitenteId <= destinatarioId) {
+            actualizar(mensaje, remitenteId, destinatarioId, 0);
+            actualizar(mensaje, destinatarioId, remitenteId, 1);
+        } else {
+            actualizar(mensaje, destinatarioId, remitenteId, 1);
+            actualizar(mensaje, remitenteId, destinatarioId, 0);
+        }
+        eventPublisher.publishEvent(NoLeidosModificadosEvent.sumar(destinatarioId, 1));
+    }
+
+    private void actualizar(Mensaje mensaje, Long usuarioId, Long otroUsuarioId, int noLeidos) {
+        String conversacionId = mensaje.getConversacionId();
+        // La fila se asegura con un upsert antes de bloquearla: un SELECT ... FOR UPDATE sobre una clave que
+        // todavía no existe toma un bloqueo de hueco, y dos primeros mensajes simultáneos que luego insertan
+        // terminan en deadlock. El upsert bloquea la fila (nueva o existente) y la lectura siguiente ya la encuentra
+        conversacionRepository.crearSiNoExiste(usuarioId, conversacionId, otroUsuarioId);
+        Conversacion conversacion = conversacionRepository.buscarParaActualizar(usuarioId, conversacionId)
+                .orElseThrow(() -> new RuntimeException("No se pudo crear la conversación " + conversacionId));
+
+        // Un envío más antiguo que termina después no reemplaza al último mensaje
+        if (conversacion.getUltimoMensajeId() == null || mensaje.getId() > conversacion.getUltimoMensajeId()) {
+            conversacion.setUltimoMensajeId(mensaje.getId());
+            conversacion.setUltimoRemitenteId(mensaje.getRemitente().getId());
+            conversacion.setVistaPrevia(vistaPrevia(mensaje.getContenido()));
+            conversacion.setFechaUltimoMensaje(mensaje.getFechaEnvio());
+            conversacion.setProductoId(mensaje.getProducto() != null ? mensaje.getProducto().getId() : null);
+            conversacion.setServicioId(mensaje.getServicio() != null ? mensaje.getServicio().getId() : null);
+        }
+        conversacion.setNoLeidos(conversacion.getNoLeidos() + noLeidos);
+        conversacionRepository.save(conversacion);
+    }
+
+    // MENSAJES LEÍDOS POR UN USUARIO (en bloque al abrir la conversación o uno suelto)
+    @Transactional
+    public void descontarLeidos(String conversacionId, Long usuarioId, int cantidad) {
+        if (cantidad > 0) {
+            conversacionRepository.descontarNoLeidos(usuarioId, conversacionId, cantidad);
+            eventPublisher.publishEvent(NoLeidosModificadosEvent.sumar(usuarioId, -cantidad));
+        }
+    }
+
+    // BANDEJA DE UN USUARIO
+    public List<ConversacionResumen> obtenerBandeja(Long usuarioId) {
+        return conversacionRepository.buscarBandeja(usuarioId);
+    }
+
+    // TOTAL DE NO LEÍDOS DE UN USUARIO
+    public Long contarNoLeidos(Long usuarioId) {
+        return conversacionRepository.contarNoLeidos(usuarioId);
+    }
+
+    @Transactional
+    public void eliminar(String conversacionId) {
+        List<Long> participantes = conversacionRepository.buscarParticipantes(conversacionId);
+        conversacionRepository.eliminarPorConversacion(conversacionId);
+        participantes.forEach(usuarioId -> eventPublisher.publishEvent(NoLeidosModificadosEvent.recalcular(usuarioId)));
+    }
+
+    // RECONSTRUIR DESDE LA TABLA MENSAJES
+    // Para cuando se borran mensajes sueltos (p. ej. al eliminar un producto): se recalculan las filas
+    // de la conversación a partir de su último mensaje y de los no leídos que queden.
+    @Transactional
+    public void reconstruir(String conversacionId) {
+        List<Long> participantes = conversacionRepository.buscarParticipantes(conversacionId);
+        participantes.forEach(usuarioId -> eventPublisher.publishEvent(NoLeidosModificadosEvent.recalcular(usuarioId)));
+        conversacionRepository.eliminarPorConversacion(conversacionId);
+
+        List<MensajeResumen> ultimos = mensajeRepository.buscarHistorialAnteriores(
+                conversacionId, Long.MAX_VALUE, PageRequest.of(0, 1));
+        if (ultimos.isEmpty()) {
+            return;
+        }
+        MensajeResumen ultimo = ultimos.get(0);
+
+        Map<Long, Integer> noLeidos = new HashMap<>();
+        for (Object[] fila : mensajeRepository.contarNoLeidosPorDestinatario(conversacionId)) {
+            noLeidos.put((Long) fila[0], ((Number) fila[1]).intValue());
+        }
+
+        conversacionRepository.save(filaReconstruida(ultimo, ultimo.remitenteId(), ultimo.destinatarioId(), noLeidos));
+        if (!ultimo.remitenteId().equals(ultimo.destinatarioId())) {
+            conversacionRepository.save(filaReconstruida(ultimo, ultimo.destinatarioId(), ultimo.remitenteId(), noLeidos));
+        }
+    }
+
+    private Conversacion filaReconstruida(MensajeResumen ultimo, Long usuarioId, Long otroUsuarioId, Map<Long, Integer> noLeidos) {
+        Conversacion conversacion = new Conversacion(ultimo.conversacionId(), usuarioId, otroUsuarioId);
+        conversacion.setUltimoMensajeId(ultimo.id());
+        conversacion.setUltimoRemitenteId(ultimo.remitenteId());
+        conversacion.setVistaPrevia(vistaPrevia(ultimo.contenido()));
+        conversacion.setFechaUltimoMensaje(ultimo.fechaEnvio());
+        conversacion.setProductoId(ultimo.productoId());
+        conversacion.setServicioId(ultimo.servicioId());
+        conversacion.setNoLeidos(noLeidos.getOrDefault(usuarioId, 0));
+        return conversacion;
+    }
+
+    private String vistaPrevia(String contenido) {
+        if (contenido == null) {
+            return "";
+        }
+        return contenido.length() > LARGO_VISTA_PREVIA ? contenido.substring(0, LARGO_VISTA_PREVIA) + "..." : contenido;
+    }
+}
@@ -0,0 +1,299 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tuempresa.appventas.model.CorreoSaliente;
+import com.tuempresa.appventas.repository.CorreoSalienteRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+
+// Despachador de la bandeja de salida de correos (correos_salientes).
+// Un pool fijo de hilos envía lotes de correos de un mismo dominio por una sola conexión SMTP, con un máximo
+// de envíos simultáneos por dominio para no disparar los límites de cada proveedor. Si un envío falla se
+// reprograma con espera exponencial (con jitter); al agotar los intentos, o si el error es permanente
+// (dirección inválida, mensaje mal formado), queda en FALLIDO hasta que alguien lo reactive.
+@Service
+public class CorreoDespachoService {
+
+    @Autowired
+    private CorreoSalienteRepository correoSalienteRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${app.correo.hilos:4}")
+    private int hilos;
+
+    @Value("${app.correo.max-por-dominio:2}")
+    private int maxPorDominio;
+
+    // Correos por lote (un lote = una conexión SMTP)
+    @Value("${app.correo.lote:20}")
+    private int lote;
+
+    @Value("${app.correo.max-intentos:8}")
+    private int maxIntentos;
+
+    @Value("${app.correo.backoff-inicial-segundos:30}")
+    private long backoffInicialSegundos;
+
+    @Value("${app.correo.backoff-maximo-segundos:3600}")
+    private long backoffMaximoSegundos;
+
+    @Value("${app.correo.retencion-dias:7}")
+    private int retencionDias;
+
+    // Un lote ENVIANDO más viejo que esto se da por abandonado y vuelve a la cola
+    @Value("${app.correo.envio-abandonado-minutos:10}")
+    private long envioAbandonadoMinutos;
+
+    private ThreadPoolExecutor ejecutor;
+
+    private final Map<String, AtomicInteger> activosPorDominio = new ConcurrentHashMap<>();
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong reprogramados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hilos),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "correo-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdown();
+    }
+
+    // Correos que quedaron a medio enviar por un reinicio o una caída vuelven a la cola.
+    // Con varios nodos solo se recuperan los tomados hace más del plazo, nunca los que otro nodo está enviando
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.correo.recuperacion-intervalo-ms:60000}",
+            initialDelayString = "${app.correo.recuperacion-intervalo-ms:60000}")
+    public void recuperarPendientes() {
+        Date limite = new Date(System.currentTimeMillis() - envioAbandonadoMinutos * 60_000L);
+        int liberados = correoSalienteRepository.liberarEnviando(limite);
+        if (liberados > 0) {
+            System.out.println("📧 " + liberados + " correos vuelven a la bandeja de salida");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.correo.intervalo-ms:2000}")
+    public void despachar() {
+        try {
+            int libres = hilos + ejecutor.getQueue().remainingCapacity() - ejecutor.getActiveCount();
+            if (libres <= 0) {
+                return;
+            }
+            List<CorreoSaliente> listos = correoSalienteRepository.buscarListos(new Date(), PageRequest.of(0, libres * lote));
+
+            Map<String, List<CorreoSaliente>> porDominio = new LinkedHashMap<>();
+            for (CorreoSaliente correo : listos) {
+                porDominio.computeIfAbsent(correo.getDominio(), dominio -> new ArrayList<>()).add(correo);
+            }
+
+            for (Map.Entry<String, List<CorreoSaliente>> entrada : porDominio.entrySet()) {
+                AtomicInteger activos = activosPorDominio.computeIfAbsent(entrada.getKey(), dominio -> new AtomicInteger());
+                List<CorreoSaliente> correos = entrada.getValue();
+                for (int desde = 0; desde < correos.size() && libres > 0 && activos.get() < maxPorDominio; desde += lote) {
+                    List<CorreoSaliente> loteCorreos = correos.subList(desde, Math.min(desde + lote, correos.size()));
+                    if (programar(loteCorreos, activos)) {
+                        libres--;
+                    }
+                }
+                if (libres <= 0) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error despachando correos: " + e.getMessage());
+        }
+    }
+
+    private boolean programar(List<CorreoSaliente> lista, AtomicInteger activos) {
+        List<Long> ids = lista.stream().map(CorreoSaliente::getId).toList();
+        Date tomado = new Date();
+        int cantidad = correoSalienteRepository.tomar(ids, tomado);
+        if (cantidad == 0) {
+            return false;
+        }
+        List<CorreoSaliente> correos = lista;
+        if (cantidad < ids.size()) {
+            // Otro nodo se llevó parte del lote: se envían solo los que tomó esta llamada
+            Set<Long> propios = new HashSet<>(correoSalienteRepository.buscarTomados(ids, tomado));
+            correos = lista.stream().filter(correo -> propios.contains(correo.getId())).toList();
+            ids = correos.stream().map(CorreoSaliente::getId).toList();
+            if (correos.isEmpty()) {
+                return false;
+            }
+        }
+        List<CorreoSaliente> tomados = correos;
+        activos.incrementAndGet();
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    enviar(tomados);
+                } finally {
+                    activos.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            activos.decrementAndGet();
+            correoSalienteRepository.devolver(ids);
+            return false;
+        }
+    }
+
+    private void enviar(List<CorreoSaliente> correos) {
+        Map<SimpleMailMessage, CorreoSaliente> mensajes = new IdentityHashMap<>();
+        for (CorreoSaliente correo : correos) {
+            mensajes.put(emailService.construir(correo), correo);
+        }
+        Map<SimpleMailMessage, Exception> fallidos;
+        try {
+            fallidos = emailService.enviarLote(new ArrayList<>(mensajes.keySet()));
+        } catch (Exception e) {
+            fallidos = new IdentityHashMap<>();
+            for (SimpleMailMessage mensaje : mensajes.keySet()) {
+                fallidos.put(mensaje, e);
+            }
+        }
+
+        List<Long> ok = new ArrayList<>();
+        for (Map.Entry<SimpleMailMessage, CorreoSaliente> entrada : mensajes.entrySet()) {
+            CorreoSaliente correo = entrada.getValue();
+            Exception error = fallidos.get(entrada.getKey());
+            if (error == null) {
+                ok.add(correo.getId());
+            } else {
+                registrarFallo(correo, error);
+            }
+        }
+        if (!ok.isEmpty()) {
+            correoSalienteRepository.marcarEnviados(ok, new Date());
+            enviados.addAndGet(ok.size());
+            System.out.println("📧 " + ok.size() + " correos enviados a " + correos.get(0).getDominio());
+        }
+    }
+
+    private void registrarFallo(CorreoSaliente correo, Exception error) {
+        String detalle = resumir(error);
+        int intento = correo.getIntentos() + 1;
+        if (esPermanente(error) || intento >= maxIntentos) {
+            correoSalienteRepository.marcarFallido(correo.getId(), detalle);
+            descartados.incrementAndGet();
+            System.err.println("❌ Correo " + correo.getId() + " (" + correo.getTipo() + ") descartado tras "
+                    + intento + " intentos: " + detalle);
+        } else {
+            Date proximo = new Date(System.currentTimeMillis() + espera(intento));
+            correoSalienteRepository.reprogramar(correo.getId(), proximo, detalle);
+            reprogramados.incrementAndGet();
+            System.err.println("⚠️ Correo " + correo.getId() + " se reintentará (intento " + intento + "): " + detalle);
+        }
+    }
+
+    // Espera exponencial con jitter: entre la mitad y el total de inicial * 2^(intento-1), con tope
+    private long espera(int intento) {
+        long base = Math.min(backoffMaximoSegundos, backoffInicialSegundos << Math.min(intento - 1, 20)) * 1000;
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    // Errores que no se arreglan reintentando
+    private boolean esPermanente(Exception error) {
+        if (error instanceof MailParseException || error instanceof MailPreparationException) {
+            return true;
+        }
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SendFailedException fallo
+                    && fallo.getInvalidAddresses() != null && fallo.getInvalidAddresses().length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String resumir(Exception error) {
+        String mensaje = error.getClass().getSimpleName() + ": " + error.getMessage();
+        return mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje;
+    }
+
+    // MÉTRICAS (estado de la bandeja de salida y últimos descartados)
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> porEstado = new LinkedHashMap<>();
+        for (Object[] fila : correoSalienteRepository.contarPorEstado()) {
+            porEstado.put((String) fila[0], fila[1]);
+        }
+        Map<String, Integer> activos = new LinkedHashMap<>();
+        activosPorDominio.forEach((dominio, cantidad) -> {
+            if (cantidad.get() > 0) {
+                activos.put(dominio, cantidad.get());
+            }
+        });
+        List<Map<String, Object>> fallidos = new ArrayList<>();
+        for (CorreoSaliente correo : correoSalienteRepository.findTop20ByEstadoOrderByIdDesc(CorreoSaliente.FALLIDO)) {
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("id", correo.getId());
+            resumen.put("tipo", correo.getTipo());
+            resumen.put("dominio", correo.getDominio());
+            resumen.put("intentos", correo.getIntentos());
+            resumen.put("ultimoError", correo.getUltimoError());
+            resumen.put("fechaCreacion", correo.getFechaCreacion());
+            fallidos.add(resumen);
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("porEstado", porEstado);
+        resultado.put("enviados", enviados.get());
+        resultado.put("reprogramados", reprogramados.get());
+        resultado.put("descartados", descartados.get());
+        resultado.put("enviosActivosPorDominio", activos);
+        resultado.put("ultimosFallidos", fallidos);
+        return resultado;
+    }
+
+    // REACTIVAR CORREOS DESCARTADOS (p. ej. tras corregir la configuración SMTP)
+    public int reintentarFallidos() {
+        return correoSalienteRepository.reactivarFallidos(new Date());
+    }
+
+    @Scheduled(cron = "${app.correo.limpieza-cron:0 15 4 * * *}")
+    public void limpiar() {
+        Date antesDe = new Date(System.currentTimeMillis() - retencionDias * 86_400_000L);
+        correoSalienteRepository.eliminarEnviados(antesDe);
+    }
+}
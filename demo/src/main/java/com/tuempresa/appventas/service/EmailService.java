@@ -1,17 +1,36 @@
 package com.tuempresa.appventas.service;
 
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import com.tuempresa.appventas.model.CorreoSaliente;
+import com.tuempresa.appventas.model.NotificacionMensaje;
+import com.tuempresa.appventas.repository.CorreoSalienteRepository;
+
+// Plantillas de los correos del sistema. Los métodos enviar* no hablan con el servidor SMTP: dejan el correo
+// en la bandeja de salida (correos_salientes) y vuelven de inmediato; el envío lo hace CorreoDespachoService.
+// Los errores al encolar no se atrapan: el guardado es parte de la transacción de quien llama y debe fallar con ella.
 @Service
 public class EmailService {
 
+    private static final int MAXIMO_MENSAJES_RESUMEN = 10;
+
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private CorreoSalienteRepository correoSalienteRepository;
+
     @Value("${spring.mail.username}")
     private String fromEmail;
 
@@ -19,145 +38,205 @@ public class EmailService {
     private String appUrl;
 
     public void enviarEmailVerificacion(String emailDestino, String nombreUsuario, String token) {
-        try {
-            SimpleMailMessage mensaje = new SimpleMailMessage();
-            mensaje.setFrom(fromEmail);
-            mensaje.setTo(emailDestino);
-            mensaje.setSubject("✅ Verifica tu cuenta - Sistema de Ventas");
-
-            String cuerpoMensaje = String.format(
-                    "Hola %s,\n\n" +
-                            "¡Gracias por registrarte!\n\n" +
-                            "Para verificar tu cuenta, haz clic aquí:\n\n" +
-                            "%s/verificar?token=%s\n\n" +
-                            "⚠️ Este enlace expira en 15 minutos.\n\n" +
-                            "Saludos,\n" +
-                            "Equipo de Sistema de Ventas",
-                    nombreUsuario,
-                    appUrl,
-                    token
-            );
-
-            mensaje.setText(cuerpoMensaje);
-            mailSender.send(mensaje);
-
-            System.out.println("Email enviado a: " + emailDestino);
-
-        } catch (Exception e) {
-            System.err.println("Error al enviar email: " + e.getMessage());
-            throw new RuntimeException("No se pudo enviar el email de verificación");
-        }
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject("✅ Verifica tu cuenta - Sistema de Ventas");
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "¡Gracias por registrarte!\n\n" +
+                        "Para verificar tu cuenta, haz clic aquí:\n\n" +
+                        "%s/verificar?token=%s\n\n" +
+                        "⚠️ Este enlace expira en 15 minutos.\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreUsuario,
+                appUrl,
+                token
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        encolar("VERIFICACION", mensaje);
+
+        System.out.println("Email de verificación encolado para: " + emailDestino);
     }
 
     public void enviarEmailBienvenida(String emailDestino, String nombreUsuario) {
-        try {
-            SimpleMailMessage mensaje = new SimpleMailMessage();
-            mensaje.setFrom(fromEmail);
-            mensaje.setTo(emailDestino);
-            mensaje.setSubject("🎉 ¡Cuenta verificada!");
-
-            String cuerpoMensaje = String.format(
-                    "Hola %s,\n\n" +
-                            "¡Tu cuenta ha sido verificada! \n\n" +
-                            "Ya puedes iniciar sesión.\n\n" +
-                            "Saludos,\n" +
-                            "Equipo de Sistema de Ventas",
-                    nombreUsuario
-            );
-
-            mensaje.setText(cuerpoMensaje);
-            mailSender.send(mensaje);
-
-        } catch (Exception e) {
-            System.err.println("⚠️ Email de bienvenida no enviado");
-        }
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject("🎉 ¡Cuenta verificada!");
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "¡Tu cuenta ha sido verificada! \n\n" +
+                        "Ya puedes iniciar sesión.\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreUsuario
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        encolar("BIENVENIDA", mensaje);
     }
 
     // NUEVO: Enviar código de recuperación de contraseña
     public void enviarCodigoRecuperacion(String emailDestino, String nombreUsuario, String codigo) {
-        try {
-            SimpleMailMessage mensaje = new SimpleMailMessage();
-            mensaje.setFrom(fromEmail);
-            mensaje.setTo(emailDestino);
-            mensaje.setSubject("🔒 Código de recuperación de contraseña");
-
-            String cuerpoMensaje = String.format(
-                    "Hola %s,\n\n" +
-                            "Recibimos una solicitud para restablecer tu contraseña.\n\n" +
-                            "Tu código de verificación es:\n\n" +
-                            "🔑 %s\n\n" +
-                            "Este código expirará en 15 minutos.\n\n" +
-                            "Si no solicitaste este cambio, ignora este mensaje.\n\n" +
-                            "Saludos,\n" +
-                            "Equipo de Sistema de Ventas",
-                    nombreUsuario,
-                    codigo
-            );
-
-            mensaje.setText(cuerpoMensaje);
-            mailSender.send(mensaje);
-
-            System.out.println(" Código de recuperación enviado a: " + emailDestino);
-
-        } catch (Exception e) {
-            System.err.println("❌ Error al enviar código: " + e.getMessage());
-            throw new RuntimeException("No se pudo enviar el código de recuperación");
-        }
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject("🔒 Código de recuperación de contraseña");
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "Recibimos una solicitud para restablecer tu contraseña.\n\n" +
+                        "Tu código de verificación es:\n\n" +
+                        "🔑 %s\n\n" +
+                        "Este código expirará en 15 minutos.\n\n" +
+                        "Si no solicitaste este cambio, ignora este mensaje.\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreUsuario,
+                codigo
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        encolar("RECUPERACION", mensaje);
+
+        System.out.println(" Código de recuperación encolado para: " + emailDestino);
     }
 
     //NUEVO: Confirmar cambio de contraseña
     public void enviarConfirmacionCambioPassword(String emailDestino, String nombreUsuario) {
-        try {
-            SimpleMailMessage mensaje = new SimpleMailMessage();
-            mensaje.setFrom(fromEmail);
-            mensaje.setTo(emailDestino);
-            mensaje.setSubject("✅ Contraseña actualizada");
-
-            String cuerpoMensaje = String.format(
-                    "Hola %s,\n\n" +
-                            "Tu contraseña ha sido actualizada exitosamente.\n\n" +
-                            "Si no realizaste este cambio, contacta inmediatamente con soporte.\n\n" +
-                            "Saludos,\n" +
-                            "Equipo de Sistema de Ventas",
-                    nombreUsuario
-            );
-
-            mensaje.setText(cuerpoMensaje);
-            mailSender.send(mensaje);
-
-        } catch (Exception e) {
-            System.err.println("Email de confirmación no enviado");
-        }
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject("✅ Contraseña actualizada");
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "Tu contraseña ha sido actualizada exitosamente.\n\n" +
+                        "Si no realizaste este cambio, contacta inmediatamente con soporte.\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreUsuario
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        encolar("CAMBIO_PASSWORD", mensaje);
     }
 
     // NUEVO: Notificación de nuevo mensaje
     public void enviarNotificacionMensaje(String emailDestino, String nombreDestinatario, String nombreRemitente, String contenido) {
-        try {
-            SimpleMailMessage mensaje = new SimpleMailMessage();
-            mensaje.setFrom(fromEmail);
-            mensaje.setTo(emailDestino);
-            mensaje.setSubject("💬 Nuevo mensaje de " + nombreRemitente);
-
-            String cuerpoMensaje = String.format(
-                    "Hola %s,\n\n" +
-                            "Tienes un nuevo mensaje de %s:\n\n" +
-                            "\"%s\"\n\n" +
-                            "Para responder, ingresa a la plataforma:\n" +
-                            "%s/mensajes\n\n" +
-                            "Saludos,\n" +
-                            "Equipo de Sistema de Ventas",
-                    nombreDestinatario,
-                    nombreRemitente,
-                    contenido,
-                    appUrl
-            );
-
-            mensaje.setText(cuerpoMensaje);
-            mailSender.send(mensaje);
-            System.out.println("📧 Notificación de mensaje enviada a: " + emailDestino);
+        encolar("AVISO_MENSAJES", construirNotificacionMensaje(emailDestino, nombreDestinatario, nombreRemitente, contenido));
+    }
+
+    // Aviso de mensajes de chat pendientes (ver NotificacionMensajeService)
+    public void enviarAvisoMensajes(String emailDestino, String nombreDestinatario, List<NotificacionMensaje> avisos) {
+        encolar("AVISO_MENSAJES", construirAvisoMensajes(emailDestino, nombreDestinatario, avisos));
+    }
+
+    // Uno solo con el formato de siempre, varios en un resumen
+    private SimpleMailMessage construirAvisoMensajes(String emailDestino, String nombreDestinatario, List<NotificacionMensaje> avisos) {
+        if (avisos.size() == 1) {
+            NotificacionMensaje aviso = avisos.get(0);
+            return construirNotificacionMensaje(emailDestino, nombreDestinatario, aviso.getNombreRemitente(), aviso.getContenido());
+        }
+
+        Set<String> remitentes = new LinkedHashSet<>();
+        StringBuilder lista = new StringBuilder();
+        for (int i = 0; i < avisos.size(); i++) {
+            NotificacionMensaje aviso = avisos.get(i);
+            remitentes.add(aviso.getNombreRemitente());
+            if (i < MAXIMO_MENSAJES_RESUMEN) {
+                lista.append("• ").append(aviso.getNombreRemitente()).append(": \"").append(aviso.getContenido()).append("\"\n");
+            }
+        }
+        if (avisos.size() > MAXIMO_MENSAJES_RESUMEN) {
+            lista.append("... y ").append(avisos.size() - MAXIMO_MENSAJES_RESUMEN).append(" mensajes más\n");
+        }
 
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject(remitentes.size() == 1
+                ? "💬 " + avisos.size() + " mensajes nuevos de " + remitentes.iterator().next()
+                : "💬 " + avisos.size() + " mensajes nuevos de " + remitentes.size() + " personas");
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "Tienes %d mensajes nuevos:\n\n" +
+                        "%s\n" +
+                        "Para responder, ingresa a la plataforma:\n" +
+                        "%s/mensajes\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreDestinatario,
+                avisos.size(),
+                lista,
+                appUrl
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        return mensaje;
+    }
+
+    // BANDEJA DE SALIDA: el correo se guarda (en la transacción de quien llama) y CorreoDespachoService lo envía
+    private void encolar(String tipo, SimpleMailMessage mensaje) {
+        correoSalienteRepository.save(new CorreoSaliente(tipo, mensaje.getTo()[0], mensaje.getSubject(), mensaje.getText()));
+    }
+
+    // Correo listo para enviar a partir de su registro en la bandeja de salida
+    public SimpleMailMessage construir(CorreoSaliente correo) {
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(correo.getDestinatario());
+        mensaje.setSubject(correo.getAsunto());
+        mensaje.setText(correo.getCuerpo());
+        return mensaje;
+    }
+
+    // ENVÍO REAL: varios correos por una sola conexión SMTP. Devuelve los que fallaron (con su error)
+    public Map<SimpleMailMessage, Exception> enviarLote(List<SimpleMailMessage> mensajes) {
+        Map<SimpleMailMessage, Exception> fallidos = new IdentityHashMap<>();
+        if (mensajes.isEmpty()) {
+            return fallidos;
+        }
+        try {
+            mailSender.send(mensajes.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            e.getFailedMessages().forEach((fallido, error) -> fallidos.put((SimpleMailMessage) fallido, error));
+            if (fallidos.isEmpty()) {
+                mensajes.forEach(mensaje -> fallidos.put(mensaje, e)); // error de conexión o autenticación: no salió ninguno
+            }
         } catch (Exception e) {
-            System.err.println("⚠️ No se pudo enviar la notificación de mensaje: " + e.getMessage());
+            mensajes.forEach(mensaje -> fallidos.put(mensaje, e));
         }
+        return fallidos;
+    }
+
+    private SimpleMailMessage construirNotificacionMensaje(String emailDestino, String nombreDestinatario, String nombreRemitente, String contenido) {
+        SimpleMailMessage mensaje = new SimpleMailMessage();
+        mensaje.setFrom(fromEmail);
+        mensaje.setTo(emailDestino);
+        mensaje.setSubject("💬 Nuevo mensaje de " + nombreRemitente);
+
+        String cuerpoMensaje = String.format(
+                "Hola %s,\n\n" +
+                        "Tienes un nuevo mensaje de %s:\n\n" +
+                        "\"%s\"\n\n" +
+                        "Para responder, ingresa a la plataforma:\n" +
+                        "%s/mensajes\n\n" +
+                        "Saludos,\n" +
+                        "Equipo de Sistema de Ventas",
+                nombreDestinatario,
+                nombreRemitente,
+                contenido,
+                appUrl
+        );
+
+        mensaje.setText(cuerpoMensaje);
+        return mensaje;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.tuempresa.appventas.dto.ResultadoFacetas;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.model.Servicio;
+import com.tuempresa.appventas.repository.ServicioRepository;
+import com.tuempresa.appventas.util.TextoUtil;
+
+// Conteos por categoría, ciudad y modalidad del catálogo público de servicios.
+// Se mantienen en memoria: se reconstruyen al arrancar y se actualizan con cada PublicacionModificadaEvent.
+@Service
+public class FacetasServicioService {
+
+    private static final String[] DIMENSIONES = {"categoria", "ciudad", "modalidad"};
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // id de servicio -> valores normalizados de cada dimensión (mismo orden que DIMENSIONES)
+    private Map<Long, String[]> servicios = new HashMap<>();
+    // dimensión -> valor normalizado -> IDs (de mayor a menor, los más recientes primero)
+    private Map<String, Map<String, NavigableSet<Long>>> porValor = nuevasDimensiones();
+    // valor normalizado -> texto original para mostrar
+    private Map<String, String> etiquetas = new HashMap<>();
+
+    // RECONSTRUIR AL ARRANCAR
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        try {
+            List<Servicio> activos = servicioRepository.findByActivoTrueAndEstado("ACTIVO");
+            lock.writeLock().lock();
+            try {
+                servicios = new HashMap<>();
+                porValor = nuevasDimensiones();
+                etiquetas = new HashMap<>();
+                activos.forEach(this::agregar);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("📊 Facetas de servicios reconstruidas: " + activos.size() + " servicios");
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudieron reconstruir las facetas de servicios: " + e.getMessage());
+        }
+    }
+
+    // ACTUALIZACIÓN INCREMENTAL
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        if (evento.getTipo() != PublicacionModificadaEvent.Tipo.SERVICIO) {
+            return;
+        }
+        Servicio servicio = evento.getServicio();
+        lock.writeLock().lock();
+        try {
+            quitar(evento.getId());
+            if (servicio != null && Boolean.TRUE.equals(servicio.getActivo()) && "ACTIVO".equals(servicio.getEstado())) {
+                agregar(servicio);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // CONSULTA COMBINADA: cada faceta se cuenta aplicando los filtros de las demás dimensiones
+    public ResultadoFacetas consultar(String categoria, String ciudad, String modalidad, int pagina, int limite) {
+        String[] filtros = {normalizar(categoria), normalizar(ciudad), normalizar(modalidad)};
+
+        lock.readLock().lock();
+        try {
+            Map<String, Map<String, Long>> facetas = new LinkedHashMap<>();
+            for (int d = 0; d < DIMENSIONES.length; d++) {
+                facetas.put(DIMENSIONES[d], contarDimension(d, filtros));
+            }
+
+            List<Long> coincidencias = filtrar(filtros, -1);
+            // En long: una página muy alta desborda int y daría un índice negativo; más allá del final, página vacía
+            int desde = (int) Math.min(Math.max(pagina, 0) * (long) limite, coincidencias.size());
+            int hasta = (int) Math.min(desde + (long) limite, coincidencias.size());
+            return new ResultadoFacetas(coincidencias.size(), pagina,
+                    new ArrayList<>(coincidencias.subList(desde, hasta)), facetas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Long> contarDimension(int dimension, String[] filtros) {
+        Map<String, Long> conteos = new TreeMap<>();
+        boolean sinOtrosFiltros = true;
+        for (int d = 0; d < filtros.length; d++) {
+            if (d != dimension && filtros[d] != null) {
+                sinOtrosFiltros = false;
+            }
+        }
+
+        if (sinOtrosFiltros) {
+            // Caso habitual: el conteo es el tamaño de cada conjunto
+            porValor.get(DIMENSIONES[dimension]).forEach((valor, ids) ->
+                    conteos.put(etiquetas.getOrDefault(valor, valor), (long) ids.size()));
+            return conteos;
+        }
+
+        for (Long id : filtrar(filtros, dimension)) {
+            String valor = servicios.get(id)[dimension];
+            if (valor != null) {
+                conteos.merge(etiquetas.getOrDefault(valor, valor), 1L, Long::sum);
+            }
+        }
+        return conteos;
+    }
+
+    // IDs que cumplen todos los filtros salvo el de la dimensión ignorada (-1 para aplicarlos todos)
+    private List<Long> filtrar(String[] filtros, int dimensionIgnorada) {
+        NavigableSet<Long> menor = null;
+        for (int d = 0; d < filtros.length; d++) {
+            if (d == dimensionIgnorada || filtros[d] == null) continue;
+            NavigableSet<Long> ids = porValor.get(DIMENSIONES[d]).getOrDefault(filtros[d], Collections.emptyNavigableSet());
+            if (menor == null || ids.size() < menor.size()) {
+                menor = ids;
+            }
+        }
+
+        if (menor == null) {
+            List<Long> todos = new ArrayList<>(servicios.keySet());
+            todos.sort(Collections.reverseOrder());
+            return todos;
+        }
+
+        // Se recorre el conjunto más pequeño y se comprueba el resto de filtros por id
+        List<Long> resultado = new ArrayList<>();
+        for (Long id : menor) {
+            String[] valores = servicios.get(id);
+            boolean cumple = true;
+            for (int d = 0; d < filtros.length && cumple; d++) {
+                if (d != dimensionIgnorada && filtros[d] != null && !filtros[d].equals(valores[d])) {
+                    cumple = false;
+                }
+            }
+            if (cumple) {
+                resultado.add(id);
+            }
+        }
+        return resultado;
+    }
+
+    private void agregar(Servicio servicio) {
+        String[] originales = {servicio.getCategoria(), servicio.getCiudad(), servicio.getModalidad()};
+        String[] valores = new String[DIMENSIONES.length];
+        for (int d = 0; d < DIMENSIONES.length; d++) {
+            valores[d] = normalizar(originales[d]);
+            if (valores[d] != null) {
+                etiquetas.putIfAbsent(valores[d], originales[d].trim());
+                porValor.get(DIMENSIONES[d])
+                        .computeIfAbsent(valores[d], v -> new TreeSet<>(Collections.reverseOrder()))
+                        .add(servicio.getId());
+            }
+        }
+        servicios.put(servicio.getId(), valores);
+    }
+
+    private void quitar(Long id) {
+        String[] valores = servicios.remove(id);
+        if (valores == null) {
+            return;
+        }
+        for (int d = 0; d < DIMENSIONES.length; d++) {
+            if (valores[d] == null) continue;
+            Map<String, NavigableSet<Long>> dimension = porValor.get(DIMENSIONES[d]);
+            NavigableSet<Long> ids = dimension.get(valores[d]);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    dimension.remove(valores[d]);
+                }
+            }
+        }
+    }
+
+    private String normalizar(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        return TextoUtil.normalizar(valor.trim());
+    }
+
+    private static Map<String, Map<String, NavigableSet<Long>>> nuevasDimensiones() {
+        Map<String, Map<String, NavigableSet<Long>>> mapa = new HashMap<>();
+        for (String dimension : DIMENSIONES) {
+            mapa.put(dimension, new HashMap<>());
+        }
+        return mapa;
+    }
+}
@@ -0,0 +1,248 @@
+package com.tuempresa.appventas.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tuempresa.appventas.model.SolicitudIdempotente;
+import com.tuempresa.appventas.repository.SolicitudIdempotenteRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// Deduplicación de solicitudes con cabecera Idempotency-Key (doble clic, reintentos del cliente).
+// La primera solicitud con una clave ejecuta la operación y su respuesta JSON se guarda; las repeticiones
+// reciben esa misma respuesta sin volver a ejecutarla:
+//  - en este nodo, desde una caché acotada (Caffeine, con vencimiento), o esperando a la que está en curso;
+//  - entre nodos, desde solicitudes_idempotentes, cuya clave única reparte la operación a un solo nodo.
+// Solo se guardan las respuestas exitosas: si la operación falla se deshace y las repeticiones que la estaban
+// esperando reciben el mismo error; la clave se libera y un reintento posterior vuelve a ejecutarla.
+@Service
+public class IdempotenciaService {
+
+    private static final int LARGO_MAXIMO_CLAVE = 100;
+
+    @Autowired
+    private SolicitudIdempotenteRepository solicitudRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper; // el mismo que usan los controladores, para que el JSON sea idéntico
+
+    @Value("${app.idempotencia.cache.tamanio-maximo:10000}")
+    private long tamanioMaximo;
+
+    @Value("${app.idempotencia.cache.ttl-minutos:60}")
+    private long ttlMinutos;
+
+    // Tiempo que una repetición en este nodo espera a que termine la original
+    @Value("${app.idempotencia.espera-ms:10000}")
+    private long esperaMs;
+
+    // Una solicitud EN_CURSO más vieja que esto se considera abandonada (el nodo se cayó) y se puede retomar
+    @Value("${app.idempotencia.en-curso-segundos:120}")
+    private long enCursoSegundos;
+
+    @Value("${app.idempotencia.retencion-horas:24}")
+    private long retencionHoras;
+
+    private Cache<String, Guardada> respuestas;
+    private final Map<String, CompletableFuture<Guardada>> enCurso = new ConcurrentHashMap<>();
+    private TransactionTemplate transaccion;
+
+    private record Guardada(String huella, String json) {
+    }
+
+    // Resultado de reclamar una clave: la respuesta ya guardada, o la fechaCreacion con la que este nodo
+    // tomó la solicitud (sirve de testigo para completarla o liberarla)
+    private record Reclamo(Guardada guardada, Date tomada) {
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        respuestas = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .build();
+        transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    // EJECUTAR UNA SOLA VEZ POR CLAVE. Sin clave la operación se ejecuta siempre, como antes.
+    // La operación corre dentro de una transacción junto con el guardado de su respuesta
+    public ResponseEntity<?> ejecutar(String operacion, Long recurso, String claveCliente, String huella,
+                                      Supplier<?> accion) {
+        if (claveCliente == null || claveCliente.isBlank()) {
+            return ResponseEntity.ok(accion.get());
+        }
+        if (claveCliente.length() > LARGO_MAXIMO_CLAVE) {
+            throw new ConflictoException(400, "La clave de idempotencia no puede superar " + LARGO_MAXIMO_CLAVE + " caracteres");
+        }
+        String clave = operacion + ":" + recurso + ":" + claveCliente;
+        String huellaCorta = huella.length() > 255 ? huella.substring(0, 255) : huella;
+
+        Guardada guardada = respuestas.getIfPresent(clave);
+        if (guardada != null) {
+            return repetir(guardada, huellaCorta);
+        }
+
+        CompletableFuture<Guardada> propia = new CompletableFuture<>();
+        CompletableFuture<Guardada> original = enCurso.putIfAbsent(clave, propia);
+        if (original != null) {
+            // Si la original falla, esta recibe el mismo error en vez de ejecutar la operación otra vez:
+            // p. ej. un carrito desactualizado (409) ya quedó con los precios nuevos y crear el pedido ahora
+            // cobraría precios que el comprador no vio
+            return repetir(esperar(original), huellaCorta);
+        }
+
+        Date tomada = null;
+        try {
+            Reclamo reclamo = reclamar(clave, huellaCorta);
+            if (reclamo.guardada() != null) {
+                guardada = reclamo.guardada();
+                respuestas.put(clave, guardada);
+                propia.complete(guardada);
+                return repetir(guardada, huellaCorta);
+            }
+            tomada = reclamo.tomada();
+            Date testigo = tomada;
+
+            String json = transaccion.execute(estado -> {
+                String resultado = serializar(accion.get());
+                if (solicitudRepository.completar(clave, testigo, resultado) == 0) {
+                    // Esta ejecución tardó más que en-curso-segundos y otro nodo la retomó: se deshace la
+                    // operación para que no quede aplicada dos veces
+                    System.err.println("⚠️ Solicitud retomada por otro nodo, se deshace esta ejecución: " + clave);
+                    throw new ConflictoException(409, "La solicitud ya se está procesando, intenta de nuevo en unos segundos");
+                }
+                return resultado;
+            });
+            guardada = new Guardada(huellaCorta, json);
+            respuestas.put(clave, guardada);
+            propia.complete(guardada);
+            return responder(json, false);
+        } catch (RuntimeException e) {
+            if (tomada != null) {
+                solicitudRepository.liberar(clave, tomada);
+            }
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    // Inserta la solicitud EN_CURSO. Si otro nodo (o una ejecución anterior) ya tiene la clave, devuelve su
+    // respuesta guardada, retoma la solicitud si quedó abandonada, o avisa que sigue en curso
+    private Reclamo reclamar(String clave, String huella) {
+        // Se busca antes de insertar para que una repetición entre nodos no termine en un error de clave duplicada
+        SolicitudIdempotente existente = solicitudRepository.findByClave(clave).orElse(null);
+        if (existente == null) {
+            try {
+                SolicitudIdempotente nueva = solicitudRepository.saveAndFlush(new SolicitudIdempotente(clave, huella));
+                return new Reclamo(null, nueva.getFechaCreacion());
+            } catch (DataIntegrityViolationException e) {
+                // Otro nodo la insertó al mismo tiempo
+                existente = solicitudRepository.findByClave(clave).orElse(null);
+                if (existente == null) {
+                    // ...y ya la liberó (su operación falló): reintentar
+                    return reclamar(clave, huella);
+                }
+            }
+        }
+        if (!existente.getHuella().equals(huella)) {
+            throw new ConflictoException(422, "La clave de idempotencia ya se usó con otros datos");
+        }
+        if (SolicitudIdempotente.COMPLETADA.equals(existente.getEstado())) {
+            return new Reclamo(new Guardada(existente.getHuella(), existente.getRespuesta()), null);
+        }
+        Date ahora = new Date();
+        Date limite = new Date(ahora.getTime() - enCursoSegundos * 1000);
+        if (solicitudRepository.retomar(clave, ahora, limite) == 1) {
+            System.out.println("🔁 Solicitud abandonada retomada: " + clave);
+            return new Reclamo(null, ahora);
+        }
+        throw new ConflictoException(409, "La solicitud ya se está procesando, intenta de nuevo en unos segundos");
+    }
+
+    private Guardada esperar(CompletableFuture<Guardada> original) {
+        try {
+            return original.get(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ConflictoException(409, "La solicitud ya se está procesando, intenta de nuevo en unos segundos");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictoException(409, "La solicitud ya se está procesando, intenta de nuevo en unos segundos");
+        } catch (ExecutionException e) {
+            // Mismo error que la original (las operaciones solo lanzan RuntimeException)
+            if (e.getCause() instanceof RuntimeException error) {
+                throw error;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private ResponseEntity<?> repetir(Guardada guardada, String huella) {
+        if (!guardada.huella().equals(huella)) {
+            throw new ConflictoException(422, "La clave de idempotencia ya se usó con otros datos");
+        }
+        return responder(guardada.json(), true);
+    }
+
+    private ResponseEntity<?> responder(String json, boolean repetida) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotent-Replayed", Boolean.toString(repetida))
+                .body(json);
+    }
+
+    private String serializar(Object resultado) {
+        try {
+            return objectMapper.writeValueAsString(resultado);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("No se pudo guardar la respuesta: " + e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${app.idempotencia.limpieza-cron:0 30 4 * * *}")
+    public void limpiar() {
+        Date antesDe = new Date(System.currentTimeMillis() - retencionHoras * 3_600_000L);
+        int eliminadas = solicitudRepository.eliminarAntiguas(antesDe);
+        if (eliminadas > 0) {
+            System.out.println("🧹 " + eliminadas + " claves de idempotencia vencidas eliminadas");
+        }
+    }
+
+    // Clave repetida con otros datos (422), todavía en curso (409) o inválida (400)
+    public static class ConflictoException extends RuntimeException {
+
+        private final int estado;
+
+        public ConflictoException(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+
+        public int getEstado() { return estado; }
+    }
+}
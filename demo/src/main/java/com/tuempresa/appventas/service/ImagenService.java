@@ -0,0 +1,377 @@
+package com.tuempresa.appventas.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.tuempresa.appventas.dto.VariantesImagen;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Servicio;
+import com.tuempresa.appventas.util.ImagenUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Genera miniatura, mediana y grande de cada imagen de productos y servicios, fuera del hilo de la petición.
+// Cada original se decodifica una sola vez; al re-codificar se descartan los metadatos (EXIF, GPS)
+// después de aplicar la orientación de la cámara. Las URLs resultantes se guardan en la entidad.
+@Service
+public class ImagenService {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ServicioService servicioService;
+
+    @Value("${app.imagenes.hilos:2}")
+    private int hilos;
+
+    @Value("${app.imagenes.cola:200}")
+    private int capacidadCola;
+
+    @Value("${app.imagenes.calidad:0.8}")
+    private float calidad;
+
+    @Value("${app.imagenes.lado-miniatura:320}")
+    private int ladoMiniatura;
+
+    @Value("${app.imagenes.lado-mediana:800}")
+    private int ladoMediana;
+
+    @Value("${app.imagenes.lado-grande:1600}")
+    private int ladoGrande;
+
+    // Evita decodificar imágenes gigantes (bombas de descompresión)
+    @Value("${app.imagenes.max-pixeles:50000000}")
+    private long maxPixeles;
+
+    private ThreadPoolExecutor ejecutor;
+
+    // Una sola tarea por publicación a la vez: así las variantes se registran sin pisarse.
+    // Si la publicación se edita mientras su tarea corre, la edición queda anotada (la última gana)
+    // y se procesa apenas termina la actual
+    private final Map<String, Tarea> enCurso = new ConcurrentHashMap<>();
+
+    private record Tarea(String clave, List<String> urls, Consumer<Map<String, VariantesImagen>> registrar) {
+    }
+
+    private static final Tarea NINGUNA = new Tarea("", List.of(), variantes -> {});
+
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "imagenes-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    // Al crear o editar una publicación se procesan las imágenes que todavía no tienen variantes
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        if (evento.isEliminado()) {
+            return;
+        }
+        if (evento.getTipo() == PublicacionModificadaEvent.Tipo.PRODUCTO) {
+            Producto producto = evento.getProducto();
+            List<String> pendientes = pendientes(ImagenUtil.imagenesDe(producto), producto.getImagenesVariantes());
+            encolar(new Tarea("producto-" + producto.getId(), pendientes,
+                    variantes -> productoService.registrarVariantes(producto.getId(), variantes)));
+        } else {
+            Servicio servicio = evento.getServicio();
+            List<String> pendientes = pendientes(ImagenUtil.imagenesDe(servicio), servicio.getImagenesVariantes());
+            encolar(new Tarea("servicio-" + servicio.getId(), pendientes,
+                    variantes -> servicioService.registrarVariantes(servicio.getId(), variantes)));
+        }
+    }
+
+    private List<String> pendientes(List<String> imagenes, String variantesJson) {
+        Map<String, VariantesImagen> existentes = ImagenUtil.leerVariantes(variantesJson);
+        return imagenes.stream()
+                .filter(url -> url.startsWith("/uploads/") && !existentes.containsKey(url))
+                .toList();
+    }
+
+    private void encolar(Tarea tarea) {
+        if (tarea.urls().isEmpty()) {
+            return;
+        }
+        Tarea anotada = enCurso.compute(tarea.clave(), (clave, actual) -> actual == null ? NINGUNA : tarea);
+        if (anotada == NINGUNA) {
+            ejecutar(tarea);
+        }
+    }
+
+    private void ejecutar(Tarea tarea) {
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    Map<String, VariantesImagen> resultado = new LinkedHashMap<>();
+                    for (String url : tarea.urls()) {
+                        resultado.put(url, generarVariantes(url));
+                    }
+                    tarea.registrar().accept(resultado);
+                } catch (Exception e) {
+                    System.err.println("❌ Error procesando imágenes de " + tarea.clave() + ": " + e.getMessage());
+                } finally {
+                    terminar(tarea.clave());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Cola llena: se reintenta con la próxima modificación; mientras tanto se sirve el original
+            enCurso.remove(tarea.clave());
+            System.err.println("⚠️ Cola de imágenes llena, se omite " + tarea.clave());
+        }
+    }
+
+    // Libera la publicación, o sigue con la edición que llegó mientras se procesaba
+    private void terminar(String clave) {
+        Tarea[] siguiente = new Tarea[1];
+        enCurso.computeIfPresent(clave, (c, anotada) -> {
+            if (anotada == NINGUNA) {
+                return null;
+            }
+            siguiente[0] = anotada;
+            return NINGUNA;
+        });
+        if (siguiente[0] != null) {
+            ejecutar(siguiente[0]);
+        }
+    }
+
+    private VariantesImagen generarVariantes(String url) throws IOException {
+        Path raiz = Paths.get(System.getProperty("user.dir"), "uploads").toAbsolutePath().normalize();
+        Path original = Paths.get(System.getProperty("user.dir"), url.substring(1)).toAbsolutePath().normalize();
+        if (!original.startsWith(raiz) || !Files.isRegularFile(original)) {
+            return VariantesImagen.vacia();
+        }
+
+        String base = url.substring(0, url.lastIndexOf('.') > url.lastIndexOf('/') ? url.lastIndexOf('.') : url.length());
+        // Los originales del almacén se nombran por contenido: si ya hay variantes, son de esta misma imagen
+        for (String extension : new String[] { "jpg", "png" }) {
+            VariantesImagen existentes = new VariantesImagen(base + "_miniatura." + extension,
+                    base + "_mediana." + extension, base + "_grande." + extension);
+            if (existe(existentes.miniatura()) && existe(existentes.mediana()) && existe(existentes.grande())) {
+                return existentes;
+            }
+        }
+
+        BufferedImage imagen;
+        try {
+            imagen = leer(original);
+        } catch (IOException e) {
+            imagen = null; // p. ej. JPEG CMYK
+        }
+        if (imagen == null) {
+            System.err.println("⚠️ Formato de imagen no soportado, se sirve el original: " + url);
+            return VariantesImagen.vacia();
+        }
+        imagen = orientar(imagen, orientacionExif(original));
+
+        String extension = imagen.getColorModel().hasAlpha() ? "png" : "jpg";
+        // Cada variante sale de la anterior: solo la grande se calcula desde el original
+        BufferedImage grande = escalar(imagen, ladoGrande);
+        BufferedImage mediana = escalar(grande, ladoMediana);
+        BufferedImage miniatura = escalar(mediana, ladoMiniatura);
+
+        VariantesImagen variantes = new VariantesImagen(
+                escribir(miniatura, base + "_miniatura." + extension),
+                escribir(mediana, base + "_mediana." + extension),
+                escribir(grande, base + "_grande." + extension));
+        System.out.println("🖼️ Variantes generadas para " + url);
+        return variantes;
+    }
+
+    private BufferedImage leer(Path archivo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            if (entrada == null) {
+                return null;
+            }
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                return null;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                if ((long) lector.getWidth(0) * lector.getHeight(0) > maxPixeles) {
+                    System.err.println("⚠️ Imagen demasiado grande para procesar: " + archivo.getFileName());
+                    return null;
+                }
+                return lector.read(0);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private String escribir(BufferedImage imagen, String url) throws IOException {
+        Path destino = Paths.get(System.getProperty("user.dir"), url.substring(1));
+        // Se escribe aparte y se mueve al final: nunca se sirve una variante a medio escribir
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".part");
+        Files.deleteIfExists(temporal);
+
+        if (url.endsWith(".png")) {
+            ImageIO.write(imagen, "png", temporal.toFile());
+        } else {
+            ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidad);
+            parametros.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+                escritor.setOutput(salida);
+                escritor.write(null, new IIOImage(imagen, null, null), parametros);
+            } finally {
+                escritor.dispose();
+            }
+        }
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return url;
+    }
+
+    private boolean existe(String url) {
+        return Files.isRegularFile(Paths.get(System.getProperty("user.dir"), url.substring(1)));
+    }
+
+    // Reduce a la mitad mientras sobre más del doble y termina con bicúbico: evita el aliasing
+    // de escalar una foto de 4000 px a 320 px de un solo paso. Nunca agranda.
+    private BufferedImage escalar(BufferedImage imagen, int lado) {
+        boolean alfa = imagen.getColorModel().hasAlpha();
+        int tipo = alfa ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int ancho = imagen.getWidth();
+        int alto = imagen.getHeight();
+        double factor = Math.min(1.0, (double) lado / Math.max(ancho, alto));
+        int anchoFinal = Math.max(1, (int) Math.round(ancho * factor));
+        int altoFinal = Math.max(1, (int) Math.round(alto * factor));
+
+        BufferedImage actual = imagen;
+        do {
+            ancho = ancho / 2 >= anchoFinal * 2 ? ancho / 2 : anchoFinal;
+            alto = alto / 2 >= altoFinal * 2 ? alto / 2 : altoFinal;
+            BufferedImage siguiente = new BufferedImage(ancho, alto, tipo);
+            Graphics2D g = siguiente.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(actual, 0, 0, ancho, alto, null);
+            g.dispose();
+            actual = siguiente;
+        } while (ancho != anchoFinal || alto != altoFinal);
+        return actual;
+    }
+
+    // Aplica la orientación EXIF (las cámaras guardan la foto girada y solo marcan la rotación)
+    private BufferedImage orientar(BufferedImage imagen, int orientacion) {
+        if (orientacion < 2 || orientacion > 8) {
+            return imagen;
+        }
+        int w = imagen.getWidth();
+        int h = imagen.getHeight();
+        AffineTransform t = switch (orientacion) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+        boolean girada = orientacion >= 5;
+        int tipo = imagen.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage resultado = new BufferedImage(girada ? h : w, girada ? w : h, tipo);
+        Graphics2D g = resultado.createGraphics();
+        g.drawImage(imagen, t, null);
+        g.dispose();
+        return resultado;
+    }
+
+    // Lee la etiqueta 0x0112 del bloque EXIF (APP1) de un JPEG; 1 = sin rotación
+    private int orientacionExif(Path archivo) {
+        try (InputStream entrada = Files.newInputStream(archivo);
+             DataInputStream datos = new DataInputStream(entrada)) {
+            if (datos.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marcador = datos.readUnsignedShort();
+                if ((marcador & 0xFF00) != 0xFF00 || marcador == 0xFFDA) {
+                    return 1;
+                }
+                int longitud = datos.readUnsignedShort() - 2;
+                if (marcador != 0xFFE1) {
+                    datos.skipNBytes(longitud);
+                    continue;
+                }
+                byte[] bloque = new byte[longitud];
+                datos.readFully(bloque);
+                if (longitud < 14 || bloque[0] != 'E' || bloque[1] != 'x' || bloque[2] != 'i' || bloque[3] != 'f') {
+                    continue;
+                }
+                int tiff = 6;
+                boolean little = bloque[tiff] == 'I';
+                int ifd = tiff + leerEntero(bloque, tiff + 4, 4, little);
+                int entradas = leerEntero(bloque, ifd, 2, little);
+                for (int i = 0; i < entradas; i++) {
+                    int entradaIfd = ifd + 2 + i * 12;
+                    if (leerEntero(bloque, entradaIfd, 2, little) == 0x0112) {
+                        return leerEntero(bloque, entradaIfd + 8, 2, little);
+                    }
+                }
+                return 1;
+            }
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    private static int leerEntero(byte[] bytes, int posicion, int tamanio, boolean little) {
+        int valor = 0;
+        for (int i = 0; i < tamanio; i++) {
+            int b = bytes[posicion + (little ? tamanio - 1 - i : i)] & 0xFF;
+            valor = (valor << 8) | b;
+        }
+        return valor;
+    }
+}
@@ -1,20 +1,21 @@
 package com.tuempresa.appventas.service;
 
-import java.text.Normalizer;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
 import com.tuempresa.appventas.model.Incidencia;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Servicio;
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.IncidenciaRepository;
+import com.tuempresa.appventas.util.TextoUtil;
 
 @Service
 public class IncidenciaService {
@@ -22,6 +23,9 @@ public class IncidenciaService {
     @Autowired
     private IncidenciaRepository incidenciaRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Palabras prohibidas para detección automática
     private static final List<String> PALABRAS_PROHIBIDAS = Arrays.asList(
             "arma", "armas", "droga", "drogas", "explosivo", "explosivos",
@@ -137,6 +141,12 @@ public class IncidenciaService {
             }
         }
 
+        if (incidencia.getProducto() != null) {
+            eventPublisher.publishEvent(PublicacionModificadaEvent.de(incidencia.getProducto()));
+        } else if (incidencia.getServicio() != null) {
+            eventPublisher.publishEvent(PublicacionModificadaEvent.de(incidencia.getServicio()));
+        }
+
         return incidenciaRepository.save(incidencia);
     }
 
@@ -207,10 +217,7 @@ public class IncidenciaService {
 
     // Método para normalizar texto (eliminar acentos y poner en minúsculas)
     private String normalizarTexto(String input) {
-        if (input == null) return "";
-        String normalized = Normalizer.normalize(input, Normalizer.Form.NFD);
-        Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-        return pattern.matcher(normalized).replaceAll("").toLowerCase();
+        return TextoUtil.normalizar(input);
     }
 
     // Verificar si un producto tiene incidencias activas
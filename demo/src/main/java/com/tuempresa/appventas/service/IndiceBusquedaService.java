@@ -0,0 +1,267 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.tuempresa.appventas.dto.ResultadoBusqueda;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Servicio;
+import com.tuempresa.appventas.repository.ProductoRepository;
+import com.tuempresa.appventas.repository.ServicioRepository;
+import com.tuempresa.appventas.util.ImagenUtil;
+import com.tuempresa.appventas.util.TextoUtil;
+
+// Índice invertido en memoria compartido por productos y servicios.
+// Se reconstruye desde la BD al arrancar y se actualiza con cada PublicacionModificadaEvent.
+@Service
+public class IndiceBusquedaService {
+
+    // Pesos por campo: una coincidencia en el título vale más que en la descripción
+    private static final int PESO_TITULO = 3;
+    private static final int PESO_CATEGORIA = 2;
+    private static final int PESO_TEXTO = 1;
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "del", "la", "las", "el", "los", "en", "un", "una", "con", "por", "para", "al", "se", "es"
+    );
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // término -> documento -> peso acumulado (ordenado para búsquedas por prefijo)
+    private NavigableMap<String, Map<Clave, Integer>> postings = new TreeMap<>();
+    private Map<Clave, Documento> documentos = new HashMap<>();
+
+    private record Clave(PublicacionModificadaEvent.Tipo tipo, Long id) {}
+
+    private record Documento(Clave clave, String titulo, String categoria, String ciudad,
+                             Double precio, String imagen, Map<String, Integer> terminos) {}
+
+    // RECONSTRUIR EL ÍNDICE AL ARRANCAR
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        try {
+            NavigableMap<String, Map<Clave, Integer>> nuevosPostings = new TreeMap<>();
+            Map<Clave, Documento> nuevosDocumentos = new HashMap<>();
+
+            for (Producto producto : productoRepository.findByEstado("ACTIVO")) {
+                agregar(documentoDe(producto), nuevosPostings, nuevosDocumentos);
+            }
+            for (Servicio servicio : servicioRepository.findByActivoTrueAndEstado("ACTIVO")) {
+                agregar(documentoDe(servicio), nuevosPostings, nuevosDocumentos);
+            }
+
+            lock.writeLock().lock();
+            try {
+                postings = nuevosPostings;
+                documentos = nuevosDocumentos;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.out.println("🔎 Índice de búsqueda reconstruido: " + nuevosDocumentos.size() + " publicaciones");
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo reconstruir el índice de búsqueda: " + e.getMessage());
+        }
+    }
+
+    // ACTUALIZACIÓN INCREMENTAL (después del commit si hay transacción)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarPublicacion(PublicacionModificadaEvent evento) {
+        Clave clave = new Clave(evento.getTipo(), evento.getId());
+        Documento documento = null;
+        if (evento.getProducto() != null && esVisible(evento.getProducto())) {
+            documento = documentoDe(evento.getProducto());
+        } else if (evento.getServicio() != null && esVisible(evento.getServicio())) {
+            documento = documentoDe(evento.getServicio());
+        }
+
+        lock.writeLock().lock();
+        try {
+            quitar(clave);
+            if (documento != null) {
+                agregar(documento, postings, documentos);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // BUSCAR: todas las palabras deben coincidir (por prefijo); facetas sobre las coincidencias de texto
+    public ResultadoBusqueda buscar(String texto, String tipoItem, String categoria, String ciudad, int pagina, int limite) {
+        List<String> terminos = terminosConsulta(texto);
+
+        lock.readLock().lock();
+        try {
+            Map<Clave, Integer> puntajes = coincidencias(terminos);
+
+            Map<String, Map<String, Long>> facetas = new LinkedHashMap<>();
+            facetas.put("tipoItem", new TreeMap<>());
+            facetas.put("categoria", new TreeMap<>());
+            facetas.put("ciudad", new TreeMap<>());
+
+            List<ResultadoBusqueda.Coincidencia> filtradas = new ArrayList<>();
+            for (Map.Entry<Clave, Integer> entrada : puntajes.entrySet()) {
+                Documento doc = documentos.get(entrada.getKey());
+                String tipoDoc = doc.clave().tipo().name().toLowerCase();
+                contar(facetas.get("tipoItem"), tipoDoc);
+                contar(facetas.get("categoria"), doc.categoria());
+                contar(facetas.get("ciudad"), doc.ciudad());
+
+                if (coincideFiltro(tipoItem, tipoDoc) && coincideFiltro(categoria, doc.categoria())
+                        && coincideFiltro(ciudad, doc.ciudad())) {
+                    filtradas.add(new ResultadoBusqueda.Coincidencia(tipoDoc, doc.clave().id(), doc.titulo(),
+                            doc.categoria(), doc.ciudad(), doc.precio(), doc.imagen(), entrada.getValue()));
+                }
+            }
+
+            filtradas.sort(Comparator.comparingDouble(ResultadoBusqueda.Coincidencia::puntaje).reversed()
+                    .thenComparing(ResultadoBusqueda.Coincidencia::id, Comparator.reverseOrder()));
+
+            // En long: una página muy alta desborda int y daría un índice negativo; más allá del final, página vacía
+            int desde = (int) Math.min(Math.max(pagina, 0) * (long) limite, filtradas.size());
+            int hasta = (int) Math.min(desde + (long) limite, filtradas.size());
+            return new ResultadoBusqueda(filtradas.size(), pagina, new ArrayList<>(filtradas.subList(desde, hasta)), facetas);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int totalDocumentos() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Clave, Integer> coincidencias(List<String> terminos) {
+        if (terminos.isEmpty()) {
+            Map<Clave, Integer> todos = new HashMap<>();
+            documentos.keySet().forEach(clave -> todos.put(clave, 0));
+            return todos;
+        }
+
+        Map<Clave, Integer> resultado = null;
+        for (String termino : terminos) {
+            // Unión de los postings de todos los términos indexados que empiezan por la palabra buscada
+            Map<Clave, Integer> porTermino = new HashMap<>();
+            for (Map<Clave, Integer> lista : postings.subMap(termino, true, termino + Character.MAX_VALUE, true).values()) {
+                lista.forEach((clave, peso) -> porTermino.merge(clave, peso, Math::max));
+            }
+
+            if (resultado == null) {
+                resultado = porTermino;
+            } else {
+                resultado.keySet().retainAll(porTermino.keySet());
+                resultado.replaceAll((clave, peso) -> peso + porTermino.get(clave));
+            }
+            if (resultado.isEmpty()) {
+                break;
+            }
+        }
+        return resultado;
+    }
+
+    private void agregar(Documento documento, NavigableMap<String, Map<Clave, Integer>> destinoPostings,
+                         Map<Clave, Documento> destinoDocumentos) {
+        destinoDocumentos.put(documento.clave(), documento);
+        documento.terminos().forEach((termino, peso) ->
+                destinoPostings.computeIfAbsent(termino, t -> new HashMap<>()).put(documento.clave(), peso));
+    }
+
+    private void quitar(Clave clave) {
+        Documento anterior = documentos.remove(clave);
+        if (anterior == null) {
+            return;
+        }
+        for (String termino : anterior.terminos().keySet()) {
+            Map<Clave, Integer> lista = postings.get(termino);
+            if (lista != null) {
+                lista.remove(clave);
+                if (lista.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+    }
+
+    private Documento documentoDe(Producto producto) {
+        Map<String, Integer> terminos = new HashMap<>();
+        sumarTerminos(terminos, producto.getNombre(), PESO_TITULO);
+        sumarTerminos(terminos, producto.getTipo(), PESO_CATEGORIA);
+        sumarTerminos(terminos, producto.getDescripcion(), PESO_TEXTO);
+        return new Documento(new Clave(PublicacionModificadaEvent.Tipo.PRODUCTO, producto.getId()),
+                producto.getNombre(), producto.getTipo(), producto.getUbicacion(),
+                producto.getPrecio(), producto.getImagenUrl1(), terminos);
+    }
+
+    private Documento documentoDe(Servicio servicio) {
+        Map<String, Integer> terminos = new HashMap<>();
+        sumarTerminos(terminos, servicio.getTitulo(), PESO_TITULO);
+        sumarTerminos(terminos, servicio.getCategoria(), PESO_CATEGORIA);
+        sumarTerminos(terminos, servicio.getCiudad(), PESO_CATEGORIA);
+        sumarTerminos(terminos, servicio.getDescripcion(), PESO_TEXTO);
+        return new Documento(new Clave(PublicacionModificadaEvent.Tipo.SERVICIO, servicio.getId()),
+                servicio.getTitulo(), servicio.getCategoria(), servicio.getCiudad(),
+                servicio.getPrecio() != null ? servicio.getPrecio().doubleValue() : null,
+                ImagenUtil.primeraImagen(servicio.getImagenes()), terminos);
+    }
+
+    private void sumarTerminos(Map<String, Integer> terminos, String texto, int peso) {
+        for (String token : TextoUtil.tokenizar(texto)) {
+            if (!PALABRAS_VACIAS.contains(token)) {
+                terminos.merge(token, peso, Integer::sum);
+            }
+        }
+    }
+
+    private List<String> terminosConsulta(String texto) {
+        List<String> terminos = new ArrayList<>();
+        for (String token : TextoUtil.tokenizar(texto)) {
+            if (!PALABRAS_VACIAS.contains(token) && !terminos.contains(token)) {
+                terminos.add(token);
+            }
+        }
+        return terminos;
+    }
+
+    private boolean esVisible(Producto producto) {
+        return "ACTIVO".equals(producto.getEstado());
+    }
+
+    private boolean esVisible(Servicio servicio) {
+        return Boolean.TRUE.equals(servicio.getActivo()) && "ACTIVO".equals(servicio.getEstado());
+    }
+
+    private boolean coincideFiltro(String filtro, String valor) {
+        return filtro == null || filtro.isBlank() || TextoUtil.normalizar(filtro).equals(TextoUtil.normalizar(valor));
+    }
+
+    private void contar(Map<String, Long> faceta, String valor) {
+        if (valor != null && !valor.isBlank()) {
+            faceta.merge(valor, 1L, Long::sum);
+        }
+    }
+}
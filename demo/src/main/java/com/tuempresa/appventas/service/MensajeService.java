@@ -1,16 +1,22 @@
 package com.tuempresa.appventas.service;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.tuempresa.appventas.dto.ConfirmacionLectura;
+import com.tuempresa.appventas.dto.ConversacionResumen;
+import com.tuempresa.appventas.dto.MensajeResumen;
+import com.tuempresa.appventas.dto.PaginaCursor;
 import com.tuempresa.appventas.model.Mensaje;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Servicio;
@@ -24,19 +30,31 @@ public class MensajeService {
     private MensajeRepository mensajeRepository;
 
     @Autowired
-    private EmailService emailService;
+    private NotificacionMensajeService notificacionMensajeService;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
+
+    @Autowired
+    private ConversacionService conversacionService;
+
+    @Value("${app.mensajes.limite-por-defecto:50}")
+    private int limitePorDefecto;
+
+    @Value("${app.mensajes.limite-maximo:200}")
+    private int limiteMaximo;
 
     // Enviar mensaje simple
     @Transactional
     public Mensaje enviarMensaje(Usuario remitente, Usuario destinatario, String contenido) {
         Mensaje mensaje = new Mensaje(remitente, destinatario, contenido);
         Mensaje guardado = mensajeRepository.save(mensaje);
+        conversacionService.registrarMensaje(guardado);
         
-        // Enviar notificación por correo
-        emailService.enviarNotificacionMensaje(
-            destinatario.getEmail(), 
-            destinatario.getNombre(), 
-            remitente.getNombre() + " " + remitente.getApellido(), 
+        // Aviso por correo: se encola con el mensaje y se envía agrupado en segundo plano
+        notificacionMensajeService.encolar(
+            destinatario,
+            remitente.getNombre() + " " + remitente.getApellido(),
             contenido
         );
         
@@ -48,12 +66,12 @@ public class MensajeService {
     public Mensaje enviarMensajeProducto(Usuario remitente, Usuario destinatario, String contenido, Producto producto) {
         Mensaje mensaje = new Mensaje(remitente, destinatario, contenido, producto);
         Mensaje guardado = mensajeRepository.save(mensaje);
+        conversacionService.registrarMensaje(guardado);
         
-        // Enviar notificación por correo
-        emailService.enviarNotificacionMensaje(
-            destinatario.getEmail(), 
-            destinatario.getNombre(), 
-            remitente.getNombre() + " " + remitente.getApellido(), 
+        // Aviso por correo: se encola con el mensaje y se envía agrupado en segundo plano
+        notificacionMensajeService.encolar(
+            destinatario,
+            remitente.getNombre() + " " + remitente.getApellido(),
             "Sobre producto " + producto.getNombre() + ": " + contenido
         );
         
@@ -65,12 +83,12 @@ public class MensajeService {
     public Mensaje enviarMensajeServicio(Usuario remitente, Usuario destinatario, String contenido, Servicio servicio) {
         Mensaje mensaje = new Mensaje(remitente, destinatario, contenido, servicio);
         Mensaje guardado = mensajeRepository.save(mensaje);
+        conversacionService.registrarMensaje(guardado);
         
-        // Enviar notificación por correo
-        emailService.enviarNotificacionMensaje(
-            destinatario.getEmail(), 
-            destinatario.getNombre(), 
-            remitente.getNombre() + " " + remitente.getApellido(), 
+        // Aviso por correo: se encola con el mensaje y se envía agrupado en segundo plano
+        notificacionMensajeService.encolar(
+            destinatario,
+            remitente.getNombre() + " " + remitente.getApellido(),
             "Sobre servicio " + servicio.getTitulo() + ": " + contenido
         );
         
@@ -83,24 +101,32 @@ public class MensajeService {
         Mensaje mensaje = mensajeRepository.findById(mensajeId)
                 .orElseThrow(() -> new RuntimeException("Mensaje no encontrado"));
 
+        if (!mensaje.getLeido()) {
+            conversacionService.descontarLeidos(mensaje.getConversacionId(), mensaje.getDestinatario().getId(), 1);
+        }
         mensaje.setLeido(true);
         mensaje.setFechaLeido(new Date());
 
         return mensajeRepository.save(mensaje);
     }
 
-    // Marcar todos los mensajes de una conversación como leídos
+    // Marcar como leídos los mensajes recibidos en una conversación hasta un id (por defecto, todos)
+    // Una sola sentencia UPDATE por el índice (conversacionId, id), sin cargar los mensajes.
+    // Devuelve la confirmación de lectura para el otro participante, o null si no había nada sin leer.
     @Transactional
-    public void marcarConversacionComoLeida(String conversacionId, Long usuarioId) {
-        List<Mensaje> mensajes = mensajeRepository.findByConversacionIdOrderByFechaEnvioAsc(conversacionId);
-
-        for (Mensaje mensaje : mensajes) {
-            if (mensaje.getDestinatario().getId().equals(usuarioId) && !mensaje.getLeido()) {
-                mensaje.setLeido(true);
-                mensaje.setFechaLeido(new Date());
-                mensajeRepository.save(mensaje);
-            }
+    public ConfirmacionLectura marcarConversacionComoLeida(String conversacionId, Long usuarioId, Long hastaMensajeId) {
+        List<Object[]> ultimo = mensajeRepository.buscarUltimoNoLeido(conversacionId, usuarioId,
+                hastaMensajeId != null ? hastaMensajeId : Long.MAX_VALUE, PageRequest.of(0, 1));
+        if (ultimo.isEmpty()) {
+            return null;
         }
+        Long hasta = (Long) ultimo.get(0)[0];
+        Long remitenteId = (Long) ultimo.get(0)[1];
+
+        Date ahora = new Date();
+        int leidos = mensajeRepository.marcarLeidosHasta(conversacionId, usuarioId, hasta, ahora);
+        conversacionService.descontarLeidos(conversacionId, usuarioId, leidos);
+        return new ConfirmacionLectura(conversacionId, usuarioId, remitenteId, hasta, leidos, ahora);
     }
 
     // Obtener mensajes entre dos usuarios
@@ -108,14 +134,14 @@ public class MensajeService {
         return mensajeRepository.findMensajesEntreUsuarios(usuario1Id, usuario2Id);
     }
 
-    // Obtener conversaciones de un usuario
-    public List<Mensaje> obtenerConversacionesUsuario(Long usuarioId) {
-        return mensajeRepository.findConversacionesUsuario(usuarioId);
+    // Obtener conversaciones de un usuario (bandeja materializada)
+    public List<ConversacionResumen> obtenerConversacionesUsuario(Long usuarioId) {
+        return conversacionService.obtenerBandeja(usuarioId);
     }
 
     // Contar mensajes no leídos
     public Long contarMensajesNoLeidos(Long usuarioId) {
-        return mensajeRepository.countMensajesNoLeidos(usuarioId);
+        return conversacionService.contarNoLeidos(usuarioId);
     }
 
     // Obtener mensajes no leídos
@@ -128,6 +154,42 @@ public class MensajeService {
         return mensajeRepository.findByConversacionIdOrderByFechaEnvioAsc(conversacionId);
     }
 
+    // HISTORIAL PAGINADO DE UNA CONVERSACIÓN (cursor = id de mensaje)
+    // Sin cursor devuelve los últimos mensajes; con antesDe, los anteriores a ese id (para ir hacia atrás);
+    // con despuesDe, los posteriores (para traer lo nuevo). Los items siempre van en orden cronológico y
+    // siguienteCursor es el id desde el que seguir en la misma dirección.
+    public PaginaCursor<MensajeResumen> obtenerHistorial(String conversacionId, Long antesDe, Long despuesDe, Integer limite) {
+        if (antesDe != null && despuesDe != null) {
+            throw new RuntimeException("Indique antesDe o despuesDe, no ambos");
+        }
+        int tamanio = (limite == null || limite < 1) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+
+        // Se pide un elemento extra para saber si hay otra página sin hacer COUNT(*)
+        List<MensajeResumen> mensajes;
+        if (despuesDe != null) {
+            mensajes = new ArrayList<>(mensajeRepository.buscarHistorialPosteriores(
+                    conversacionId, despuesDe, PageRequest.of(0, tamanio + 1)));
+        } else {
+            mensajes = new ArrayList<>(mensajeRepository.buscarHistorialAnteriores(
+                    conversacionId, antesDe != null ? antesDe : Long.MAX_VALUE, PageRequest.of(0, tamanio + 1)));
+        }
+
+        boolean hayMas = mensajes.size() > tamanio;
+        if (hayMas) {
+            mensajes.remove(mensajes.size() - 1);
+        }
+        if (despuesDe == null) {
+            Collections.reverse(mensajes);
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            MensajeResumen borde = despuesDe != null ? mensajes.get(mensajes.size() - 1) : mensajes.get(0);
+            siguienteCursor = String.valueOf(borde.id());
+        }
+        return new PaginaCursor<>(mensajes, siguienteCursor, hayMas);
+    }
+
     // Generar ID de conversación entre dos usuarios
     public String generarConversacionId(Long usuario1Id, Long usuario2Id) {
         Long menor = Math.min(usuario1Id, usuario2Id);
@@ -146,6 +208,7 @@ public class MensajeService {
     public void eliminarConversacion(String conversacionId) {
         List<Mensaje> mensajes = mensajeRepository.findByConversacionIdOrderByFechaEnvioAsc(conversacionId);
         mensajeRepository.deleteAll(mensajes);
+        conversacionService.eliminar(conversacionId);
     }
 
     @Transactional
@@ -158,30 +221,8 @@ public class MensajeService {
 
     // Guardar imagen de mensaje
     public String guardarImagenMensaje(MultipartFile imagen) throws IOException {
-        String uploadDir = System.getProperty("user.dir") + File.separator + "uploads" + File.separator + "mensajes" + File.separator;
-        File directory = new File(uploadDir);
-
-        if (!directory.exists()) {
-            boolean created = directory.mkdirs();
-            if (!created) {
-                throw new IOException("No se pudo crear el directorio: " + uploadDir);
-            }
-        }
-
-        String extension = "";
-        String originalFilename = imagen.getOriginalFilename();
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        }
-
-        String fileName = System.currentTimeMillis() + "_" + UUID.randomUUID().toString() + extension;
-        String filePath = uploadDir + fileName;
-
-        File file = new File(filePath);
-        imagen.transferTo(file);
-
-        System.out.println("✅ Imagen de mensaje guardada en: " + filePath);
-
-        return "/uploads/mensajes/" + fileName;
+        String url = almacenArchivosService.guardar(imagen);
+        System.out.println("✅ Imagen de mensaje guardada en: " + url);
+        return url;
     }
 }
@@ -0,0 +1,161 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.tuempresa.appventas.model.NotificacionMensaje;
+import com.tuempresa.appventas.model.Usuario;
+import com.tuempresa.appventas.repository.NotificacionMensajeRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// Avisos por correo de mensajes de chat, agrupados por destinatario.
+// El aviso se guarda en la misma transacción que el mensaje; cada cierto tiempo se toman los destinatarios
+// cuyo aviso más antiguo ya esperó la ventana de agrupación, y todos sus avisos pendientes pasan como un
+// solo correo a la bandeja de salida general (EmailService / CorreoDespachoService), que se encarga del envío.
+@Service
+public class NotificacionMensajeService {
+
+    private static final int LARGO_VISTA_PREVIA = 200;
+
+    @Autowired
+    private NotificacionMensajeRepository notificacionMensajeRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Tiempo que se espera desde el primer mensaje para juntar los siguientes en el mismo correo
+    @Value("${app.notificaciones.ventana-segundos:60}")
+    private long ventanaSegundos;
+
+    // Destinatarios por vuelta del despachador
+    @Value("${app.notificaciones.lote:100}")
+    private int lote;
+
+    @Value("${app.notificaciones.max-intentos:5}")
+    private int maxIntentos;
+
+    @Value("${app.notificaciones.retencion-dias:7}")
+    private int retencionDias;
+
+    // Avisos ENVIANDO más viejos que esto se dan por abandonados y vuelven a la cola
+    @Value("${app.notificaciones.envio-abandonado-minutos:10}")
+    private long envioAbandonadoMinutos;
+
+    private TransactionTemplate transaccion;
+
+    @PostConstruct
+    public void iniciar() {
+        transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    // Avisos que quedaron a medias por un reinicio o una caída vuelven a la cola.
+    // Con varios nodos solo se recuperan los tomados hace más del plazo, nunca los que otro nodo está procesando
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.notificaciones.recuperacion-intervalo-ms:60000}",
+            initialDelayString = "${app.notificaciones.recuperacion-intervalo-ms:60000}")
+    public void recuperarPendientes() {
+        Date limite = new Date(System.currentTimeMillis() - envioAbandonadoMinutos * 60_000L);
+        int liberadas = notificacionMensajeRepository.liberarEnviando(limite);
+        if (liberadas > 0) {
+            System.out.println("📧 " + liberadas + " avisos de mensajes vuelven a la cola");
+        }
+    }
+
+    // ENCOLAR AVISO (se llama dentro de la transacción que guarda el mensaje)
+    public void encolar(Usuario destinatario, String nombreRemitente, String contenido) {
+        if (destinatario.getEmail() == null || destinatario.getEmail().isBlank()) {
+            return;
+        }
+        notificacionMensajeRepository.save(new NotificacionMensaje(
+                destinatario.getEmail(), destinatario.getNombre(), nombreRemitente, vistaPrevia(contenido)));
+    }
+
+    @Scheduled(fixedDelayString = "${app.notificaciones.intervalo-ms:10000}")
+    public void despachar() {
+        try {
+            Date limite = new Date(System.currentTimeMillis() - ventanaSegundos * 1000);
+            List<String> destinatarios = notificacionMensajeRepository.buscarDestinatariosListos(limite, PageRequest.of(0, lote));
+            if (destinatarios.isEmpty()) {
+                return;
+            }
+
+            List<NotificacionMensaje> pendientes = notificacionMensajeRepository.buscarPendientes(destinatarios);
+            List<Long> ids = pendientes.stream().map(NotificacionMensaje::getId).toList();
+            Date tomado = new Date();
+            int cantidad = ids.isEmpty() ? 0 : notificacionMensajeRepository.tomar(ids, tomado);
+            if (cantidad == 0) {
+                return;
+            }
+            if (cantidad < ids.size()) {
+                // Otro nodo se llevó parte: se procesan solo los avisos que tomó esta llamada
+                Set<Long> propios = new HashSet<>(notificacionMensajeRepository.buscarTomados(ids, tomado));
+                pendientes = pendientes.stream().filter(aviso -> propios.contains(aviso.getId())).toList();
+            }
+
+            Map<String, List<NotificacionMensaje>> porDestinatario = new LinkedHashMap<>();
+            for (NotificacionMensaje aviso : pendientes) {
+                porDestinatario.computeIfAbsent(aviso.getEmailDestino(), email -> new ArrayList<>()).add(aviso);
+            }
+
+            int correos = 0;
+            for (List<NotificacionMensaje> avisos : porDestinatario.values()) {
+                if (encolarResumen(avisos)) {
+                    correos++;
+                }
+            }
+            System.out.println("📧 Avisos de mensajes: " + correos + " correos con " + pendientes.size() + " mensajes");
+        } catch (Exception e) {
+            System.err.println("❌ Error despachando avisos de mensajes: " + e.getMessage());
+        }
+    }
+
+    // Cada destinatario por separado: el correo se encola y sus avisos pasan a ENVIADA en una misma transacción.
+    // Si falla, solo sus avisos vuelven a la cola; los destinatarios ya encolados no se repiten
+    private boolean encolarResumen(List<NotificacionMensaje> avisos) {
+        List<Long> ids = avisos.stream().map(NotificacionMensaje::getId).toList();
+        NotificacionMensaje primero = avisos.get(0);
+        try {
+            transaccion.executeWithoutResult(estado -> {
+                emailService.enviarAvisoMensajes(primero.getEmailDestino(), primero.getNombreDestinatario(), avisos);
+                notificacionMensajeRepository.marcarEnviadas(ids, new Date());
+            });
+            return true;
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo encolar el aviso para " + primero.getEmailDestino() + ": " + e.getMessage());
+            notificacionMensajeRepository.marcarFallidas(ids, maxIntentos);
+            return false;
+        }
+    }
+
+    @Scheduled(cron = "${app.notificaciones.limpieza-cron:0 0 4 * * *}")
+    public void limpiar() {
+        Date antesDe = new Date(System.currentTimeMillis() - retencionDias * 86_400_000L);
+        notificacionMensajeRepository.eliminarEnviadas(antesDe);
+    }
+
+    private String vistaPrevia(String contenido) {
+        if (contenido == null) {
+            return "";
+        }
+        return contenido.length() > LARGO_VISTA_PREVIA ? contenido.substring(0, LARGO_VISTA_PREVIA) + "..." : contenido;
+    }
+}
@@ -1,24 +1,31 @@
 package com.tuempresa.appventas.service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.tuempresa.appventas.model.Carrito;
+import com.tuempresa.appventas.dto.CambioCarrito;
+import com.tuempresa.appventas.event.CarritoCompradoEvent;
 import com.tuempresa.appventas.model.DetallePedido;
-import com.tuempresa.appventas.model.ItemCarrito;
 import com.tuempresa.appventas.model.Pedido;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Usuario;
-import com.tuempresa.appventas.repository.CarritoRepository;
 import com.tuempresa.appventas.repository.DetallePedidoRepository;
+import com.tuempresa.appventas.repository.ItemCarritoRepository;
 import com.tuempresa.appventas.repository.PedidoRepository;
 import com.tuempresa.appventas.repository.ProductoRepository;
 import com.tuempresa.appventas.repository.UsuarioRepository;
@@ -26,6 +33,12 @@ import com.tuempresa.appventas.repository.UsuarioRepository;
 @Service
 public class PedidoService {
 
+    // Estados desde los que un pedido todavía se puede cancelar (el stock vuelve a estar disponible)
+    private static final List<String> CANCELABLES = List.of("PENDIENTE", "PAGADO_VERIFICANDO");
+    // Estados desde los que se puede subir el comprobante o confirmar el pago (nunca desde CANCELADO)
+    private static final List<String> CON_COMPROBANTE = List.of("PENDIENTE", "PAGADO_VERIFICANDO");
+    private static final List<String> CONFIRMABLES = List.of("PENDIENTE", "PAGADO_VERIFICANDO", "PAGADO");
+
     @Autowired
     private PedidoRepository pedidoRepository;
 
@@ -33,25 +46,69 @@ public class PedidoService {
     private DetallePedidoRepository detallePedidoRepository;
 
     @Autowired
-    private CarritoRepository carritoRepository;
+    private CarritoService carritoService;
 
     @Autowired
-    private UsuarioRepository usuarioRepository;
+    private ItemCarritoRepository itemCarritoRepository;
 
     @Autowired
     private ProductoRepository productoRepository;
 
-    private final String UPLOAD_DIR = "uploads/comprobantes/";
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private ReservaStockService reservaStockService;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Tiempo que un pedido por transferencia guarda el stock mientras se espera el comprobante
+    @Value("${app.pedidos.reserva-minutos:1440}")
+    private long reservaMinutos;
+
+    // Pedidos vencidos que se cancelan por vuelta del barrido
+    @Value("${app.pedidos.liberacion-lote:100}")
+    private int liberacionLote;
+
+    // Los ids de pedidos y detalles salen de id_generadores: si la tabla se acaba de crear (o hay filas insertadas
+    // con AUTO_INCREMENT), el próximo bloque se mueve por encima del id más alto para no repetir ids
+    @EventListener(ApplicationReadyEvent.class)
+    public void alinearGeneradoresDeIds() {
+        for (String tabla : List.of("pedidos", "detalles_pedido")) {
+            int ajustados = jdbcTemplate.update(
+                    "UPDATE id_generadores SET siguiente_id = (SELECT COALESCE(MAX(id), 0) + 1 FROM " + tabla + ") " +
+                    "WHERE entidad = ? AND siguiente_id <= (SELECT COALESCE(MAX(id), 0) FROM " + tabla + ")", tabla);
+            if (ajustados > 0) {
+                System.out.println("🔢 Generador de ids de " + tabla + " alineado con el id más alto");
+            }
+        }
+    }
+
+    @Transactional
     public Pedido crearPedidoDesdeCarrito(Long usuarioId, String metodoPago) {
         Usuario usuario = usuarioRepository.findById(usuarioId).orElseThrow();
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId).orElse(null);
+        CarritoMemoriaService.Contenido carrito = carritoService.contenido(usuarioId);
 
-        if (carrito == null || carrito.getItems().isEmpty()) {
+        if (carrito.items().isEmpty()) {
             throw new RuntimeException("El carrito está vacío");
         }
 
-        Pedido pedido = new Pedido(usuario, carrito.getTotal());
+        // Revalidar contra la BD (no la caché) los precios y el stock que vio el comprador: si algo cambió, no se
+        // crea el pedido y el carrito queda con los precios nuevos
+        List<CambioCarrito> cambios = carritoService.revalidar(carrito);
+        if (!cambios.isEmpty()) {
+            throw new CarritoService.CarritoDesactualizadoException(cambios);
+        }
+        double total = carrito.total();
+
+        Pedido pedido = new Pedido(usuario, total);
         pedido.setMetodoPago(metodoPago);
 
         // Lógica de estado según método de pago
@@ -59,48 +116,85 @@ public class PedidoService {
             pedido.setEstado("PAGADO"); // Simulación: Pago aprobado automáticamente
         } else {
             pedido.setEstado("PENDIENTE"); // Transferencia: Requiere comprobante
+            pedido.setReservaExpira(new Date(System.currentTimeMillis() + reservaMinutos * 60_000L));
         }
 
+        // Reservar stock: si algún producto ya no alcanza, no se crea el pedido
+        reservaStockService.reservar(carrito.cantidades());
+
         pedido = pedidoRepository.save(pedido);
 
         List<DetallePedido> detalles = new ArrayList<>();
-        for (ItemCarrito item : carrito.getItems()) {
-            DetallePedido detalle = new DetallePedido(pedido, item.getProducto(), item.getCantidad(), item.getProducto().getPrecio());
-            detalles.add(detalle);
-            
-            // Reducir stock
-            Producto p = item.getProducto();
-            p.setCantidad(p.getCantidad() - item.getCantidad());
-            productoRepository.save(p);
+        for (Map.Entry<Long, CarritoMemoriaService.Linea> item : carrito.items().entrySet()) {
+            Producto producto = productoRepository.getReferenceById(item.getKey());
+            detalles.add(new DetallePedido(pedido, producto, item.getValue().cantidad(), item.getValue().precio()));
         }
         detallePedidoRepository.saveAll(detalles);
 
-        // Vaciar carrito
-        carrito.getItems().clear();
-        carritoRepository.save(carrito);
+        // Vaciar carrito: lo comprado se borra de la BD ahora y del carrito en memoria después del commit
+        itemCarritoRepository.eliminarComprados(usuarioId, carrito.items().keySet());
+        eventPublisher.publishEvent(new CarritoCompradoEvent(usuarioId, carrito.cantidades()));
 
         return pedido;
     }
 
     public Pedido subirComprobante(Long pedidoId, MultipartFile archivo) throws IOException {
-        Pedido pedido = pedidoRepository.findById(pedidoId).orElseThrow();
-        
-        if (archivo != null && !archivo.isEmpty()) {
-            String fileName = System.currentTimeMillis() + "_" + archivo.getOriginalFilename();
-            Path path = Paths.get(UPLOAD_DIR + fileName);
-            Files.createDirectories(path.getParent());
-            Files.write(path, archivo.getBytes());
-            pedido.setComprobanteUrl("/uploads/comprobantes/" + fileName);
-            pedido.setEstado("PAGADO_VERIFICANDO"); // Estado intermedio
-            return pedidoRepository.save(pedido);
+        if (archivo == null || archivo.isEmpty()) {
+            return pedidoRepository.findById(pedidoId).orElseThrow();
         }
-        return pedido;
+        String url = almacenArchivosService.guardarComprobante(archivo);
+        // Con comprobante la reserva ya no vence sola
+        if (pedidoRepository.registrarComprobante(pedidoId, url, CON_COMPROBANTE) == 0) {
+            almacenArchivosService.liberar(url);
+            throw rechazo(pedidoId, "subir el comprobante de");
+        }
+        return pedidoRepository.findById(pedidoId).orElseThrow();
     }
 
     public Pedido confirmarPago(Long pedidoId) {
-        Pedido pedido = pedidoRepository.findById(pedidoId).orElseThrow();
-        pedido.setEstado("PAGADO");
-        return pedidoRepository.save(pedido);
+        if (pedidoRepository.confirmarPago(pedidoId, CONFIRMABLES) == 0) {
+            throw rechazo(pedidoId, "confirmar el pago de");
+        }
+        return pedidoRepository.findById(pedidoId).orElseThrow();
+    }
+
+    // El cambio de estado no se aplicó: el pedido no existe o ya no está en un estado que lo permita
+    private RuntimeException rechazo(Long pedidoId, String accion) {
+        Pedido pedido = pedidoRepository.findById(pedidoId)
+                .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+        if ("CANCELADO".equals(pedido.getEstado())) {
+            return new RuntimeException("El pedido fue cancelado y su stock liberado");
+        }
+        return new RuntimeException("No se puede " + accion + " un pedido en estado " + pedido.getEstado());
+    }
+
+    // CANCELAR PEDIDO (devuelve el stock reservado)
+    public Pedido cancelarPedido(Long pedidoId) {
+        if (!reservaStockService.cancelar(pedidoId, CANCELABLES)) {
+            Pedido pedido = pedidoRepository.findById(pedidoId)
+                    .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+            throw new RuntimeException("No se puede cancelar un pedido en estado " + pedido.getEstado());
+        }
+        return pedidoRepository.findById(pedidoId).orElseThrow();
+    }
+
+    // Barrido de pedidos por transferencia sin comprobante cuya reserva venció
+    @Scheduled(fixedDelayString = "${app.pedidos.liberacion-intervalo-ms:60000}")
+    public void liberarReservasVencidas() {
+        try {
+            List<Long> vencidos = pedidoRepository.buscarReservasVencidas(new Date(), PageRequest.of(0, liberacionLote));
+            int cancelados = 0;
+            for (Long pedidoId : vencidos) {
+                if (reservaStockService.cancelar(pedidoId, List.of("PENDIENTE"))) {
+                    cancelados++;
+                }
+            }
+            if (cancelados > 0) {
+                System.out.println("📦 " + cancelados + " pedidos vencidos cancelados, stock liberado");
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error liberando reservas vencidas: " + e.getMessage());
+        }
     }
 
     public List<Pedido> obtenerMisCompras(Long usuarioId) {
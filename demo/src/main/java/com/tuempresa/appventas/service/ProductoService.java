@@ -1,12 +1,25 @@
 package com.tuempresa.appventas.service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.tuempresa.appventas.dto.PaginaCursor;
+import com.tuempresa.appventas.dto.ProductoTarjeta;
+import com.tuempresa.appventas.dto.VariantesImagen;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
 import com.tuempresa.appventas.model.Producto;
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.DetallePedidoRepository;
@@ -16,6 +29,8 @@ import com.tuempresa.appventas.repository.ItemCarritoRepository;
 import com.tuempresa.appventas.repository.MensajeRepository;
 import com.tuempresa.appventas.repository.ProductoRepository;
 import com.tuempresa.appventas.repository.ReporteRepository;
+import com.tuempresa.appventas.util.CursorUtil;
+import com.tuempresa.appventas.util.ImagenUtil;
 
 @Service
 public class ProductoService {
@@ -41,9 +56,49 @@ public class ProductoService {
     @Autowired
     private MensajeRepository mensajeRepository;
 
+    @Autowired
+    private ConversacionService conversacionService;
+
     @Autowired
     private IncidenciaService incidenciaService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogoCacheService catalogoCache;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
+
+    @Value("${app.catalogo.limite-por-defecto:20}")
+    private int limitePorDefecto;
+
+    @Value("${app.catalogo.limite-maximo:100}")
+    private int limiteMaximo;
+
+    @Value("${app.catalogo.lote-maximo:200}")
+    private int loteMaximo;
+
+    // Se detecta una vez al arrancar: si falta el índice FULLTEXT las búsquedas usan LIKE directamente
+    private volatile boolean textoCompletoDisponible = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectarTextoCompleto() {
+        try {
+            textoCompletoDisponible = productoRepository.contarColumnasIndiceTextoCompleto() > 0;
+        } catch (Exception e) {
+            textoCompletoDisponible = false;
+            System.err.println("⚠️ No se pudo comprobar el índice FULLTEXT: " + e.getMessage());
+        }
+        if (textoCompletoDisponible) {
+            System.out.println("✅ Búsqueda FULLTEXT activa (ft_productos_texto)");
+        } else {
+            System.err.println("⚠️ Índice ft_productos_texto no encontrado, las búsquedas usarán LIKE " +
+                    "(ver migration_add_fulltext_productos.sql)");
+        }
+    }
+
     // CREAR PRODUCTO
     public Producto crearProducto(Producto producto, Usuario vendedor) {
         if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
@@ -70,6 +125,7 @@ public class ProductoService {
             System.err.println("Error al detectar contenido prohibido: " + e.getMessage());
         }
 
+        eventPublisher.publishEvent(PublicacionModificadaEvent.de(productoGuardado));
         return productoGuardado;
     }
 
@@ -78,19 +134,85 @@ public class ProductoService {
         return productoRepository.findByEstado("ACTIVO");
     }
 
+    // OBTENER TARJETAS DEL CATÁLOGO PÚBLICO (proyección liviana, sin la entidad completa)
+    public List<ProductoTarjeta> obtenerTarjetasActivas() {
+        return productoRepository.buscarTarjetasActivas();
+    }
+
+    // CATÁLOGO PÚBLICO PAGINADO POR CURSOR (fechaPublicacion, id)
+    public PaginaCursor<ProductoTarjeta> obtenerCatalogoPaginado(String tipo, String ubicacion, Double precioMin, Double precioMax,
+                                                                 String estadoProducto, Boolean disponibilidad,
+                                                                 String cursor, Integer limite) {
+        int tamanio = (limite == null || limite < 1) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        CursorUtil.Cursor desde = CursorUtil.decodificar(cursor);
+
+        // Se pide un elemento extra para saber si hay otra página sin hacer COUNT(*)
+        List<ProductoTarjeta> productos = productoRepository.buscarCatalogo(
+                vacioANull(tipo), vacioANull(ubicacion), precioMin, precioMax,
+                vacioANull(estadoProducto), disponibilidad,
+                desde != null ? desde.fecha() : null,
+                desde != null ? desde.id() : null,
+                PageRequest.of(0, tamanio + 1));
+
+        boolean hayMas = productos.size() > tamanio;
+        if (hayMas) {
+            productos = productos.subList(0, tamanio);
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            // La tarjeta no trae la fecha: se lee solo la del último elemento
+            Long ultimoId = productos.get(productos.size() - 1).id();
+            siguienteCursor = CursorUtil.codificar(productoRepository.buscarFechaPublicacion(ultimoId), ultimoId);
+        }
+
+        return new PaginaCursor<>(productos, siguienteCursor, hayMas);
+    }
+
+    private String vacioANull(String valor) {
+        return (valor == null || valor.isBlank()) ? null : valor;
+    }
+
     // OBTENER PRODUCTOS POR VENDEDOR
     public List<Producto> obtenerProductosPorVendedor(Long vendedorId) {
         return productoRepository.findByVendedorId(vendedorId);
     }
 
-    // OBTENER PRODUCTO POR ID
+    // OBTENER PRODUCTO POR ID (a través de la caché; no modificar la instancia devuelta)
     public Producto obtenerPorId(Long id) {
+        Producto producto = catalogoCache.producto(id, () -> productoRepository.findById(id).orElse(null));
+        if (producto == null) {
+            throw new RuntimeException("Producto no encontrado");
+        }
+        return producto;
+    }
+
+    // OBTENER VARIOS PRODUCTOS (mismo orden que ids, null donde no existe)
+    public List<Producto> obtenerPorIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > loteMaximo) {
+            throw new RuntimeException("Se permiten como máximo " + loteMaximo + " IDs por consulta");
+        }
+        return catalogoCache.productos(ids, productoRepository::buscarPorIds);
+    }
+
+    // OBTENER PRODUCTO PARA EDITARLO (lectura directa de la BD, sin caché)
+    public Producto obtenerParaEdicion(Long id) {
         return productoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
 
     // ACTUALIZAR PRODUCTO
     public Producto actualizarProducto(Long id, Producto productoActualizado) {
+        return actualizarProducto(id, productoActualizado, ImagenUtil.imagenesDe(obtenerParaEdicion(id)));
+    }
+
+    // ACTUALIZAR PRODUCTO CONOCIENDO SUS IMÁGENES ANTERIORES. Con open-in-view el controlador edita la misma
+    // instancia que devuelve findById: las URLs anteriores las toma él antes de tocarla, si no se compararían
+    // las nuevas consigo mismas y nunca se liberaría nada
+    public Producto actualizarProducto(Long id, Producto productoActualizado, List<String> imagenesAnteriores) {
         return productoRepository.findById(id)
                 .map(producto -> {
                     producto.setNombre(productoActualizado.getNombre());
@@ -99,6 +221,9 @@ public class ProductoService {
                     producto.setTipo(productoActualizado.getTipo());
                     producto.setUbicacion(productoActualizado.getUbicacion());
                     producto.setDisponibilidad(productoActualizado.getDisponibilidad());
+                    if (!Objects.equals(imagenesAnteriores, ImagenUtil.imagenesDe(productoActualizado))) {
+                        producto.setMiniaturaUrl(null); // la nueva se registra cuando ImagenService termine
+                    }
                     producto.setImagenUrl1(productoActualizado.getImagenUrl1());
                     producto.setImagenUrl2(productoActualizado.getImagenUrl2());
                     producto.setImagenUrl3(productoActualizado.getImagenUrl3());
@@ -106,17 +231,42 @@ public class ProductoService {
                     producto.setImagenUrl5(productoActualizado.getImagenUrl5());
                     producto.setCantidad(productoActualizado.getCantidad());
                     producto.setEstadoProducto(productoActualizado.getEstadoProducto());
-                    return productoRepository.save(producto);
+                    Producto guardado = productoRepository.save(producto);
+                    List<String> anteriores = new ArrayList<>(imagenesAnteriores);
+                    anteriores.removeAll(ImagenUtil.imagenesDe(guardado));
+                    almacenArchivosService.liberar(anteriores);
+                    eventPublisher.publishEvent(PublicacionModificadaEvent.de(guardado));
+                    return guardado;
                 })
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
 
+    // REGISTRAR VARIANTES DE IMAGEN (llamado por ImagenService al terminar de procesar)
+    public void registrarVariantes(Long id, Map<String, VariantesImagen> nuevas) {
+        productoRepository.findById(id).ifPresent(producto -> {
+            List<String> imagenes = ImagenUtil.imagenesDe(producto);
+            Map<String, VariantesImagen> variantes = ImagenUtil.leerVariantes(producto.getImagenesVariantes());
+            variantes.putAll(nuevas);
+            variantes.keySet().retainAll(imagenes); // descarta las de imágenes reemplazadas
+            VariantesImagen primera = imagenes.isEmpty() ? null : variantes.get(imagenes.get(0));
+
+            String variantesJson = ImagenUtil.escribirVariantes(variantes);
+            String miniatura = primera != null ? primera.miniatura() : null;
+            productoRepository.actualizarVariantes(id, variantesJson, miniatura);
+            producto.setImagenesVariantes(variantesJson);
+            producto.setMiniaturaUrl(miniatura);
+            eventPublisher.publishEvent(PublicacionModificadaEvent.de(producto));
+        });
+    }
+
     // CAMBIAR ESTADO DE PRODUCTO
     public Producto cambiarEstadoProducto(Long id, String nuevoEstado) {
         return productoRepository.findById(id)
                 .map(producto -> {
                     producto.setEstado(nuevoEstado);
-                    return productoRepository.save(producto);
+                    Producto guardado = productoRepository.save(producto);
+                    eventPublisher.publishEvent(PublicacionModificadaEvent.de(guardado));
+                    return guardado;
                 })
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
@@ -134,7 +284,9 @@ public class ProductoService {
         
         // 1. Borrar mensajes relacionados
         try {
+            List<String> conversaciones = mensajeRepository.buscarConversacionesPorProducto(id);
             mensajeRepository.deleteByProductoId(id);
+            conversaciones.forEach(conversacionService::reconstruir);
             System.out.println("✅ Mensajes eliminados para producto: " + id);
         } catch (Exception e) {
             System.err.println("⚠️ Error borrando mensajes: " + e.getMessage());
@@ -180,25 +332,57 @@ public class ProductoService {
             System.err.println("⚠️ Error borrando historial: " + e.getMessage());
         }
         
-        // 7. Finalmente borrar el producto
+        // 7. Finalmente borrar el producto y liberar sus imágenes y su QR
         productoRepository.delete(producto);
+        almacenArchivosService.liberar(ImagenUtil.imagenesDe(producto));
+        if (producto.getDeunaQrUrl() != null) {
+            almacenArchivosService.liberar(producto.getDeunaQrUrl());
+        }
+        eventPublisher.publishEvent(PublicacionModificadaEvent.productoEliminado(id));
         System.out.println("✅ Producto eliminado exitosamente: " + id);
     }
 
-    // FILTRAR PRODUCTOS POR PRECIO
-    public List<Producto> filtrarPorPrecio(Double precioMin, Double precioMax) {
-        List<Producto> productosActivos = obtenerProductosActivos();
-        return productosActivos.stream()
-                .filter(p -> p.getPrecio() >= precioMin && p.getPrecio() <= precioMax)
-                .toList();
+    // FILTRAR PRODUCTOS POR PRECIO (en la BD, paginado)
+    public List<Producto> filtrarPorPrecio(Double precioMin, Double precioMax, Integer pagina, Integer limite) {
+        return productoRepository.buscarPorRangoPrecio(precioMin, precioMax, paginaSolicitada(pagina, limite));
+    }
+
+    // BUSCAR PRODUCTOS POR NOMBRE/DESCRIPCIÓN (índice FULLTEXT, ordenado por relevancia)
+    public List<Producto> buscarPorNombre(String nombre, Integer pagina, Integer limite) {
+        if (nombre == null || nombre.isBlank()) {
+            return List.of();
+        }
+        Pageable pageable = paginaSolicitada(pagina, limite);
+
+        String consulta = construirConsultaTextoCompleto(nombre);
+        if (consulta != null && textoCompletoDisponible) {
+            try {
+                return productoRepository.buscarTextoCompleto(consulta, pageable);
+            } catch (Exception e) {
+                // Fallo puntual (p. ej. consulta rechazada por MySQL): solo esta búsqueda cae a LIKE
+                System.err.println("⚠️ Búsqueda FULLTEXT falló, se usará LIKE: " + e.getMessage());
+            }
+        }
+
+        return productoRepository.buscarPorNombre(nombre.trim(), pageable);
+    }
+
+    // Convierte el texto del usuario en una consulta BOOLEAN MODE: cada palabra obligatoria y con prefijo.
+    // Las palabras más cortas que innodb_ft_min_token_size (3) no están indexadas y se descartan.
+    private String construirConsultaTextoCompleto(String texto) {
+        StringBuilder consulta = new StringBuilder();
+        for (String palabra : texto.replaceAll("[+\\-<>()~*\"@]", " ").trim().split("\\s+")) {
+            if (palabra.length() >= 3) {
+                consulta.append('+').append(palabra).append("* ");
+            }
+        }
+        return consulta.length() > 0 ? consulta.toString().trim() : null;
     }
 
-    // BUSCAR PRODUCTOS POR NOMBRE
-    public List<Producto> buscarPorNombre(String nombre) {
-        List<Producto> productosActivos = obtenerProductosActivos();
-        return productosActivos.stream()
-                .filter(p -> p.getNombre().toLowerCase().contains(nombre.toLowerCase()))
-                .toList();
+    private Pageable paginaSolicitada(Integer pagina, Integer limite) {
+        int numero = (pagina == null || pagina < 0) ? 0 : pagina;
+        int tamanio = (limite == null || limite < 1) ? limitePorDefecto : Math.min(limite, limiteMaximo);
+        return PageRequest.of(numero, tamanio);
     }
 
     // OBTENER TODOS LOS PRODUCTOS (PARA ADMIN/MODERADOR)
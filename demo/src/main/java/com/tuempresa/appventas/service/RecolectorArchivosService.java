@@ -0,0 +1,377 @@
+package com.tuempresa.appventas.service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.tuempresa.appventas.model.Archivo;
+import com.tuempresa.appventas.repository.ArchivoRepository;
+import com.tuempresa.appventas.repository.MensajeRepository;
+import com.tuempresa.appventas.repository.PedidoRepository;
+import com.tuempresa.appventas.repository.ProductoRepository;
+import com.tuempresa.appventas.repository.ServicioRepository;
+import com.tuempresa.appventas.repository.UsuarioRepository;
+import com.tuempresa.appventas.util.FiltroBloom;
+import com.tuempresa.appventas.util.ImagenUtil;
+
+// Recolector de archivos huérfanos en uploads/ (marcar y barrer).
+// Marcar: se recorren por lotes todas las URLs que guarda la BD (imágenes de productos y servicios, QR de Deuna,
+// imágenes de mensajes, comprobantes) y se guardan en un filtro de Bloom. Barrer: se recorre uploads/ y se
+// borra lo que no está en el filtro y es más viejo que el período de gracia. Un falso positivo del filtro solo
+// deja un archivo sin borrar hasta la próxima pasada; nunca se borra algo referenciado.
+// Las variantes (_miniatura, _mediana, _grande) viven mientras viva su original. El contador de referencias de
+// la tabla archivos es solo una pista: lo que decide es el recorrido de la BD.
+@Service
+public class RecolectorArchivosService {
+
+    private static final String[] SUFIJOS_VARIANTE = { "_miniatura", "_mediana", "_grande" };
+    private static final int MAXIMO_EJEMPLOS = 20;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private MensajeRepository mensajeRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private ArchivoRepository archivoRepository;
+
+    @Value("${app.uploads.gc.habilitado:true}")
+    private boolean habilitado;
+
+    // En modo simulación solo se informa qué se borraría
+    @Value("${app.uploads.gc.simulacion:false}")
+    private boolean simulacion;
+
+    // Protege subidas cuyo registro en la BD todavía no se confirmó (y variantes recién generadas)
+    @Value("${app.uploads.gc.gracia-horas:24}")
+    private long graciaHoras;
+
+    // Límite de operaciones de disco (lecturas de atributos y borrados) por segundo
+    @Value("${app.uploads.gc.operaciones-por-segundo:200}")
+    private int operacionesPorSegundo;
+
+    @Value("${app.uploads.gc.lote:1000}")
+    private int lote;
+
+    private final Path raiz = Paths.get(System.getProperty("user.dir"), "uploads").toAbsolutePath().normalize();
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+
+    @Scheduled(cron = "${app.uploads.gc.cron:0 30 3 * * *}")
+    public void recolectarProgramado() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            Map<String, Object> reporte = recolectar(simulacion);
+            System.out.println("🧹 Recolección de archivos huérfanos: " + reporte);
+        } catch (Exception e) {
+            System.err.println("❌ Error en la recolección de archivos huérfanos: " + e.getMessage());
+        }
+    }
+
+    // RECOLECTAR (devuelve el reporte; con simular=true no borra nada)
+    public Map<String, Object> recolectar(boolean simular) throws IOException {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            throw new RuntimeException("Ya hay una recolección de archivos en curso");
+        }
+        try {
+            long inicio = System.currentTimeMillis();
+            Reporte reporte = new Reporte();
+            reporte.simulacion = simular;
+
+            FiltroBloom referencias = marcar();
+            reporte.referencias = referencias.getElementos();
+            reporte.memoriaFiltro = referencias.getBytes();
+            if (referencias.getElementos() == 0 && !simular) {
+                // BD vacía o mal configurada: no se borra nada a ciegas
+                reporte.simulacion = true;
+                reporte.aviso = "No se encontraron referencias en la BD; se omite el borrado";
+            }
+
+            if (Files.isDirectory(raiz)) {
+                barrer(referencias, reporte, inicio - graciaHoras * 3600_000L);
+            }
+            reporte.duracionMs = System.currentTimeMillis() - inicio;
+            return reporte.aMapa();
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    // ---------- MARCAR ----------
+
+    private FiltroBloom marcar() {
+        long esperados = productoRepository.count() * 6 + servicioRepository.count() * 6
+                + mensajeRepository.count() + pedidoRepository.count() + usuarioRepository.count();
+        FiltroBloom filtro = new FiltroBloom(esperados, 0.01);
+        Consumer<String> agregar = url -> {
+            String clave = claveDeUrl(url);
+            if (clave != null) {
+                filtro.agregar(clave);
+            }
+        };
+
+        recorrer(desde -> productoRepository.buscarUrlsArchivos(desde, PageRequest.of(0, lote)), fila -> {
+            for (int i = 1; i < fila.length; i++) {
+                agregar.accept((String) fila[i]);
+            }
+        });
+        recorrer(desde -> servicioRepository.buscarUrlsArchivos(desde, PageRequest.of(0, lote)), fila -> {
+            ImagenUtil.leerImagenes((String) fila[1]).forEach(agregar);
+            agregar.accept((String) fila[2]);
+        });
+        recorrer(desde -> mensajeRepository.buscarUrlsArchivos(desde, PageRequest.of(0, lote)), fila -> agregar.accept((String) fila[1]));
+        recorrer(desde -> pedidoRepository.buscarUrlsArchivos(desde, PageRequest.of(0, lote)), fila -> agregar.accept((String) fila[1]));
+        recorrer(desde -> usuarioRepository.buscarUrlsArchivos(desde, PageRequest.of(0, lote)), fila -> agregar.accept((String) fila[1]));
+        return filtro;
+    }
+
+    // Keyset por id: cada lote empieza después del último id del lote anterior (fila[0])
+    private void recorrer(Function<Long, List<Object[]>> buscarLote, Consumer<Object[]> procesar) {
+        long desde = 0;
+        List<Object[]> filas;
+        do {
+            filas = buscarLote.apply(desde);
+            for (Object[] fila : filas) {
+                procesar.accept(fila);
+                desde = ((Number) fila[0]).longValue();
+            }
+        } while (filas.size() == lote);
+    }
+
+    // "/uploads/blobs/ab/cd/<hash>.jpg" (o con host delante) -> "blobs/ab/cd/<hash>"
+    private String claveDeUrl(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        int indice = url.indexOf("/uploads/");
+        if (indice < 0) {
+            return null;
+        }
+        String relativa = url.substring(indice + "/uploads/".length());
+        int fin = relativa.length();
+        for (char separador : new char[] { '?', '#' }) {
+            int posicion = relativa.indexOf(separador);
+            if (posicion >= 0) {
+                fin = Math.min(fin, posicion);
+            }
+        }
+        return sinExtension(relativa.substring(0, fin));
+    }
+
+    private String sinExtension(String ruta) {
+        int punto = ruta.lastIndexOf('.');
+        return punto > ruta.lastIndexOf('/') ? ruta.substring(0, punto) : ruta;
+    }
+
+    private String sinSufijoVariante(String clave) {
+        for (String sufijo : SUFIJOS_VARIANTE) {
+            if (clave.endsWith(sufijo)) {
+                return clave.substring(0, clave.length() - sufijo.length());
+            }
+        }
+        return clave;
+    }
+
+    // ---------- BARRER ----------
+
+    private void barrer(FiltroBloom referencias, Reporte reporte, long limiteGracia) throws IOException {
+        Limitador limitador = new Limitador(operacionesPorSegundo);
+        Files.walkFileTree(raiz, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path directorio, BasicFileAttributes atributos) {
+                String nombre = directorio.getFileName().toString();
+                if (!directorio.equals(raiz) && nombre.startsWith(".") && !nombre.equals(".tmp")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path archivo, BasicFileAttributes atributos) throws IOException {
+                limitador.esperar();
+                if (!atributos.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                reporte.archivosRevisados++;
+                String relativa = raiz.relativize(archivo).toString().replace('\\', '/');
+                boolean reciente = atributos.lastModifiedTime().toMillis() > limiteGracia;
+
+                // Restos de subidas interrumpidas
+                if (relativa.startsWith(".tmp/")) {
+                    if (!reciente && relativa.endsWith(".part")) {
+                        reporte.temporales++;
+                        if (!reporte.simulacion) {
+                            Files.deleteIfExists(archivo);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                String clave = sinExtension(relativa);
+                if (referencias.contiene(clave) || referencias.contiene(sinSufijoVariante(clave))) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (reciente) {
+                    reporte.omitidosPorGracia++;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                Optional<Archivo> registro = relativa.startsWith("blobs/") ? registroDe(archivo) : Optional.empty();
+                if (registro.isPresent() && registro.get().getFechaActualizacion().getTime() > limiteGracia) {
+                    // El mismo contenido se volvió a subir hace poco (deduplicado): su dueño puede no estar guardado aún
+                    reporte.omitidosPorGracia++;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                reporte.huerfanos++;
+                reporte.bytesHuerfanos += atributos.size();
+                if (reporte.ejemplos.size() < MAXIMO_EJEMPLOS) {
+                    reporte.ejemplos.add("/uploads/" + relativa);
+                }
+                boolean esOriginal = clave.equals(sinSufijoVariante(clave));
+                if (registro.isPresent() && esOriginal && registro.get().getReferencias() > 0) {
+                    reporte.referenciasDesincronizadas++;
+                }
+                if (!reporte.simulacion) {
+                    limitador.esperar();
+                    if (Files.deleteIfExists(archivo)) {
+                        reporte.eliminados++;
+                        reporte.bytesLiberados += atributos.size();
+                    }
+                    if (registro.isPresent() && esOriginal) {
+                        archivoRepository.delete(registro.get());
+                        reporte.registrosEliminados++;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path archivo, IOException e) {
+                System.err.println("⚠️ No se pudo revisar " + archivo + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            // Los directorios de blobs (ab/cd) que quedan vacíos también se eliminan
+            @Override
+            public FileVisitResult postVisitDirectory(Path directorio, IOException e) throws IOException {
+                if (!reporte.simulacion && directorio.startsWith(raiz.resolve("blobs")) && !directorio.equals(raiz.resolve("blobs"))) {
+                    try (var contenido = Files.list(directorio)) {
+                        if (contenido.findAny().isEmpty()) {
+                            Files.deleteIfExists(directorio);
+                            reporte.directoriosEliminados++;
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Registro en la tabla archivos a partir del nombre (<hash>.<ext> o <hash>_<variante>.<ext>)
+    private Optional<Archivo> registroDe(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        return nombre.length() >= 64 ? archivoRepository.findByHash(nombre.substring(0, 64)) : Optional.empty();
+    }
+
+    // Reparte las operaciones de disco en el tiempo para no competir con las peticiones
+    private static class Limitador {
+
+        private final int porSegundo;
+        private final long inicio = System.nanoTime();
+        private long operaciones = 0;
+
+        Limitador(int porSegundo) {
+            this.porSegundo = porSegundo;
+        }
+
+        void esperar() throws IOException {
+            if (porSegundo <= 0) {
+                return;
+            }
+            operaciones++;
+            long esperado = operaciones * 1_000_000_000L / porSegundo;
+            long transcurrido = System.nanoTime() - inicio;
+            if (esperado > transcurrido) {
+                try {
+                    Thread.sleep((esperado - transcurrido) / 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Recolección interrumpida");
+                }
+            }
+        }
+    }
+
+    private static class Reporte {
+        boolean simulacion;
+        String aviso;
+        long referencias;
+        long memoriaFiltro;
+        long archivosRevisados;
+        long huerfanos;
+        long bytesHuerfanos;
+        long omitidosPorGracia;
+        long eliminados;
+        long bytesLiberados;
+        long registrosEliminados;
+        long referenciasDesincronizadas;
+        long temporales;
+        long directoriosEliminados;
+        long duracionMs;
+        final List<String> ejemplos = new ArrayList<>();
+
+        Map<String, Object> aMapa() {
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("simulacion", simulacion);
+            if (aviso != null) {
+                mapa.put("aviso", aviso);
+            }
+            mapa.put("referencias", referencias);
+            mapa.put("memoriaFiltroBytes", memoriaFiltro);
+            mapa.put("archivosRevisados", archivosRevisados);
+            mapa.put("huerfanos", huerfanos);
+            mapa.put("bytesHuerfanos", bytesHuerfanos);
+            mapa.put("omitidosPorGracia", omitidosPorGracia);
+            mapa.put("eliminados", eliminados);
+            mapa.put("bytesLiberados", bytesLiberados);
+            mapa.put("registrosEliminados", registrosEliminados);
+            mapa.put("referenciasDesincronizadas", referenciasDesincronizadas);
+            mapa.put("temporales", temporales);
+            mapa.put("directoriosEliminados", directoriosEliminados);
+            mapa.put("duracionMs", duracionMs);
+            mapa.put("ejemplos", ejemplos);
+            return mapa;
+        }
+    }
+}
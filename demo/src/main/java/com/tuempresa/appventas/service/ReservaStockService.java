@@ -0,0 +1,120 @@
+package com.tuempresa.appventas.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.tuempresa.appventas.event.StockModificadoEvent;
+import com.tuempresa.appventas.model.DetallePedido;
+import com.tuempresa.appventas.repository.DetallePedidoRepository;
+import com.tuempresa.appventas.repository.PedidoRepository;
+
+// Reserva de stock para el checkout.
+// El stock se descuenta en la base con UPDATE condicionales (cantidad >= pedida), todos en un solo lote JDBC
+// y siempre en orden de id de producto: dos compras simultáneas del mismo producto nunca venden más de lo que
+// hay, y dos carritos con los mismos productos toman los bloqueos de fila en el mismo orden (sin deadlocks).
+// Los pedidos por transferencia guardan la reserva hasta reservaExpira; al cancelarse (a mano o por vencimiento)
+// el stock se devuelve.
+@Service
+public class ReservaStockService {
+
+    private static final String DESCONTAR = "UPDATE productos SET cantidad = cantidad - ? WHERE id = ? AND cantidad >= ?";
+    private static final String DEVOLVER = "UPDATE productos SET cantidad = cantidad + ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private DetallePedidoRepository detallePedidoRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // RESERVAR (productoId -> cantidad). Se llama dentro de la transacción del pedido:
+    // si algún producto no alcanza se lanza la excepción y se deshace todo, incluidas las demás reservas
+    @Transactional
+    public void reservar(Map<Long, Integer> cantidades) {
+        TreeMap<Long, Integer> ordenadas = agrupar(cantidades);
+        if (ordenadas.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>();
+        ordenadas.forEach((productoId, cantidad) -> filas.add(new Object[] { cantidad, productoId, cantidad }));
+
+        int[] resultados = jdbcTemplate.batchUpdate(DESCONTAR, filas);
+        List<Long> sinStock = new ArrayList<>();
+        List<Long> sinConfirmar = new ArrayList<>();
+        for (int i = 0; i < resultados.length; i++) {
+            // Por id solo 1 confirma la reserva y 0 la rechaza. Cualquier otro valor (SUCCESS_NO_INFO,
+            // EXECUTE_FAILED) no dice si se descontó: no se puede volver a comprobar con un SELECT
+            // (no se sabe cuánto había antes), así que se deshace todo el pedido
+            if (resultados[i] == 0) {
+                sinStock.add((Long) filas.get(i)[1]);
+            } else if (resultados[i] != 1) {
+                sinConfirmar.add((Long) filas.get(i)[1]);
+            }
+        }
+        if (!sinConfirmar.isEmpty()) {
+            System.err.println("⚠️ El driver no confirmó la reserva de los productos " + sinConfirmar +
+                    " (resultados del lote: " + Arrays.toString(resultados) + ")");
+            throw new RuntimeException("No se pudo confirmar la reserva de stock, intenta de nuevo");
+        }
+        if (!sinStock.isEmpty()) {
+            throw new RuntimeException("Stock insuficiente para los productos " + sinStock);
+        }
+        eventPublisher.publishEvent(new StockModificadoEvent(ordenadas.keySet()));
+    }
+
+    // LIBERAR (devolver al stock lo reservado)
+    @Transactional
+    public void liberar(Map<Long, Integer> cantidades) {
+        TreeMap<Long, Integer> ordenadas = agrupar(cantidades);
+        if (ordenadas.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>();
+        ordenadas.forEach((productoId, cantidad) -> filas.add(new Object[] { cantidad, productoId }));
+        jdbcTemplate.batchUpdate(DEVOLVER, filas);
+    }
+
+    // CANCELAR PEDIDO Y DEVOLVER SU STOCK.
+    // El cambio de estado es condicional: si dos cancelaciones (o el barrido de vencidas y el comprador)
+    // llegan a la vez, solo una devuelve el stock
+    @Transactional
+    public boolean cancelar(Long pedidoId, List<String> estadosPermitidos) {
+        if (pedidoRepository.cancelar(pedidoId, estadosPermitidos) == 0) {
+            return false;
+        }
+        List<DetallePedido> detalles = detallePedidoRepository.findByPedidoId(pedidoId);
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        for (DetallePedido detalle : detalles) {
+            if (detalle.getProducto() != null) {
+                cantidades.merge(detalle.getProducto().getId(), detalle.getCantidad(), Integer::sum);
+            }
+        }
+        liberar(cantidades);
+        eventPublisher.publishEvent(new StockModificadoEvent(cantidades.keySet()));
+        return true;
+    }
+
+    private TreeMap<Long, Integer> agrupar(Map<Long, Integer> cantidades) {
+        TreeMap<Long, Integer> ordenadas = new TreeMap<>();
+        cantidades.forEach((productoId, cantidad) -> {
+            if (productoId != null && cantidad != null && cantidad > 0) {
+                ordenadas.merge(productoId, cantidad, Integer::sum);
+            }
+        });
+        return ordenadas;
+    }
+}
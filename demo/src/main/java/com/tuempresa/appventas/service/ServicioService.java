@@ -1,25 +1,28 @@
 package com.tuempresa.appventas.service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tuempresa.appventas.dto.ServicioTarjeta;
+import com.tuempresa.appventas.dto.VariantesImagen;
+import com.tuempresa.appventas.event.PublicacionModificadaEvent;
 import com.tuempresa.appventas.model.Servicio;
 import com.tuempresa.appventas.repository.FavoritoRepository;
 import com.tuempresa.appventas.repository.MensajeRepository;
 import com.tuempresa.appventas.repository.ServicioRepository;
 import com.tuempresa.appventas.repository.UsuarioRepository;
+import com.tuempresa.appventas.util.ImagenUtil;
 
 @Service
 public class ServicioService {
@@ -32,6 +35,9 @@ public class ServicioService {
     
     @Autowired
     private MensajeRepository mensajeRepository;
+
+    @Autowired
+    private ConversacionService conversacionService;
     
     @Autowired
     private FavoritoRepository favoritoRepository;
@@ -39,7 +45,18 @@ public class ServicioService {
     @Autowired
     private IncidenciaService incidenciaService;
 
-    private final String UPLOAD_DIR = "uploads/servicios/";
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogoCacheService catalogoCache;
+
+    @Autowired
+    private AlmacenArchivosService almacenArchivosService;
+
+    @Value("${app.catalogo.lote-maximo:200}")
+    private int loteMaximo;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Para el catálogo público: solo servicios activos y visibles
@@ -47,12 +64,34 @@ public class ServicioService {
         return servicioRepository.findByActivoTrueAndEstado("ACTIVO");
     }
 
+    // Tarjetas del catálogo público (proyección liviana, sin la entidad completa)
+    public List<ServicioTarjeta> obtenerTarjetasActivas() {
+        return servicioRepository.buscarTarjetasActivas();
+    }
+
     // Para el perfil del usuario: todos sus servicios (activos e ocultos)
     public List<Servicio> obtenerTodosLosServiciosParaPerfil() {
         return servicioRepository.findByActivoTrue();
     }
 
+    // Lectura a través de la caché; no modificar la instancia devuelta
     public Optional<Servicio> obtenerServicioPorId(Long id) {
+        return Optional.ofNullable(catalogoCache.servicio(id, () -> servicioRepository.findByIdAndActivoTrue(id).orElse(null)));
+    }
+
+    // Varios servicios a la vez (mismo orden que ids, null donde no existe o no está activo)
+    public List<Servicio> obtenerServiciosPorIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.size() > loteMaximo) {
+            throw new RuntimeException("Se permiten como máximo " + loteMaximo + " IDs por consulta");
+        }
+        return catalogoCache.servicios(ids, servicioRepository::buscarActivosPorIds);
+    }
+
+    // Lectura directa de la BD para editar el servicio
+    public Optional<Servicio> obtenerServicioParaEdicion(Long id) {
         return servicioRepository.findByIdAndActivoTrue(id);
     }
 
@@ -108,6 +147,7 @@ public class ServicioService {
             System.err.println("Error al detectar contenido prohibido: " + e.getMessage());
         }
 
+        eventPublisher.publishEvent(PublicacionModificadaEvent.de(servicioGuardado));
         return servicioGuardado;
     }
 
@@ -129,14 +169,31 @@ public class ServicioService {
             servicio.setHorario(servicioActualizado.getHorario());
             servicio.setDuracion(servicioActualizado.getDuracion());
             servicio.setCondiciones(servicioActualizado.getCondiciones());
+            if (servicioActualizado.getDeunaNumero() != null) {
+                servicio.setDeunaNumero(servicioActualizado.getDeunaNumero());
+            }
+
+            // Nuevo QR de Deuna (ya guardado en el almacén): se libera el anterior
+            String qrNuevo = servicioActualizado.getDeunaQrUrl();
+            if (qrNuevo != null && !qrNuevo.equals(servicio.getDeunaQrUrl())) {
+                String qrAnterior = servicio.getDeunaQrUrl();
+                servicio.setDeunaQrUrl(qrNuevo);
+                if (qrAnterior != null) {
+                    almacenArchivosService.liberar(qrAnterior);
+                }
+            }
 
             // Si hay nuevas imágenes, actualizarlas
             if (imagenes != null && !imagenes.isEmpty()) {
+                List<String> anteriores = ImagenUtil.imagenesDe(servicio);
                 List<String> urlImagenes = guardarImagenes(imagenes);
                 servicio.setImagenes(objectMapper.writeValueAsString(urlImagenes));
+                servicio.setMiniaturaUrl(null); // la nueva se registra cuando ImagenService termine
+                anteriores.removeAll(urlImagenes);
+                almacenArchivosService.liberar(anteriores);
             }
 
-            return servicioRepository.save(servicio);
+            return guardarCambios(servicio);
         }
 
         throw new RuntimeException("Servicio no encontrado con ID: " + id);
@@ -149,7 +206,7 @@ public class ServicioService {
         if (servicioExistente.isPresent()) {
             Servicio servicio = servicioExistente.get();
             servicio.setEstado(nuevoEstado);
-            return servicioRepository.save(servicio);
+            return guardarCambios(servicio);
         }
 
         throw new RuntimeException("Servicio no encontrado con ID: " + id);
@@ -161,7 +218,7 @@ public class ServicioService {
         if (servicio.isPresent()) {
             Servicio servicioAEliminar = servicio.get();
             servicioAEliminar.setActivo(false);
-            servicioRepository.save(servicioAEliminar);
+            guardarCambios(servicioAEliminar);
             return true;
         }
 
@@ -176,7 +233,9 @@ public class ServicioService {
         
         // 1. Borrar mensajes relacionados
         try {
+            List<String> conversaciones = mensajeRepository.buscarConversacionesPorServicio(id);
             mensajeRepository.deleteByServicioId(id);
+            conversaciones.forEach(conversacionService::reconstruir);
             System.out.println("✅ Mensajes eliminados para servicio: " + id);
         } catch (Exception e) {
             System.err.println("⚠️ Error borrando mensajes: " + e.getMessage());
@@ -190,29 +249,48 @@ public class ServicioService {
             System.err.println("⚠️ Error borrando favoritos: " + e.getMessage());
         }
         
-        // 3. Finalmente borrar el servicio
+        // 3. Finalmente borrar el servicio y liberar sus imágenes y su QR
         servicioRepository.delete(servicio);
+        almacenArchivosService.liberar(ImagenUtil.imagenesDe(servicio));
+        if (servicio.getDeunaQrUrl() != null) {
+            almacenArchivosService.liberar(servicio.getDeunaQrUrl());
+        }
+        eventPublisher.publishEvent(PublicacionModificadaEvent.servicioEliminado(id));
         System.out.println("✅ Servicio eliminado exitosamente: " + id);
     }
 
-    private List<String> guardarImagenes(List<MultipartFile> imagenes) throws IOException {
-        List<String> urlImagenes = new ArrayList<>();
+    // Guardar cambios de un servicio existente y notificar a las vistas derivadas del catálogo
+    public Servicio guardarCambios(Servicio servicio) {
+        Servicio guardado = servicioRepository.save(servicio);
+        eventPublisher.publishEvent(PublicacionModificadaEvent.de(guardado));
+        return guardado;
+    }
 
-        // Crear directorio si no existe
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
+    // Registrar variantes de imagen (llamado por ImagenService al terminar de procesar)
+    public void registrarVariantes(Long id, Map<String, VariantesImagen> nuevas) {
+        servicioRepository.findById(id).ifPresent(servicio -> {
+            List<String> urls = ImagenUtil.imagenesDe(servicio);
+            Map<String, VariantesImagen> variantes = ImagenUtil.leerVariantes(servicio.getImagenesVariantes());
+            variantes.putAll(nuevas);
+            variantes.keySet().retainAll(urls); // descarta las de imágenes reemplazadas
+            VariantesImagen primera = urls.isEmpty() ? null : variantes.get(urls.get(0));
+
+            String variantesJson = ImagenUtil.escribirVariantes(variantes);
+            String miniatura = primera != null ? primera.miniatura() : null;
+            servicioRepository.actualizarVariantes(id, variantesJson, miniatura);
+            servicio.setImagenesVariantes(variantesJson);
+            servicio.setMiniaturaUrl(miniatura);
+            eventPublisher.publishEvent(PublicacionModificadaEvent.de(servicio));
+        });
+    }
 
+    private List<String> guardarImagenes(List<MultipartFile> imagenes) throws IOException {
+        List<String> urlImagenes = new ArrayList<>();
         for (MultipartFile imagen : imagenes) {
             if (!imagen.isEmpty()) {
-                String nombreArchivo = UUID.randomUUID().toString() + "_" + imagen.getOriginalFilename();
-                Path rutaArchivo = uploadPath.resolve(nombreArchivo);
-                Files.copy(imagen.getInputStream(), rutaArchivo);
-                urlImagenes.add("/uploads/servicios/" + nombreArchivo);
+                urlImagenes.add(almacenArchivosService.guardar(imagen));
             }
         }
-
         return urlImagenes;
     }
 }
\ No newline at end of file
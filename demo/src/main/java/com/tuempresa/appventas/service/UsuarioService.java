@@ -10,6 +10,7 @@ import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.tuempresa.appventas.model.Usuario;
 import com.tuempresa.appventas.repository.UsuarioRepository;
@@ -75,6 +76,7 @@ public class UsuarioService {
     }
 
     // REGISTRAR USUARIO
+    @Transactional
     public Usuario registrarUsuario(Usuario usuario) {
         if (usuarioRepository.findByEmail(usuario.getEmail()) != null) {
             throw new RuntimeException("El email ya está registrado");
@@ -111,16 +113,12 @@ public class UsuarioService {
 
         Usuario usuarioGuardado = usuarioRepository.save(usuario);
 
-        try {
-            emailService.enviarEmailVerificacion(
-                    usuario.getEmail(),
-                    usuario.getNombre(),
-                    token
-            );
-        } catch (Exception e) {
-            System.err.println("⚠️ Usuario creado pero no se pudo enviar email: " + e.getMessage());
-            System.out.println(">>> TOKEN MANUAL (USAR SI EL EMAIL FALLA): " + token);
-        }
+        // El correo se encola en la misma transacción (el envío SMTP va aparte, con reintentos)
+        emailService.enviarEmailVerificacion(
+                usuario.getEmail(),
+                usuario.getNombre(),
+                token
+        );
 
         return usuarioGuardado;
     }
@@ -178,6 +176,7 @@ public class UsuarioService {
     }
 
     // Verificar email con token
+    @Transactional
     public Usuario verificarEmail(String token) {
         Usuario usuario = usuarioRepository.findByVerificationToken(token);
 
@@ -197,16 +196,13 @@ public class UsuarioService {
 
         Usuario usuarioVerificado = usuarioRepository.save(usuario);
 
-        try {
-            emailService.enviarEmailBienvenida(usuario.getEmail(), usuario.getNombre());
-        } catch (Exception e) {
-            System.err.println("⚠️ No se pudo enviar email de bienvenida");
-        }
+        emailService.enviarEmailBienvenida(usuario.getEmail(), usuario.getNombre());
 
         return usuarioVerificado;
     }
 
     // Reenviar email de verificación
+    @Transactional
     public void reenviarEmailVerificacion(String email) {
         Usuario usuario = usuarioRepository.findByEmail(email);
 
@@ -299,6 +295,7 @@ public class UsuarioService {
     }
 
     // Solicitar recuperación de contraseña
+    @Transactional
     public void solicitarRecuperacionPassword(String email) {
         Usuario usuario = usuarioRepository.findByEmail(email);
 
@@ -353,6 +350,7 @@ public class UsuarioService {
     }
 
     // Restablecer contraseña
+    @Transactional
     public void restablecerPassword(String email, String codigo, String nuevaPassword) {
         Usuario usuario = usuarioRepository.findByEmail(email);
 
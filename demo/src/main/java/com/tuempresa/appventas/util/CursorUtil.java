@@ -0,0 +1,37 @@
+package com.tuempresa.appventas.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+// Cursor opaco para paginación por clave (fecha, id).
+// Se codifica en Base64 URL-safe para que el cliente lo devuelva tal cual.
+public final class CursorUtil {
+
+    private CursorUtil() {}
+
+    public record Cursor(Date fecha, Long id) {}
+
+    public static String codificar(Date fecha, Long id) {
+        if (fecha == null || id == null) {
+            return null;
+        }
+        String crudo = fecha.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(crudo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String crudo = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = crudo.indexOf(':');
+            long millis = Long.parseLong(crudo.substring(0, separador));
+            long id = Long.parseLong(crudo.substring(separador + 1));
+            return new Cursor(new Date(millis), id);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Cursor inválido");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tuempresa.appventas.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+// Conjunto aproximado de cadenas en pocos bits por elemento (~10 bits para 1% de falsos positivos).
+// Nunca da falsos negativos: si contiene() devuelve false, la cadena seguro no se agregó.
+public final class FiltroBloom {
+
+    private final BitSet bits;
+    private final int cantidadBits;
+    private final int cantidadHashes;
+    private long elementos = 0;
+
+    public FiltroBloom(long elementosEsperados, double tasaFalsosPositivos) {
+        long n = Math.max(elementosEsperados, 1);
+        double m = -n * Math.log(tasaFalsosPositivos) / (Math.log(2) * Math.log(2));
+        this.cantidadBits = (int) Math.min(Math.max(Math.ceil(m), 64), Integer.MAX_VALUE - 8);
+        this.cantidadHashes = Math.max(1, (int) Math.round((double) cantidadBits / n * Math.log(2)));
+        this.bits = new BitSet(cantidadBits);
+    }
+
+    public void agregar(String valor) {
+        long hash = hash(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < cantidadHashes; i++) {
+            bits.set(indice(h1 + i * h2));
+        }
+        elementos++;
+    }
+
+    public boolean contiene(String valor) {
+        long hash = hash(valor);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < cantidadHashes; i++) {
+            if (!bits.get(indice(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getElementos() {
+        return elementos;
+    }
+
+    public long getBytes() {
+        return cantidadBits / 8;
+    }
+
+    private int indice(int combinado) {
+        return (combinado & Integer.MAX_VALUE) % cantidadBits;
+    }
+
+    // FNV-1a de 64 bits con mezcla final (los dos hashes de 32 bits salen de sus mitades)
+    private static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
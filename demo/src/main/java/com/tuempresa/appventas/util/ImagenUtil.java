@@ -0,0 +1,96 @@
+package com.tuempresa.appventas.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tuempresa.appventas.dto.VariantesImagen;
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Servicio;
+
+// Utilidades para las URLs de imágenes de productos y servicios
+// (los servicios las guardan como arreglo JSON, las variantes como objeto JSON)
+public final class ImagenUtil {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImagenUtil() {}
+
+    public static String primeraImagen(String imagenesJson) {
+        if (imagenesJson == null || imagenesJson.isBlank()) {
+            return null;
+        }
+        try {
+            String[] imagenes = objectMapper.readValue(imagenesJson, String[].class);
+            return imagenes.length > 0 ? imagenes[0] : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Mismo formato que la columna original, pero solo con la primera imagen (para tarjetas del catálogo)
+    public static String soloPrimeraImagen(String imagenesJson) {
+        String primera = primeraImagen(imagenesJson);
+        if (primera == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(new String[] { primera });
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Imágenes de un producto en orden, sin huecos
+    public static List<String> imagenesDe(Producto producto) {
+        List<String> imagenes = new ArrayList<>();
+        for (String url : new String[] { producto.getImagenUrl1(), producto.getImagenUrl2(), producto.getImagenUrl3(),
+                producto.getImagenUrl4(), producto.getImagenUrl5() }) {
+            if (url != null && !url.isBlank()) {
+                imagenes.add(url);
+            }
+        }
+        return imagenes;
+    }
+
+    public static List<String> imagenesDe(Servicio servicio) {
+        return leerImagenes(servicio.getImagenes());
+    }
+
+    // Arreglo JSON de URLs (columna servicios.imagenes)
+    public static List<String> leerImagenes(String imagenesJson) {
+        if (imagenesJson == null || imagenesJson.isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            return new ArrayList<>(List.of(objectMapper.readValue(imagenesJson, String[].class)));
+        } catch (Exception e) {
+            return new ArrayList<>();
+        }
+    }
+
+    public static Map<String, VariantesImagen> leerVariantes(String json) {
+        if (json == null || json.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<LinkedHashMap<String, VariantesImagen>>() {});
+        } catch (Exception e) {
+            return new LinkedHashMap<>();
+        }
+    }
+
+    public static String escribirVariantes(Map<String, VariantesImagen> variantes) {
+        if (variantes == null || variantes.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(variantes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tuempresa.appventas.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.tuempresa.appventas.service.CatalogoSnapshotService;
+
+// Respuesta HTTP para un snapshot pre-serializado: 304 si el cliente ya tiene la versión,
+// si no los bytes tal cual (gzip cuando el cliente lo acepta, con su propio ETag).
+public final class SnapshotHttpUtil {
+
+    private SnapshotHttpUtil() {}
+
+    public static ResponseEntity<byte[]> responder(CatalogoSnapshotService.Snapshot snapshot,
+                                                   String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = gzip ? snapshot.etag().replaceFirst("\"$", "-gz\"") : snapshot.etag();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (coincide(ifNoneMatch, etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(snapshot.gzip(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(snapshot.json(), headers, HttpStatus.OK);
+    }
+
+    private static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,33 @@
+package com.tuempresa.appventas.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Utilidades de texto compartidas (detección de contenido prohibido, índice de búsqueda)
+public final class TextoUtil {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextoUtil() {}
+
+    // Eliminar acentos y poner en minúsculas
+    public static String normalizar(String input) {
+        if (input == null) return "";
+        String normalized = Normalizer.normalize(input, Normalizer.Form.NFD);
+        return DIACRITICOS.matcher(normalized).replaceAll("").toLowerCase();
+    }
+
+    // Normalizar y partir en palabras (se descartan las de una sola letra)
+    public static List<String> tokenizar(String input) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARADORES.split(normalizar(input))) {
+            if (token.length() > 1) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,190 @@
+package com.tuempresa.appventas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.tuempresa.appventas.model.CorreoSaliente;
+import com.tuempresa.appventas.repository.CorreoSalienteRepository;
+import com.tuempresa.appventas.service.CorreoDespachoService;
+
+import jakarta.mail.internet.MimeMessage;
+
+// Despacho de la bandeja de salida contra un servidor SMTP en memoria (GreenMail): toma de lotes, envío,
+// marcado como ENVIADO, reintento con espera tras un fallo y paso a FALLIDO al agotar los intentos.
+// El despachador programado queda prácticamente detenido (intervalo de una hora) y la prueba lo invoca a mano.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:correos;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=tienda@prueba.com",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.mail.properties.mail.smtp.starttls.required=false",
+        "app.correo.intervalo-ms=3600000",
+        "app.correo.max-intentos=3",
+        "app.correo.backoff-inicial-segundos=30"
+})
+class CorreoDespachoTest {
+
+    private static final long ESPERA_MS = 10_000;
+
+    @RegisterExtension
+    static GreenMailExtension servidorSmtp = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    @Autowired
+    private CorreoSalienteRepository correoSalienteRepository;
+
+    @Autowired
+    private CorreoDespachoService correoDespachoService;
+
+    @BeforeEach
+    void vaciarBandeja() {
+        correoSalienteRepository.deleteAll();
+    }
+
+    @Test
+    void enviaLosPendientesYLosMarcaEnviados() throws Exception {
+        List<Long> ids = List.of(
+                encolar("ana@prueba.com", "Hola Ana"),
+                encolar("beto@prueba.com", "Hola Beto"),
+                encolar("carla@otro.com", "Hola Carla"));
+
+        correoDespachoService.despachar();
+
+        for (Long id : ids) {
+            assertEquals(CorreoSaliente.ENVIADO, esperarEstado(id, CorreoSaliente.ENVIADO).getEstado());
+        }
+        MimeMessage[] recibidos = servidorSmtp.getReceivedMessages();
+        assertEquals(3, recibidos.length);
+        List<String> asuntos = Arrays.stream(recibidos).map(this::asunto).sorted().toList();
+        assertEquals(List.of("Hola Ana", "Hola Beto", "Hola Carla"), asuntos);
+
+        CorreoSaliente enviado = correoSalienteRepository.findById(ids.get(0)).orElseThrow();
+        assertEquals(1, enviado.getIntentos());
+        assertNotNull(enviado.getFechaEnvio());
+    }
+
+    @Test
+    void soloEnviaLosCorreosQueTomoEsteDespachador() throws Exception {
+        Long propio = encolar("ana@prueba.com", "Propio");
+        Long ajeno = encolar("beto@prueba.com", "Ajeno");
+        List<CorreoSaliente> lote = correoSalienteRepository.findAllById(List.of(propio, ajeno));
+
+        // Otro nodo tomó uno de los correos del lote entre la búsqueda y la toma
+        Date tomadoPorOtro = new Date(System.currentTimeMillis() - 1_000);
+        assertEquals(1, correoSalienteRepository.tomar(List.of(ajeno), tomadoPorOtro));
+
+        boolean programado = ReflectionTestUtils.invokeMethod(correoDespachoService, "programar", lote, new AtomicInteger());
+        assertTrue(programado);
+
+        esperarEstado(propio, CorreoSaliente.ENVIADO);
+        MimeMessage[] recibidos = servidorSmtp.getReceivedMessages();
+        assertEquals(1, recibidos.length);
+        assertEquals("Propio", asunto(recibidos[0]));
+
+        CorreoSaliente delOtro = correoSalienteRepository.findById(ajeno).orElseThrow();
+        assertEquals(CorreoSaliente.ENVIANDO, delOtro.getEstado());
+        assertEquals(tomadoPorOtro.getTime(), delOtro.getFechaTomado().getTime());
+    }
+
+    @Test
+    void reprogramaConEsperaCuandoElServidorNoResponde() {
+        servidorSmtp.stop();
+        Long id = encolar("ana@prueba.com", "Reintento");
+        long antes = System.currentTimeMillis();
+
+        correoDespachoService.despachar();
+
+        CorreoSaliente correo = esperar(id, c -> c.getIntentos() == 1);
+        assertEquals(CorreoSaliente.PENDIENTE, correo.getEstado());
+        assertNotNull(correo.getUltimoError());
+        // Primer reintento: entre la mitad y el total de backoff-inicial-segundos
+        long espera = correo.getProximoIntento().getTime() - antes;
+        assertTrue(espera >= 15_000 && espera <= 31_000, "Espera inesperada: " + espera + " ms");
+
+        // Todavía no le toca: otra vuelta del despachador no lo reintenta
+        correoDespachoService.despachar();
+        assertEquals(1, correoSalienteRepository.findById(id).orElseThrow().getIntentos());
+    }
+
+    @Test
+    void pasaAFallidoAlAgotarLosIntentos() {
+        servidorSmtp.stop();
+        CorreoSaliente correo = new CorreoSaliente("BIENVENIDA", "ana@prueba.com", "Descarte", "Cuerpo");
+        correo.setIntentos(2); // max-intentos = 3: este es el último
+        Long id = correoSalienteRepository.save(correo).getId();
+
+        correoDespachoService.despachar();
+
+        CorreoSaliente descartado = esperarEstado(id, CorreoSaliente.FALLIDO);
+        assertEquals(3, descartado.getIntentos());
+        assertNotNull(descartado.getUltimoError());
+
+        // La cola de descarte se puede reactivar a mano
+        servidorSmtp.start();
+        assertEquals(1, correoDespachoService.reintentarFallidos());
+        correoDespachoService.despachar();
+        esperarEstado(id, CorreoSaliente.ENVIADO);
+        assertEquals(1, servidorSmtp.getReceivedMessages().length);
+    }
+
+    private Long encolar(String destinatario, String asunto) {
+        return correoSalienteRepository.save(new CorreoSaliente("BIENVENIDA", destinatario, asunto, "Cuerpo de " + asunto)).getId();
+    }
+
+    private CorreoSaliente esperarEstado(Long id, String estado) {
+        return esperar(id, correo -> estado.equals(correo.getEstado()));
+    }
+
+    // El envío corre en el pool del despachador: se consulta la fila hasta que cumpla la condición
+    private CorreoSaliente esperar(Long id, Predicate<CorreoSaliente> condicion) {
+        long limite = System.currentTimeMillis() + ESPERA_MS;
+        CorreoSaliente correo = correoSalienteRepository.findById(id).orElseThrow();
+        while (!condicion.test(correo)) {
+            if (System.currentTimeMillis() > limite) {
+                throw new AssertionError("El correo " + id + " quedó en " + correo.getEstado()
+                        + " con " + correo.getIntentos() + " intentos");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+            correo = correoSalienteRepository.findById(id).orElseThrow();
+        }
+        return correo;
+    }
+
+    private String asunto(MimeMessage mensaje) {
+        try {
+            return mensaje.getSubject();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
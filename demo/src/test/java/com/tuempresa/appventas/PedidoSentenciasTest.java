@@ -0,0 +1,152 @@
+package com.tuempresa.appventas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.tuempresa.appventas.model.Pedido;
+import com.tuempresa.appventas.model.Producto;
+import com.tuempresa.appventas.model.Usuario;
+import com.tuempresa.appventas.repository.DetallePedidoRepository;
+import com.tuempresa.appventas.repository.ProductoRepository;
+import com.tuempresa.appventas.repository.UsuarioRepository;
+import com.tuempresa.appventas.service.CarritoService;
+import com.tuempresa.appventas.service.PedidoService;
+
+// Viajes a la BD de un checkout: cada ejecución de sentencia (un lote JDBC cuenta como una) se cuenta con un
+// proxy sobre el DataSource. Con la escritura por lotes y los ids por bloques, un pedido de 20 productos
+// cuesta lo mismo que uno de 1.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pedidos;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class PedidoSentenciasTest {
+
+    private static final int MAXIMO_SENTENCIAS = 8;
+
+    private static final Set<String> EJECUCIONES = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private static final AtomicInteger sentencias = new AtomicInteger();
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private DetallePedidoRepository detallePedidoRepository;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private PedidoService pedidoService;
+
+    @TestConfiguration
+    static class ContadorDeSentencias {
+
+        @Bean
+        static BeanPostProcessor contarSentencias() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String nombre) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return envolver(Connection.class, super.getConnection());
+                        }
+                    };
+                }
+            };
+        }
+
+        // Las sentencias creadas por la conexión también se envuelven para contar sus ejecuciones
+        private static <T> T envolver(Class<T> tipo, Object objetivo) {
+            return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] { tipo },
+                    (proxy, metodo, argumentos) -> {
+                        if (EJECUCIONES.contains(metodo.getName())) {
+                            sentencias.incrementAndGet();
+                        }
+                        Object resultado;
+                        try {
+                            resultado = metodo.invoke(objetivo, argumentos);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (resultado instanceof Statement && Statement.class.isAssignableFrom(metodo.getReturnType())) {
+                            return envolver(metodo.getReturnType(), resultado);
+                        }
+                        return resultado;
+                    }));
+        }
+    }
+
+    @Test
+    void pedidoDeVeinteProductosNoDependeDeLaCantidadDeItems() {
+        Usuario comprador = new Usuario();
+        comprador.setNombre("Comprador");
+        comprador.setEmail("comprador@prueba.com");
+        comprador.setPassword("clave");
+        comprador = usuarioRepository.save(comprador);
+
+        Producto[] productos = new Producto[20];
+        for (int i = 0; i < productos.length; i++) {
+            productos[i] = new Producto("Producto " + i, "Prueba", 10 + i, comprador);
+            productos[i].setCantidad(100);
+            productos[i] = productoRepository.save(productos[i]);
+        }
+
+        // Primer pedido: carga el carrito en memoria y reserva los bloques de ids
+        carritoService.agregarProducto(comprador.getId(), productos[0].getId(), 1);
+        int deUno = contar(comprador.getId());
+
+        for (Producto producto : productos) {
+            carritoService.agregarProducto(comprador.getId(), producto.getId(), 2);
+        }
+        int deVeinte = contar(comprador.getId());
+
+        assertEquals(1 + 20, detallePedidoRepository.count());
+        assertTrue(deVeinte <= MAXIMO_SENTENCIAS,
+                "Un pedido de 20 productos usó " + deVeinte + " sentencias (máximo " + MAXIMO_SENTENCIAS + ")");
+        assertTrue(deVeinte <= deUno, "20 productos: " + deVeinte + " sentencias, 1 producto: " + deUno);
+    }
+
+    private int contar(Long usuarioId) {
+        sentencias.set(0);
+        Pedido pedido = pedidoService.crearPedidoDesdeCarrito(usuarioId, "TARJETA");
+        int cantidad = sentencias.get();
+        System.out.println("🔢 Pedido " + pedido.getId() + ": " + cantidad + " sentencias");
+        return cantidad;
+    }
+}
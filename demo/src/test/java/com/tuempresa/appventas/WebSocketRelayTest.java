@@ -0,0 +1,198 @@
+package com.tuempresa.appventas;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.tuempresa.appventas.model.Usuario;
+import com.tuempresa.appventas.repository.UsuarioRepository;
+import com.tuempresa.appventas.util.JwtUtil;
+
+// Modo relay (app.websocket.broker=relay) contra un broker STOMP embebido (ActiveMQ Artemis).
+// Un cliente WebSocket se suscribe a través de la aplicación, las suscripciones quedan en el broker, y un mensaje
+// enviado por la API llega a /topic/mensajes/{id} y el contador a /topic/no-leidos/{id} pasando por el broker.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:relay;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "app.websocket.broker=relay",
+        "app.websocket.relay.host=localhost"
+})
+@DirtiesContext
+class WebSocketRelayTest {
+
+    private static final long ESPERA_SEGUNDOS = 10;
+
+    private static EmbeddedActiveMQ broker;
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private StompBrokerRelayMessageHandler relay;
+
+    // El broker se levanta antes que el contexto para que el relay se conecte al arrancar
+    @DynamicPropertySource
+    static void iniciarBroker(DynamicPropertyRegistry registro) throws Exception {
+        int puertoStomp;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puertoStomp = socket.getLocalPort();
+        }
+        Configuration configuracion = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory("target/artemis/journal")
+                .setBindingsDirectory("target/artemis/bindings")
+                .setLargeMessagesDirectory("target/artemis/large")
+                .setPagingDirectory("target/artemis/paging");
+        configuracion.addAcceptorConfiguration("stomp",
+                "tcp://localhost:" + puertoStomp + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        broker = new EmbeddedActiveMQ().setConfiguration(configuracion);
+        broker.start();
+        registro.add("app.websocket.relay.puerto", () -> puertoStomp);
+    }
+
+    @AfterAll
+    static void detenerBroker() throws Exception {
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void mensajeYContadorLleganPorElBroker() throws Exception {
+        Usuario remitente = usuario("remitente@prueba.com");
+        Usuario destinatario = usuario("destinatario@prueba.com");
+
+        esperarRelay();
+        StompSession sesion = conectar(destinatario);
+        BlockingQueue<String> mensajes = suscribir(sesion, "/topic/mensajes/" + destinatario.getId());
+        BlockingQueue<String> noLeidos = suscribir(sesion, "/topic/no-leidos/" + destinatario.getId());
+
+        HttpHeaders cabeceras = new HttpHeaders();
+        cabeceras.setBearerAuth(token(remitente));
+        ResponseEntity<String> respuesta = restTemplate.postForEntity("/api/mensajes/enviar", new HttpEntity<>(Map.of(
+                "remitenteId", remitente.getId(),
+                "destinatarioId", destinatario.getId(),
+                "contenido", "Hola por el relay"), cabeceras), String.class);
+        assertEquals(HttpStatus.OK, respuesta.getStatusCode(), "Respuesta: " + respuesta.getBody());
+
+        String mensaje = mensajes.poll(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+        assertNotNull(mensaje, "No llegó el mensaje a /topic/mensajes");
+        assertTrue(mensaje.contains("Hola por el relay"), mensaje);
+
+        String contador = noLeidos.poll(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+        assertNotNull(contador, "No llegó el contador a /topic/no-leidos");
+        assertTrue(contador.replace(" ", "").contains("\"count\":1"), contador);
+
+        // Las suscripciones viven en el broker, no en la aplicación
+        assertTrue(broker.getActiveMQServer().getTotalConsumerCount() >= 2,
+                "Consumidores en el broker: " + broker.getActiveMQServer().getTotalConsumerCount());
+        sesion.disconnect();
+    }
+
+    private Usuario usuario(String email) {
+        Usuario usuario = new Usuario();
+        usuario.setNombre(email.substring(0, email.indexOf('@')));
+        usuario.setEmail(email);
+        usuario.setPassword("clave");
+        usuario.setTipoUsuario("USUARIO");
+        return usuarioRepository.save(usuario);
+    }
+
+    private String token(Usuario usuario) {
+        return jwtUtil.generateToken(usuario.getEmail(), usuario.getId(), usuario.getTipoUsuario());
+    }
+
+    private void esperarRelay() throws InterruptedException {
+        long limite = System.currentTimeMillis() + ESPERA_SEGUNDOS * 1000;
+        while (!relay.isBrokerAvailable() && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertTrue(relay.isBrokerAvailable(), "El relay no se conectó al broker");
+    }
+
+    private StompSession conectar(Usuario usuario) throws Exception {
+        WebSocketStompClient cliente = new WebSocketStompClient(new StandardWebSocketClient());
+        ThreadPoolTaskScheduler recibos = new ThreadPoolTaskScheduler(); // necesario para esperar los RECEIPT
+        recibos.initialize();
+        cliente.setTaskScheduler(recibos);
+        WebSocketHttpHeaders cabeceras = new WebSocketHttpHeaders();
+        cabeceras.setBearerAuth(token(usuario));
+        StompSession sesion = cliente.connectAsync("ws://localhost:" + puerto + "/ws/websocket", cabeceras,
+                new StompSessionHandlerAdapter() { }).get(ESPERA_SEGUNDOS, TimeUnit.SECONDS);
+        sesion.setAutoReceipt(true);
+        return sesion;
+    }
+
+    // Se espera el RECEIPT del broker: a partir de ahí la suscripción ya existe en Artemis
+    private BlockingQueue<String> suscribir(StompSession sesion, String destino) throws InterruptedException {
+        BlockingQueue<String> recibidos = new LinkedBlockingQueue<>();
+        CountDownLatch confirmada = new CountDownLatch(1);
+        sesion.subscribe(destino, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders cabeceras) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders cabeceras, Object cuerpo) {
+                recibidos.add(new String((byte[]) cuerpo, StandardCharsets.UTF_8));
+            }
+        }).addReceiptTask(confirmada::countDown);
+        assertTrue(confirmada.await(ESPERA_SEGUNDOS, TimeUnit.SECONDS), "Sin confirmación de la suscripción a " + destino);
+        return recibidos;
+    }
+}
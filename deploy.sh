@@ -131,6 +131,15 @@ server {
     # Archivos subidos (Imágenes)
     location /uploads {
         alias /opt/marketplace/demo/uploads;
+        # Los nombres de archivo no se reutilizan: cache permanente y envío con sendfile
+        sendfile on;
+        tcp_nopush on;
+        etag on;
+        add_header Cache-Control "public, max-age=31536000, immutable";
+        add_header X-Content-Type-Options nosniff;
+        location ~ /\. {
+            deny all;
+        }
     }
 }
 EOF
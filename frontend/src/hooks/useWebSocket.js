@@ -2,7 +2,7 @@ import { useEffect, useRef, useState } from 'react';
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 
-export const useWebSocket = (userId, onMessageReceived) => {
+export const useWebSocket = (userId, onMessageReceived, onReadReceipt, onUnreadCount) => {
     const clientRef = useRef(null);
     const [isConnected, setIsConnected] = useState(false);
 
@@ -37,6 +37,31 @@ export const useWebSocket = (userId, onMessageReceived) => {
                     console.error('Error al procesar mensaje:', error);
                 }
             });
+
+            // Confirmaciones de lectura de los mensajes que envió este usuario
+            if (onReadReceipt) {
+                client.subscribe(`/topic/mensajes/${userId}/leidos`, (message) => {
+                    try {
+                        onReadReceipt(JSON.parse(message.body));
+                    } catch (error) {
+                        console.error('Error al procesar confirmación de lectura:', error);
+                    }
+                });
+            }
+
+            // Contador de no leídos: primero los cambios (topic) y luego el valor actual (app),
+            // para no perder un cambio que llegue entre ambos
+            if (onUnreadCount) {
+                const alRecibirContador = (message) => {
+                    try {
+                        onUnreadCount(JSON.parse(message.body).count);
+                    } catch (error) {
+                        console.error('Error al procesar contador de no leídos:', error);
+                    }
+                };
+                client.subscribe(`/topic/no-leidos/${userId}`, alRecibirContador);
+                client.subscribe(`/app/no-leidos/${userId}`, alRecibirContador);
+            }
         };
 
         // Callback cuando se desconecta
@@ -61,7 +86,7 @@ export const useWebSocket = (userId, onMessageReceived) => {
                 clientRef.current.deactivate();
             }
         };
-    }, [userId, onMessageReceived]);
+    }, [userId, onMessageReceived, onReadReceipt, onUnreadCount]);
 
     return { isConnected };
 };
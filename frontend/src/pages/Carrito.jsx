@@ -1,6 +1,6 @@
-import { useState, useEffect } from "react";
+import { useState, useEffect, useRef } from "react";
 import { useNavigate } from "react-router-dom";
-import api from "../services/api";
+import api, { nuevaClaveIdempotencia } from "../services/api";
 
 export default function Carrito() {
   const [carrito, setCarrito] = useState(null);
@@ -11,6 +11,7 @@ export default function Carrito() {
   const [mostrarModalPago, setMostrarModalPago] = useState(false);
   const [metodoPago, setMetodoPago] = useState("TARJETA"); // TARJETA o TRANSFERENCIA
   const [procesandoPago, setProcesandoPago] = useState(false);
+  const claveCompra = useRef(null); // { clave, metodoPago } del intento de compra en curso
   
   // Datos simulados de tarjeta
   const [datosTarjeta, setDatosTarjeta] = useState({
@@ -114,13 +115,20 @@ export default function Carrito() {
       await new Promise(resolve => setTimeout(resolve, 2000));
     }
 
+    // La misma clave para los reintentos de esta compra: el servidor no crea un segundo pedido
+    if (claveCompra.current?.metodoPago !== metodoPago) {
+      claveCompra.current = { clave: nuevaClaveIdempotencia(), metodoPago };
+    }
+
     try {
       // Enviar metodoPago al backend
       await api.post(`/pedidos/${user.id}/crear`, null, {
         params: {
           metodoPago: metodoPago
-        }
+        },
+        headers: { "Idempotency-Key": claveCompra.current.clave }
       });
+      claveCompra.current = null;
 
       setProcesandoPago(false);
       setMostrarModalPago(false);
@@ -135,7 +143,26 @@ export default function Carrito() {
 
     } catch (err) {
       console.error("Error creando pedido:", err);
-      alert("Error al procesar la compra. Intenta nuevamente.");
+      // El servidor respondió con un error (no se creó nada): el próximo intento es una compra nueva.
+      // Sin respuesta (red caída) o con la compra aún en proceso se conserva la clave
+      if (err.response && !(err.response.status === 409 && !err.response.data?.cambios)) {
+        claveCompra.current = null;
+      }
+      if (err.response?.status === 409 && err.response.data?.cambios) {
+        // Precios o stock cambiaron desde que se agregaron al carrito: mostrar los cambios y recargar
+        const detalle = (err.response.data.cambios || []).map(c => {
+          const nombre = carrito.items.find(i => i.producto.id === c.productoId)?.producto.nombre || `Producto ${c.productoId}`;
+          if (c.precioActual === null) return `• ${nombre}: ya no está disponible`;
+          if (c.precioActual !== c.precioVisto) return `• ${nombre}: $${c.precioVisto.toFixed(2)} → $${c.precioActual.toFixed(2)}`;
+          return `• ${nombre}: solo quedan ${c.stockDisponible} unidades`;
+        }).join("\n");
+        alert(`${err.response.data.error}:\n${detalle}\n\nRevisa tu carrito antes de confirmar.`);
+        setProcesandoPago(false);
+        setMostrarModalPago(false);
+        cargarCarrito();
+        return;
+      }
+      alert(err.response?.data?.error || "Error al procesar la compra. Intenta nuevamente.");
       setProcesandoPago(false);
     }
   }
@@ -235,7 +262,7 @@ export default function Carrito() {
             {/* Lista de Items */}
             <div className="flex flex-col gap-4">
               {carrito.items.map((item) => (
-                <div key={item.id} className="bg-white p-4 rounded-2xl border border-slate-200 shadow-sm flex gap-6 items-center">
+                <div key={item.producto.id} className="bg-white p-4 rounded-2xl border border-slate-200 shadow-sm flex gap-6 items-center">
                   {/* Imagen */}
                   <div className="w-24 h-24 bg-slate-100 rounded-xl overflow-hidden flex-shrink-0 border border-slate-100">
                     <img 
@@ -464,8 +491,8 @@ export default function Carrito() {
                             };
                           }
                           vendedoresMap[vendedor.id].items.push(item);
-                          // Usar producto.precio en lugar de precioUnitario
-                          vendedoresMap[vendedor.id].subtotal += (item.producto?.precio || 0) * item.cantidad;
+                          // Precio con el que se agregó al carrito (el que se cobra)
+                          vendedoresMap[vendedor.id].subtotal += (item.precioUnitario || 0) * item.cantidad;
                         });
                         
                         return Object.values(vendedoresMap).map((grupo, index) => {
@@ -111,6 +111,9 @@ export default function Catalogo() {
 
   // Función para obtener la primera imagen
   function obtenerPrimeraImagen(item) {
+    // Miniatura generada por el backend (mucho más liviana que el original)
+    if (item.miniaturaUrl) return item.miniaturaUrl;
+
     // Para productos
     if (item.imagenUrl1) return item.imagenUrl1;
     if (item.imagenUrl2) return item.imagenUrl2;
@@ -1,6 +1,6 @@
 import { useState, useEffect } from "react";
 import { useNavigate } from "react-router-dom";
-import api from "../services/api";
+import api, { catalogoAPI } from "../services/api";
 
 export default function Favoritos() {
   const [favoritos, setFavoritos] = useState([]);
@@ -69,7 +69,8 @@ export default function Favoritos() {
 
     try {
       const res = await api.get(`/favoritos/usuario/${user.id}`);
-      setFavoritos(res.data);
+      // Productos y servicios actuales en un POST por tipo, no uno por elemento
+      setFavoritos(await catalogoAPI.actualizarFilas(res.data));
       setLoading(false);
     } catch (err) {
       console.error("Error cargando favoritos:", err);
@@ -1,6 +1,6 @@
 import { useState, useEffect } from "react";
 import { useNavigate } from "react-router-dom";
-import api from "../services/api";
+import api, { catalogoAPI } from "../services/api";
 
 export default function Historial() {
   const [historial, setHistorial] = useState([]);
@@ -67,7 +67,8 @@ export default function Historial() {
 
     try {
       const res = await api.get(`/historial/usuario/${user.id}`);
-      setHistorial(res.data);
+      // Productos y servicios actuales en un POST por tipo, no uno por elemento
+      setHistorial(await catalogoAPI.actualizarFilas(res.data));
       setLoading(false);
     } catch (err) {
       console.error("Error cargando historial:", err);
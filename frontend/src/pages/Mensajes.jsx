@@ -9,6 +9,7 @@ const Mensajes = () => {
   const [conversaciones, setConversaciones] = useState([]);
   const [conversacionActual, setConversacionActual] = useState(null);
   const [mensajes, setMensajes] = useState([]);
+  const [cursorAnteriores, setCursorAnteriores] = useState(null);
   const [nuevoMensaje, setNuevoMensaje] = useState('');
   const [loading, setLoading] = useState(false);
   const [mensajesNoLeidos, setMensajesNoLeidos] = useState(0);
@@ -31,24 +32,39 @@ const Mensajes = () => {
   
   const usuario = JSON.parse(localStorage.getItem('user'));
 
+  // El historial llega como resumen (remitenteId, destinatarioId...); los mensajes del WebSocket
+  // y del envío llegan completos, así que se llevan a la misma forma
+  const aResumen = (msg) => msg.remitenteId !== undefined ? msg : {
+    id: msg.id,
+    conversacionId: msg.conversacionId,
+    remitenteId: msg.remitente?.id,
+    destinatarioId: msg.destinatario?.id,
+    contenido: msg.contenido,
+    imageUrl: msg.imageUrl,
+    fechaEnvio: msg.fechaEnvio,
+    leido: msg.leido
+  };
+
   const cargarConversaciones = useCallback(async () => {
     try {
       const response = await api.get(`/mensajes/conversaciones/${usuario.id}`);
       const conversacionesData = response.data;
 
-      // Procesar conversaciones para obtener el otro usuario
-      const conversacionesProcesadas = conversacionesData.map(msg => {
-        const otroUsuario = msg.remitente.id === usuario.id ? msg.destinatario : msg.remitente;
-        return {
-          conversacionId: msg.conversacionId,
-          otroUsuario: otroUsuario,
-          ultimoMensaje: msg.contenido,
-          fechaUltimoMensaje: msg.fechaEnvio,
-          noLeido: !msg.leido && msg.destinatario.id === usuario.id,
-          producto: msg.producto,
-          servicio: msg.servicio
-        };
-      });
+      // La bandeja ya viene por participante: solo se arma la forma que usa la vista
+      const conversacionesProcesadas = conversacionesData.map(conv => ({
+        conversacionId: conv.conversacionId,
+        otroUsuario: {
+          id: conv.otroUsuarioId,
+          nombre: conv.otroUsuarioNombre,
+          apellido: conv.otroUsuarioApellido,
+          email: conv.otroUsuarioEmail
+        },
+        ultimoMensaje: conv.ultimoMensaje,
+        fechaUltimoMensaje: conv.fechaUltimoMensaje,
+        noLeido: conv.noLeidos > 0,
+        producto: conv.productoId ? { id: conv.productoId, nombre: conv.productoNombre } : null,
+        servicio: conv.servicioId ? { id: conv.servicioId, titulo: conv.servicioTitulo } : null
+      }));
 
       setConversaciones(conversacionesProcesadas);
     } catch (error) {
@@ -64,7 +80,7 @@ const Mensajes = () => {
         // Evitar duplicados
         const exists = prev.some(m => m.id === mensaje.id);
         if (exists) return prev;
-        return [...prev, mensaje];
+        return [...prev, aResumen(mensaje)];
       });
       
       // Recargar conversaciones para actualizar el último mensaje
@@ -72,8 +88,19 @@ const Mensajes = () => {
     }
   }, [usuario?.id, cargarConversaciones]);
 
+  // Confirmación de lectura: el otro usuario leyó nuestros mensajes hasta hastaMensajeId
+  const handleConfirmacionLectura = useCallback((confirmacion) => {
+    setMensajes(prev => prev.map(m =>
+      m.conversacionId === confirmacion.conversacionId
+        && m.remitenteId === usuario?.id
+        && m.id <= confirmacion.hastaMensajeId
+        ? { ...m, leido: true }
+        : m
+    ));
+  }, [usuario?.id]);
+
   // Conectar WebSocket
-  const { isConnected } = useWebSocket(usuario?.id, handleWebSocketMessage);
+  const { isConnected } = useWebSocket(usuario?.id, handleWebSocketMessage, handleConfirmacionLectura, setMensajesNoLeidos);
 
   // Parámetros para iniciar chat desde producto/servicio
   const vendedorId = searchParams.get('vendedorId');
@@ -86,7 +113,10 @@ const Mensajes = () => {
       return;
     }
     cargarConversaciones();
-    cargarMensajesNoLeidos();
+    // Con WebSocket el contador llega empujado; sin él se consulta
+    if (!isConnected) {
+      cargarMensajesNoLeidos();
+    }
 
     // Si viene de un producto/servicio, iniciar conversación
     if (vendedorId) {
@@ -99,9 +129,10 @@ const Mensajes = () => {
       cargarContextoServicio(servicioId);
     }
 
-    // Actualizar cada 10 segundos solo si WebSocket no está conectado
+    // Actualizar cada 3 segundos solo si WebSocket no está conectado
     const interval = setInterval(() => {
-      if (!isConnected && conversacionActual) {
+      if (isConnected) return;
+      if (conversacionActual) {
         cargarMensajesConversacion(conversacionActual.conversacionId);
       }
       cargarMensajesNoLeidos();
@@ -165,17 +196,34 @@ const Mensajes = () => {
 
   const cargarMensajesConversacion = async (conversacionId) => {
     try {
-      const response = await api.get(`/mensajes/conversacion/${conversacionId}`);
-      setMensajes(response.data);
-
-      // Marcar como leídos
-      await api.put(`/mensajes/conversacion/${conversacionId}/leer?usuarioId=${usuario.id}`);
-      cargarMensajesNoLeidos();
+      const response = await api.get(`/mensajes/conversacion/${conversacionId}/historial`);
+      const items = response.data.items;
+      setMensajes(items);
+      setCursorAnteriores(response.data.hayMas ? response.data.siguienteCursor : null);
+
+      // Marcar como leídos hasta el último mensaje mostrado
+      if (items.length > 0) {
+        const hastaId = items[items.length - 1].id;
+        await api.put(`/mensajes/conversacion/${conversacionId}/leer?usuarioId=${usuario.id}&hastaId=${hastaId}`);
+      }
     } catch (error) {
       console.error('Error al cargar mensajes:', error);
     }
   };
 
+  const cargarMensajesAnteriores = async () => {
+    if (!conversacionActual || !cursorAnteriores) return;
+    try {
+      const response = await api.get(
+        `/mensajes/conversacion/${conversacionActual.conversacionId}/historial?antesDe=${cursorAnteriores}`
+      );
+      setMensajes(prev => [...response.data.items, ...prev]);
+      setCursorAnteriores(response.data.hayMas ? response.data.siguienteCursor : null);
+    } catch (error) {
+      console.error('Error al cargar mensajes anteriores:', error);
+    }
+  };
+
   const cargarValoracionesVendedor = useCallback(async (vendedorId) => {
     try {
       setCargandoValoraciones(true);
@@ -334,11 +382,14 @@ const Mensajes = () => {
       // Limpiar estado
       setConversacionActual(null);
       setMensajes([]);
+      setCursorAnteriores(null);
       setContextoItem(null);
       
       // Recargar lista de conversaciones
       cargarConversaciones();
-      cargarMensajesNoLeidos();
+      if (!isConnected) {
+        cargarMensajesNoLeidos();
+      }
     } catch (error) {
       console.error('Error al eliminar conversación:', error);
       alert('❌ Error al eliminar la conversación');
@@ -585,14 +636,25 @@ const Mensajes = () => {
 
               {/* Mensajes */}
               <div className="flex-1 overflow-y-auto p-6 space-y-4">
+                {cursorAnteriores && (
+                  <div className="flex justify-center">
+                    <button
+                      type="button"
+                      onClick={cargarMensajesAnteriores}
+                      className="text-xs text-blue-600 font-semibold hover:underline"
+                    >
+                      Cargar mensajes anteriores
+                    </button>
+                  </div>
+                )}
                 {mensajes.map((msg) => (
                   <div
                     key={msg.id}
-                    className={`flex ${msg.remitente.id === usuario.id ? 'justify-end' : 'justify-start'}`}
+                    className={`flex ${msg.remitenteId === usuario.id ? 'justify-end' : 'justify-start'}`}
                   >
                     <div
                       className={`max-w-md px-5 py-3 rounded-2xl text-sm shadow-sm ${
-                        msg.remitente.id === usuario.id
+                        msg.remitenteId === usuario.id
                           ? 'bg-blue-600 text-white rounded-br-none'
                           : 'bg-white text-slate-700 border border-slate-100 rounded-bl-none'
                       }`}
@@ -607,9 +669,10 @@ const Mensajes = () => {
                       )}
                       <p className="m-0 leading-relaxed">{msg.contenido}</p>
                       <p className={`text-[10px] mt-1 text-right ${
-                        msg.remitente.id === usuario.id ? 'text-blue-200' : 'text-slate-400'
+                        msg.remitenteId === usuario.id ? 'text-blue-200' : 'text-slate-400'
                       }`}>
                         {new Date(msg.fechaEnvio).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })}
+                        {msg.remitenteId === usuario.id && (msg.leido ? ' ✓✓' : ' ✓')}
                       </p>
                     </div>
                   </div>
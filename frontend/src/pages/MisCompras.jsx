@@ -46,6 +46,18 @@ export default function MisCompras() {
     }
   }
 
+  async function cancelarPedido(pedidoId) {
+    if (!window.confirm("¿Cancelar este pedido? Los productos vuelven a estar disponibles para otros compradores.")) return;
+
+    try {
+      await api.put(`/pedidos/${pedidoId}/cancelar`);
+      cargarPedidos();
+    } catch (err) {
+      console.error("Error cancelando pedido:", err);
+      alert(err.response?.data?.error || "Error al cancelar el pedido");
+    }
+  }
+
   function handleLogout() {
     localStorage.removeItem("user");
     nav("/");
@@ -122,12 +134,19 @@ export default function MisCompras() {
                   <div className={`px-3 py-1 rounded-full text-xs font-bold ${
                     pedido.estado === "PENDIENTE" ? "bg-yellow-100 text-yellow-700" :
                     pedido.estado === "PAGADO_VERIFICANDO" ? "bg-blue-100 text-blue-700" :
-                    pedido.estado === "PAGADO" ? "bg-green-100 text-green-700" : "bg-slate-100 text-slate-700"
+                    pedido.estado === "PAGADO" ? "bg-green-100 text-green-700" :
+                    pedido.estado === "CANCELADO" ? "bg-red-100 text-red-700" : "bg-slate-100 text-slate-700"
                   }`}>
                     {pedido.estado.replace("_", " ")}
                   </div>
                 </div>
 
+                {pedido.estado === "PENDIENTE" && pedido.reservaExpira && (
+                  <p className="text-xs text-yellow-700 mb-3">
+                    Stock reservado hasta {new Date(pedido.reservaExpira).toLocaleString()}. Sube el comprobante antes o el pedido se cancelará.
+                  </p>
+                )}
+
                 <div className="flex flex-col gap-3 mb-4">
                   {pedido.detalles.map((detalle) => (
                     <div key={detalle.id} className="flex justify-between items-center">
@@ -159,6 +178,12 @@ export default function MisCompras() {
                           onChange={(e) => subirComprobante(pedido.id, e.target.files[0])}
                         />
                       </label>
+                      <button
+                        onClick={() => cancelarPedido(pedido.id)}
+                        className="px-4 py-2 rounded-lg font-bold text-sm text-red-600 border border-red-200 hover:bg-red-50 transition-colors"
+                      >
+                        Cancelar
+                      </button>
                     </div>
                   )}
                   
@@ -1,6 +1,6 @@
-import { useState, useEffect } from "react";
+import { useState, useEffect, useRef } from "react";
 import { useNavigate, useParams, useSearchParams } from "react-router-dom";
-import api from "../services/api";
+import api, { nuevaClaveIdempotencia } from "../services/api";
 
 export default function ProcesoPago() {
   const { productoId } = useParams();
@@ -11,6 +11,7 @@ export default function ProcesoPago() {
   const [vendedor, setVendedor] = useState(null);
   const [loading, setLoading] = useState(true);
   const [procesando, setProcesando] = useState(false);
+  const claveCompra = useRef(null); // claves de idempotencia del intento de compra en curso
   const [comprobante, setComprobante] = useState(null);
   const [previsualizacion, setPrevisualizacion] = useState(null);
   const [paso, setPaso] = useState(1); // 1: Ver datos pago, 2: Subir comprobante, 3: Confirmación
@@ -66,14 +67,22 @@ export default function ProcesoPago() {
 
     setProcesando(true);
     try {
-      // 1. Primero agregar al carrito
-      await api.post(`/carrito/${usuario.id}/agregar`, null, {
-        params: { productoId: productoId, cantidad: cantidad }
-      });
+      if (!claveCompra.current) {
+        claveCompra.current = { pedido: nuevaClaveIdempotencia(), comprobante: nuevaClaveIdempotencia(), agregado: false };
+      }
+
+      // 1. Primero agregar al carrito (una sola vez aunque se reintente)
+      if (!claveCompra.current.agregado) {
+        await api.post(`/carrito/${usuario.id}/agregar`, null, {
+          params: { productoId: productoId, cantidad: cantidad }
+        });
+        claveCompra.current.agregado = true;
+      }
 
-      // 2. Crear el pedido
+      // 2. Crear el pedido (la misma clave en los reintentos: no se crea un segundo pedido)
       const resPedido = await api.post(`/pedidos/${usuario.id}/crear`, null, {
-        params: { metodoPago: "TRANSFERENCIA" }
+        params: { metodoPago: "TRANSFERENCIA" },
+        headers: { "Idempotency-Key": claveCompra.current.pedido }
       });
 
       const pedidoId = resPedido.data.id;
@@ -83,8 +92,9 @@ export default function ProcesoPago() {
       formData.append('comprobante', comprobante);
 
       await api.post(`/pedidos/${pedidoId}/comprobante`, formData, {
-        headers: { 'Content-Type': 'multipart/form-data' }
+        headers: { 'Content-Type': 'multipart/form-data', 'Idempotency-Key': claveCompra.current.comprobante }
       });
+      claveCompra.current = null;
 
       setPedidoCreado(resPedido.data);
       setPaso(3);
@@ -94,7 +104,7 @@ export default function ProcesoPago() {
 
     } catch (err) {
       console.error("Error procesando compra:", err);
-      alert("Error al procesar la compra: " + (err.response?.data || "Intenta nuevamente"));
+      alert("Error al procesar la compra: " + (err.response?.data?.error || "Intenta nuevamente"));
     } finally {
       setProcesando(false);
     }
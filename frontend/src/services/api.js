@@ -70,6 +70,11 @@ api.interceptors.response.use(
   }
 );
 
+// Clave de idempotencia para operaciones que no deben repetirse (crear pedido, subir comprobante):
+// se reutiliza en los reintentos de la misma operación para que el servidor devuelva la primera respuesta
+export const nuevaClaveIdempotencia = () =>
+  window.crypto?.randomUUID?.() || `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+
 // Dashboard API
 export const dashboardAPI = {
     getEstadisticas: () => 
@@ -82,4 +87,46 @@ export const dashboardAPI = {
         api.get('/dashboard/estado-plataforma').then(response => response.data)
 };
 
+// Catálogo por lotes: un solo POST /batch por tipo en lugar de un GET por cada id.
+// La respuesta viene en el mismo orden que los ids, con null donde el elemento ya no existe
+const LOTE_MAXIMO = 200; // app.catalogo.lote-maximo en el servidor
+
+const obtenerPorLotes = async (ruta, ids) => {
+  const unicos = [...new Set(ids.filter(id => id != null))];
+  const porId = new Map();
+  for (let i = 0; i < unicos.length; i += LOTE_MAXIMO) {
+    const lote = unicos.slice(i, i + LOTE_MAXIMO);
+    const res = await api.post(`${ruta}/batch`, lote);
+    res.data.forEach((item, posicion) => {
+      if (item) porId.set(lote[posicion], item);
+    });
+  }
+  return porId;
+};
+
+export const catalogoAPI = {
+    productosPorIds: (ids) => obtenerPorLotes('/productos', ids),
+
+    serviciosPorIds: (ids) => obtenerPorLotes('/servicios', ids),
+
+    // Reemplaza el producto/servicio de cada fila (favoritos, historial) por su versión actual del catálogo.
+    // Si el lote falla o el elemento ya no está, se deja el que vino con la fila
+    actualizarFilas: async (filas) => {
+      try {
+        const [productos, servicios] = await Promise.all([
+          catalogoAPI.productosPorIds(filas.map(f => f.producto?.id)),
+          catalogoAPI.serviciosPorIds(filas.map(f => f.servicio?.id))
+        ]);
+        return filas.map(f => ({
+          ...f,
+          producto: f.producto ? productos.get(f.producto.id) || f.producto : f.producto,
+          servicio: f.servicio ? servicios.get(f.servicio.id) || f.servicio : f.servicio
+        }));
+      } catch (error) {
+        console.error("Error cargando el catálogo por lotes:", error);
+        return filas;
+      }
+    }
+};
+
 export default api;
\ No newline at end of file